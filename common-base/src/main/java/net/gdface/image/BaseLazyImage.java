@@ -1,5 +1,6 @@
 package net.gdface.image;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -14,10 +15,12 @@ import net.gdface.utils.ILazyInitVariable;
 import net.gdface.utils.Judge;
 /**
  * 图像数据处理对象<br>
+ * 使用结束后调用{@link #close()}释放资源(或使用try-with-resources),
+ * 子类持有的需要释放的资源应通过{@link net.gdface.utils.ResourceCleaner}注册GC兜底清理,不使用{@code finalize()}
  * @author guyadong
  *
  */
-public abstract class BaseLazyImage implements ImageMatrix {
+public abstract class BaseLazyImage implements ImageMatrix,Closeable {
 	private static final ILazyInitVariable<LazyImageFactory> lazyImageFactory = new BaseVolatile<LazyImageFactory>(){
 
 		@Override
@@ -160,17 +163,38 @@ public abstract class BaseLazyImage implements ImageMatrix {
 		return this;
 	}
 	/**
-	 * 释放资源
+	 * 释放资源,可以多次调用
 	 * @throws IOException
 	 */
+	@Override
 	public void close() throws IOException{
 
 	}
-	@Override
-	public void finalize() throws Throwable {
-		close();
-		this.imgBytes=null;
-		this.localFile=null;
+	/**
+	 * 检查解码区域和采样间隔
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param subsampling
+	 * @return 区域为全图返回{@code true}
+	 * @throws IllegalArgumentException 区域超出图像范围或{@code subsampling}<1
+	 * @see ImageMatrix#getMatrixRGB(int, int, int, int, int)
+	 */
+	protected boolean checkRegion(int x, int y, int width, int height, int subsampling){
+		if(x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > this.width || y + height > this.height || subsampling < 1){
+			throw new IllegalArgumentException(String.format("INVALID region x=%d,y=%d,width=%d,height=%d,subsampling=%d for image %dx%d",
+					x,y,width,height,subsampling,this.width,this.height));
+		}
+		return 0 == x && 0 == y && width == this.width && height == this.height;
+	}
+	/**
+	 * @param size 区域宽度或高度
+	 * @param subsampling 采样间隔
+	 * @return 按{@code subsampling}采样后的尺寸
+	 */
+	public static int subsampledSize(int size, int subsampling){
+		return (size + subsampling - 1) / subsampling;
 	}
 	/**
 	 * 读取图像基本信息，检查图像数据有效性
@@ -0,0 +1,278 @@
+package net.gdface.image;
+
+import java.util.concurrent.ForkJoinPool;
+
+import net.gdface.utils.Assert;
+import net.gdface.utils.ParallelRows;
+
+/**
+ * 像素格式转换核心函数<br>
+ * 所有函数处理连续存储的{@code pixels}个像素,只使用基本类型数组和整数运算,不依赖AWT/Android图像类;
+ * 源和目标可以是同一个数组(像素字节数相同时可以原地转换)<br>
+ * 灰度按 BT.601 整数权重计算:(77*R + 150*G + 29*B + 128) >> 8,
+ * YCbCr为JFIF(全范围)定义<br>
+ * 大图像可以通过{@link #convert(Kernel, Object, int, Object, int, int, int, ForkJoinPool)}按行分段并行转换
+ * @author guyadong
+ *
+ */
+public final class ColorKernels {
+	/** 并行转换时每个分段的最少像素数 */
+	private static final int MIN_PIXELS_PER_BAND = 64 * 1024;
+	/** YCbCr转RGB定点数(16位小数)查找表 */
+	private static final int[] CR_R = new int[256];
+	private static final int[] CB_B = new int[256];
+	private static final int[] CR_G = new int[256];
+	private static final int[] CB_G = new int[256];
+	static{
+		for(int i = 0; i < 256; ++i){
+			int x = i - 128;
+			CR_R[i] = (91881 * x + 32768) >> 16;
+			CB_B[i] = (116130 * x + 32768) >> 16;
+			CR_G[i] = -46802 * x;
+			CB_G[i] = -22554 * x + 32768;
+		}
+	}
+	private ColorKernels() {
+	}
+	private static int clamp(int v){
+		return 0 == (v & ~0xff) ? v : (v < 0 ? 0 : 255);
+	}
+	private static byte gray(int r, int g, int b){
+		return (byte) ((77 * r + 150 * g + 29 * b + 128) >> 8);
+	}
+	/**
+	 * ARGB(int,如{@code BufferedImage.getRGB},{@code Bitmap.getPixels}的结果)转BGR
+	 */
+	public static void argbToBGR(int[] src, int srcOff, byte[] dst, int dstOff, int pixels){
+		for(int end = srcOff + pixels; srcOff < end; ++srcOff, dstOff += 3){
+			int p = src[srcOff];
+			dst[dstOff] = (byte) p;
+			dst[dstOff + 1] = (byte) (p >>> 8);
+			dst[dstOff + 2] = (byte) (p >>> 16);
+		}
+	}
+	/**
+	 * ARGB(int)转RGB
+	 */
+	public static void argbToRGB(int[] src, int srcOff, byte[] dst, int dstOff, int pixels){
+		for(int end = srcOff + pixels; srcOff < end; ++srcOff, dstOff += 3){
+			int p = src[srcOff];
+			dst[dstOff] = (byte) (p >>> 16);
+			dst[dstOff + 1] = (byte) (p >>> 8);
+			dst[dstOff + 2] = (byte) p;
+		}
+	}
+	/**
+	 * ARGB(int)转RGBA
+	 */
+	public static void argbToRGBA(int[] src, int srcOff, byte[] dst, int dstOff, int pixels){
+		for(int end = srcOff + pixels; srcOff < end; ++srcOff, dstOff += 4){
+			int p = src[srcOff];
+			dst[dstOff] = (byte) (p >>> 16);
+			dst[dstOff + 1] = (byte) (p >>> 8);
+			dst[dstOff + 2] = (byte) p;
+			dst[dstOff + 3] = (byte) (p >>> 24);
+		}
+	}
+	/**
+	 * ARGB(int)转灰度
+	 */
+	public static void argbToGray(int[] src, int srcOff, byte[] dst, int dstOff, int pixels){
+		for(int end = srcOff + pixels; srcOff < end; ++srcOff, ++dstOff){
+			int p = src[srcOff];
+			dst[dstOff] = gray((p >>> 16) & 0xff, (p >>> 8) & 0xff, p & 0xff);
+		}
+	}
+	/**
+	 * BGR转RGB(交换第1,3字节),反向(RGB转BGR)同样适用,支持原地转换
+	 */
+	public static void bgrToRGB(byte[] src, int srcOff, byte[] dst, int dstOff, int pixels){
+		for(int end = srcOff + pixels * 3; srcOff < end; srcOff += 3, dstOff += 3){
+			byte b = src[srcOff];
+			byte g = src[srcOff + 1];
+			byte r = src[srcOff + 2];
+			dst[dstOff] = r;
+			dst[dstOff + 1] = g;
+			dst[dstOff + 2] = b;
+		}
+	}
+	/**
+	 * RGB转灰度
+	 */
+	public static void rgbToGray(byte[] src, int srcOff, byte[] dst, int dstOff, int pixels){
+		for(int end = srcOff + pixels * 3; srcOff < end; srcOff += 3, ++dstOff){
+			dst[dstOff] = gray(src[srcOff] & 0xff, src[srcOff + 1] & 0xff, src[srcOff + 2] & 0xff);
+		}
+	}
+	/**
+	 * BGR转灰度
+	 */
+	public static void bgrToGray(byte[] src, int srcOff, byte[] dst, int dstOff, int pixels){
+		for(int end = srcOff + pixels * 3; srcOff < end; srcOff += 3, ++dstOff){
+			dst[dstOff] = gray(src[srcOff + 2] & 0xff, src[srcOff + 1] & 0xff, src[srcOff] & 0xff);
+		}
+	}
+	/**
+	 * YCbCr(JFIF全范围,每像素3字节 Y,Cb,Cr)转BGR,支持原地转换
+	 */
+	public static void yCbCrToBGR(byte[] src, int srcOff, byte[] dst, int dstOff, int pixels){
+		int[] crr = CR_R, cbb = CB_B, crg = CR_G, cbg = CB_G;
+		for(int end = srcOff + pixels * 3; srcOff < end; srcOff += 3, dstOff += 3){
+			int y = src[srcOff] & 0xff;
+			int cb = src[srcOff + 1] & 0xff;
+			int cr = src[srcOff + 2] & 0xff;
+			dst[dstOff] = (byte) clamp(y + cbb[cb]);
+			dst[dstOff + 1] = (byte) clamp(y + ((cbg[cb] + crg[cr]) >> 16));
+			dst[dstOff + 2] = (byte) clamp(y + crr[cr]);
+		}
+	}
+	/**
+	 * RGBA转BGR(丢弃alpha)
+	 */
+	public static void rgbaToBGR(byte[] src, int srcOff, byte[] dst, int dstOff, int pixels){
+		for(int end = srcOff + pixels * 4; srcOff < end; srcOff += 4, dstOff += 3){
+			byte r = src[srcOff];
+			byte g = src[srcOff + 1];
+			dst[dstOff] = src[srcOff + 2];
+			dst[dstOff + 1] = g;
+			dst[dstOff + 2] = r;
+		}
+	}
+	/**
+	 * 转换函数,用于按类型调用和并行转换
+	 * @author guyadong
+	 *
+	 */
+	public static enum Kernel{
+		/** @see ColorKernels#argbToBGR(int[], int, byte[], int, int) */
+		ARGB_TO_BGR(1, 3){
+			@Override
+			public void apply(Object src, int srcOff, Object dst, int dstOff, int pixels) {
+				argbToBGR((int[]) src, srcOff, (byte[]) dst, dstOff, pixels);
+			}
+		},
+		/** @see ColorKernels#argbToRGB(int[], int, byte[], int, int) */
+		ARGB_TO_RGB(1, 3){
+			@Override
+			public void apply(Object src, int srcOff, Object dst, int dstOff, int pixels) {
+				argbToRGB((int[]) src, srcOff, (byte[]) dst, dstOff, pixels);
+			}
+		},
+		/** @see ColorKernels#argbToRGBA(int[], int, byte[], int, int) */
+		ARGB_TO_RGBA(1, 4){
+			@Override
+			public void apply(Object src, int srcOff, Object dst, int dstOff, int pixels) {
+				argbToRGBA((int[]) src, srcOff, (byte[]) dst, dstOff, pixels);
+			}
+		},
+		/** @see ColorKernels#argbToGray(int[], int, byte[], int, int) */
+		ARGB_TO_GRAY(1, 1){
+			@Override
+			public void apply(Object src, int srcOff, Object dst, int dstOff, int pixels) {
+				argbToGray((int[]) src, srcOff, (byte[]) dst, dstOff, pixels);
+			}
+		},
+		/** @see ColorKernels#bgrToRGB(byte[], int, byte[], int, int) */
+		BGR_TO_RGB(3, 3){
+			@Override
+			public void apply(Object src, int srcOff, Object dst, int dstOff, int pixels) {
+				bgrToRGB((byte[]) src, srcOff, (byte[]) dst, dstOff, pixels);
+			}
+		},
+		/** @see ColorKernels#rgbToGray(byte[], int, byte[], int, int) */
+		RGB_TO_GRAY(3, 1){
+			@Override
+			public void apply(Object src, int srcOff, Object dst, int dstOff, int pixels) {
+				rgbToGray((byte[]) src, srcOff, (byte[]) dst, dstOff, pixels);
+			}
+		},
+		/** @see ColorKernels#bgrToGray(byte[], int, byte[], int, int) */
+		BGR_TO_GRAY(3, 1){
+			@Override
+			public void apply(Object src, int srcOff, Object dst, int dstOff, int pixels) {
+				bgrToGray((byte[]) src, srcOff, (byte[]) dst, dstOff, pixels);
+			}
+		},
+		/** @see ColorKernels#yCbCrToBGR(byte[], int, byte[], int, int) */
+		YCBCR_TO_BGR(3, 3){
+			@Override
+			public void apply(Object src, int srcOff, Object dst, int dstOff, int pixels) {
+				yCbCrToBGR((byte[]) src, srcOff, (byte[]) dst, dstOff, pixels);
+			}
+		},
+		/** @see ColorKernels#rgbaToBGR(byte[], int, byte[], int, int) */
+		RGBA_TO_BGR(4, 3){
+			@Override
+			public void apply(Object src, int srcOff, Object dst, int dstOff, int pixels) {
+				rgbaToBGR((byte[]) src, srcOff, (byte[]) dst, dstOff, pixels);
+			}
+		};
+		private final int srcElements;
+		private final int dstElements;
+		private Kernel(int srcElements, int dstElements) {
+			this.srcElements = srcElements;
+			this.dstElements = dstElements;
+		}
+		/**
+		 * @return 每像素源数组元素数
+		 */
+		public int getSrcElements() {
+			return srcElements;
+		}
+		/**
+		 * @return 每像素目标数组元素数
+		 */
+		public int getDstElements() {
+			return dstElements;
+		}
+		/**
+		 * 转换{@code pixels}个像素
+		 * @param src 源数组({@code int[]}或{@code byte[]})
+		 * @param srcOff
+		 * @param dst 目标数组
+		 * @param dstOff
+		 * @param pixels
+		 */
+		public abstract void apply(Object src, int srcOff, Object dst, int dstOff, int pixels);
+	}
+	/**
+	 * 在默认线程池中转换{@code width x height}的连续存储图像
+	 * @see #convert(Kernel, Object, int, Object, int, int, int, ForkJoinPool)
+	 */
+	public static void convert(Kernel kernel, Object src, int srcOff, Object dst, int dstOff, int width, int height){
+		convert(kernel, src, srcOff, dst, dstOff, width, height, ParallelRows.getDefaultPool());
+	}
+	/**
+	 * 转换{@code width x height}的连续存储图像,像素较多时按行分段在{@code pool}中并行转换
+	 * @param kernel 转换函数
+	 * @param src 源数组
+	 * @param srcOff
+	 * @param dst 目标数组
+	 * @param dstOff
+	 * @param width
+	 * @param height
+	 * @param pool 为{@code null}时在调用线程中转换
+	 * @throws IllegalArgumentException 参数为{@code null}或数组长度不足
+	 */
+	public static void convert(final Kernel kernel, final Object src, final int srcOff, final Object dst, final int dstOff,
+			final int width, int height, ForkJoinPool pool){
+		Assert.notNull(kernel, "kernel");
+		Assert.notNull(src, "src");
+		Assert.notNull(dst, "dst");
+		if(width < 0 || height < 0 || srcOff < 0 || dstOff < 0
+				|| srcOff + (long)width * height * kernel.srcElements > java.lang.reflect.Array.getLength(src)
+				|| dstOff + (long)width * height * kernel.dstElements > java.lang.reflect.Array.getLength(dst)){
+			throw new IllegalArgumentException(String.format("INVALID range:width=%d,height=%d,srcOff=%d,dstOff=%d",width,height,srcOff,dstOff));
+		}
+		if(0 == width){
+			return;
+		}
+		new ParallelRows(){
+			@Override
+			protected void process(int start, int end) {
+				kernel.apply(src, srcOff + start * width * kernel.srcElements,
+						dst, dstOff + start * width * kernel.dstElements, (end - start) * width);
+			}
+		}.run(height, Math.max(1, MIN_PIXELS_PER_BAND / width), pool);
+	}
+}
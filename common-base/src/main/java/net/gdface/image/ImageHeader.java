@@ -0,0 +1,267 @@
+package net.gdface.image;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.gdface.utils.Assert;
+
+/**
+ * 图像文件头解析<br>
+ * 根据文件头的特征字节识别JPEG/PNG/BMP/GIF/WEBP格式,并从文件头(JPEG SOF段,PNG IHDR块等)中读取图像宽高,
+ * 不需要图像解码器,用于快速获取图像基本信息(如拒绝尺寸过大的图像)<br>
+ * 格式名与{@code ImageReader.getFormatName()}的小写形式一致:jpeg,png,bmp,gif,webp
+ * @author guyadong
+ *
+ */
+public final class ImageHeader {
+	/** 解析文件头时最多读取的字节数,JPEG的SOF段在此范围之外时不能解析 */
+	public static final int MAX_HEADER_SIZE = 64 * 1024;
+	private final String formatName;
+	private final int width;
+	private final int height;
+	private ImageHeader(String formatName, int width, int height) {
+		this.formatName = formatName;
+		this.width = width;
+		this.height = height;
+	}
+	/**
+	 * @return 格式名(小写)
+	 */
+	public String getFormatName() {
+		return formatName;
+	}
+	/**
+	 * @return 图像宽度
+	 */
+	public int getWidth() {
+		return width;
+	}
+	/**
+	 * @return 图像高度
+	 */
+	public int getHeight() {
+		return height;
+	}
+	@Override
+	public String toString() {
+		return String.format("%s %dx%d", formatName, width, height);
+	}
+	/**
+	 * @see #parse(byte[], int, int)
+	 */
+	public static ImageHeader parse(byte[] data){
+		Assert.notNull(data, "data");
+		return parse(data, 0, data.length);
+	}
+	/**
+	 * 解析图像文件头
+	 * @param data 图像数据(可以只包含文件头部分)
+	 * @param off 起始位置
+	 * @param len 数据长度
+	 * @return 不能识别的格式,数据不完整或格式不被支持(如JPEG lossless)时返回{@code null}
+	 * @throws IllegalArgumentException {@code data}为{@code null}或范围无效
+	 */
+	public static ImageHeader parse(byte[] data, int off, int len){
+		Assert.notNull(data, "data");
+		if(off < 0 || len < 0 || off + len > data.length){
+			throw new IllegalArgumentException(String.format("INVALID off=%d,len=%d",off,len));
+		}
+		if(len < 12){
+			return null;
+		}
+		try{
+			int b0 = data[off] & 0xff, b1 = data[off + 1] & 0xff;
+			if(0xff == b0 && 0xd8 == b1){
+				return parseJpeg(data, off, off + len);
+			}
+			if(0x89 == b0 && 'P' == b1 && 'N' == data[off + 2] && 'G' == data[off + 3]){
+				return parsePng(data, off, len);
+			}
+			if('G' == b0 && 'I' == b1 && 'F' == data[off + 2]){
+				return parseGif(data, off, off + len);
+			}
+			if('B' == b0 && 'M' == b1){
+				return parseBmp(data, off, len);
+			}
+			if('R' == b0 && 'I' == b1 && 'F' == data[off + 2] && 'F' == data[off + 3]
+					&& 'W' == data[off + 8] && 'E' == data[off + 9] && 'B' == data[off + 10] && 'P' == data[off + 11]){
+				return parseWebp(data, off, len);
+			}
+		}catch(ArrayIndexOutOfBoundsException e){
+			// 数据不完整
+		}
+		return null;
+	}
+	/**
+	 * 读取文件开始的最多{@link #MAX_HEADER_SIZE}字节解析图像文件头
+	 * @param file
+	 * @return 不能解析时返回{@code null}
+	 * @throws IOException
+	 * @see #parse(byte[], int, int)
+	 */
+	public static ImageHeader parse(File file) throws IOException{
+		Assert.notNull(file, "file");
+		InputStream in = new FileInputStream(file);
+		try{
+			return parse(in);
+		}finally{
+			in.close();
+		}
+	}
+	/**
+	 * 从输入流中读取最多{@link #MAX_HEADER_SIZE}字节解析图像文件头,不关闭输入流
+	 * @param in
+	 * @return 不能解析时返回{@code null}
+	 * @throws IOException
+	 * @see #parse(byte[], int, int)
+	 */
+	public static ImageHeader parse(InputStream in) throws IOException{
+		Assert.notNull(in, "in");
+		byte[] buffer = new byte[MAX_HEADER_SIZE];
+		int len = 0, n;
+		while(len < buffer.length && (n = in.read(buffer, len, buffer.length - len)) != -1){
+			len += n;
+		}
+		return parse(buffer, 0, len);
+	}
+	private static int be16(byte[] b, int i){
+		return ((b[i] & 0xff) << 8) | (b[i + 1] & 0xff);
+	}
+	private static int be32(byte[] b, int i){
+		return (be16(b, i) << 16) | be16(b, i + 2);
+	}
+	private static int le16(byte[] b, int i){
+		return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8);
+	}
+	private static int le24(byte[] b, int i){
+		return le16(b, i) | ((b[i + 2] & 0xff) << 16);
+	}
+	private static int le32(byte[] b, int i){
+		return le16(b, i) | (le16(b, i + 2) << 16);
+	}
+	private static ImageHeader valid(String formatName, int width, int height){
+		return width > 0 && height > 0 ? new ImageHeader(formatName, width, height) : null;
+	}
+	/**
+	 * 查找SOF段,只接受ImageIO支持的SOF0(baseline),SOF1(extended),SOF2(progressive)
+	 */
+	private static ImageHeader parseJpeg(byte[] b, int i, int end){
+		i += 2;
+		while(i + 4 <= end){
+			if(0xff != (b[i] & 0xff)){
+				return null;
+			}
+			int marker = b[i + 1] & 0xff;
+			if(0xff == marker){
+				// 填充字节
+				++i;
+				continue;
+			}
+			i += 2;
+			if(0x01 == marker || (marker >= 0xd0 && marker <= 0xd7)){
+				// 没有长度字段的标记
+				continue;
+			}
+			if(0xd9 == marker || 0xda == marker){
+				// EOI,SOS之前没有找到SOF
+				return null;
+			}
+			int length = be16(b, i);
+			if(marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc){
+				if(marker > 0xc2 || i + 7 > end){
+					return null;
+				}
+				return valid("jpeg", be16(b, i + 5), be16(b, i + 3));
+			}
+			if(length < 2){
+				return null;
+			}
+			i += length;
+		}
+		return null;
+	}
+	private static ImageHeader parsePng(byte[] b, int i, int len){
+		if(len < 24 || 0x0d != b[i + 4] || 0x0a != b[i + 5] || 0x1a != b[i + 6] || 0x0a != b[i + 7]
+				|| 'I' != b[i + 12] || 'H' != b[i + 13] || 'D' != b[i + 14] || 'R' != b[i + 15]){
+			return null;
+		}
+		return valid("png", be32(b, i + 16), be32(b, i + 20));
+	}
+	/**
+	 * 返回第一帧的宽高(与GIFImageReader.getWidth(0)一致),而不是逻辑屏幕大小
+	 */
+	private static ImageHeader parseGif(byte[] b, int i, int end){
+		if('8' != b[i + 3] || ('7' != b[i + 4] && '9' != b[i + 4]) || 'a' != b[i + 5]){
+			return null;
+		}
+		int flags = b[i + 10] & 0xff;
+		i += 13;
+		if(0 != (flags & 0x80)){
+			// 全局颜色表
+			i += 3 << ((flags & 7) + 1);
+		}
+		while(i < end){
+			int block = b[i] & 0xff;
+			if(0x2c == block){
+				return valid("gif", le16(b, i + 5), le16(b, i + 7));
+			}
+			if(0x21 != block){
+				return null;
+			}
+			// 扩展块:标签之后是若干子块,以长度为0的子块结束
+			i += 2;
+			int size;
+			while((size = b[i] & 0xff) != 0){
+				i += size + 1;
+			}
+			++i;
+		}
+		return null;
+	}
+	private static ImageHeader parseBmp(byte[] b, int i, int len){
+		if(len < 26){
+			return null;
+		}
+		int headerSize = le32(b, i + 14);
+		if(12 == headerSize){
+			// OS/2 BITMAPCOREHEADER
+			return valid("bmp", le16(b, i + 18), le16(b, i + 20));
+		}
+		if(headerSize < 40){
+			return null;
+		}
+		// 高度为负表示自上而下存储
+		return valid("bmp", le32(b, i + 18), Math.abs(le32(b, i + 22)));
+	}
+	private static ImageHeader parseWebp(byte[] b, int i, int len){
+		if(len < 30){
+			return null;
+		}
+		int c = i + 12;
+		if('V' != b[c] || 'P' != b[c + 1] || '8' != b[c + 2]){
+			return null;
+		}
+		switch(b[c + 3]){
+		case ' ':
+			// 有损格式:帧标记(3字节),起始码 9d 01 2a,14位宽高
+			if(0x9d != (b[i + 23] & 0xff) || 0x01 != b[i + 24] || 0x2a != b[i + 25]){
+				return null;
+			}
+			return valid("webp", le16(b, i + 26) & 0x3fff, le16(b, i + 28) & 0x3fff);
+		case 'L':
+			// 无损格式:签名0x2f,14位(宽-1),14位(高-1)
+			if(0x2f != b[i + 20]){
+				return null;
+			}
+			int bits = le32(b, i + 21);
+			return valid("webp", (bits & 0x3fff) + 1, ((bits >>> 14) & 0x3fff) + 1);
+		case 'X':
+			// 扩展格式:24位(画布宽-1),24位(画布高-1)
+			return valid("webp", le24(b, i + 24) + 1, le24(b, i + 27) + 1);
+		default:
+			return null;
+		}
+	}
+}
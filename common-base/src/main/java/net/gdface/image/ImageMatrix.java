@@ -38,5 +38,31 @@ public interface ImageMatrix {
 	 * @throws UnsupportedFormatException
 	 */
 	byte[] getMatrixRGBA() throws UnsupportedFormatException;
+	/**
+	 * 对图像指定区域按采样间隔解码返回RGB格式矩阵数据<br>
+	 * 返回矩阵的宽高为 (width+subsampling-1)/subsampling,(height+subsampling-1)/subsampling,
+	 * 内容为区域图像近似缩小的结果,不保证是逐点采样的像素值:
+	 * 标准Java平台(ImageIO)实现从区域左上角开始每隔{@code subsampling}个像素取一个像素,
+	 * Android平台实现由解码器按2的幂采样后再缩放到上述尺寸
+	 * @param x 区域左上角x坐标
+	 * @param y 区域左上角y坐标
+	 * @param width 区域宽度
+	 * @param height 区域高度
+	 * @param subsampling 采样间隔(>=1),为1时不缩小
+	 * @return
+	 * @throws UnsupportedFormatException
+	 * @throws IllegalArgumentException 区域超出图像范围或{@code subsampling}<1
+	 */
+	byte[] getMatrixRGB(int x, int y, int width, int height, int subsampling) throws UnsupportedFormatException;
+	/**
+	 * 对图像指定区域按采样间隔解码返回BGR格式矩阵数据
+	 * @see #getMatrixRGB(int, int, int, int, int)
+	 */
+	byte[] getMatrixBGR(int x, int y, int width, int height, int subsampling) throws UnsupportedFormatException;
+	/**
+	 * 对图像指定区域按采样间隔解码返回灰度图像矩阵数据
+	 * @see #getMatrixRGB(int, int, int, int, int)
+	 */
+	byte[] getMatrixGray(int x, int y, int width, int height, int subsampling) throws UnsupportedFormatException;
 
 }
@@ -0,0 +1,35 @@
+package net.gdface.image;
+
+/**
+ * 图像矩阵格式,矩阵按行存储,每个像素的通道连续存储
+ * @author guyadong
+ *
+ */
+public enum MatrixType {
+	/** 每像素3字节 R,G,B */
+	RGB(3),
+	/** 每像素3字节 B,G,R */
+	BGR(3),
+	/** 每像素4字节 R,G,B,A */
+	RGBA(4),
+	/** 每像素1字节灰度 */
+	GRAY(1);
+	private final int channels;
+	private MatrixType(int channels) {
+		this.channels = channels;
+	}
+	/**
+	 * @return 每像素字节数
+	 */
+	public int getChannels() {
+		return channels;
+	}
+	/**
+	 * @param width
+	 * @param height
+	 * @return {@code width x height}图像的矩阵字节数
+	 */
+	public int sizeOf(int width, int height){
+		return width * height * channels;
+	}
+}
@@ -0,0 +1,229 @@
+package net.gdface.image;
+
+import java.util.concurrent.ForkJoinPool;
+
+import net.gdface.utils.Assert;
+import net.gdface.utils.ParallelRows;
+
+/**
+ * 图像矩阵缩放(重采样)<br>
+ * 对按行存储,每像素{@code channels}字节(1~4,如GRAY,RGB,BGR,RGBA)的矩阵做可分离卷积缩放:
+ * 先水平方向再垂直方向,每个方向预先计算每个输出像素的卷积权重(定点整数);
+ * 缩小时卷积核按缩小比例放大,相当于先低通滤波再采样,不会产生锯齿<br>
+ * 两个方向都按行分段在{@link ForkJoinPool}中并行计算
+ * @author guyadong
+ *
+ */
+public final class Resampler {
+	/**
+	 * 重采样滤波器
+	 * @author guyadong
+	 *
+	 */
+	public static enum Filter{
+		/** 区域平均(box),缩小时等同于{@code Image.SCALE_AREA_AVERAGING} */
+		AREA(0.5){
+			@Override
+			double weight(double x) {
+				return x >= -0.5 && x < 0.5 ? 1.0 : 0.0;
+			}
+		},
+		/** 双线性(三角形核) */
+		BILINEAR(1.0){
+			@Override
+			double weight(double x) {
+				x = Math.abs(x);
+				return x < 1.0 ? 1.0 - x : 0.0;
+			}
+		},
+		/** 双三次(Catmull-Rom,a=-0.5) */
+		BICUBIC(2.0){
+			@Override
+			double weight(double x) {
+				final double a = -0.5;
+				x = Math.abs(x);
+				if(x < 1.0){
+					return ((a + 2.0) * x - (a + 3.0)) * x * x + 1;
+				}
+				if(x < 2.0){
+					return (((x - 5) * x + 8) * x - 4) * a;
+				}
+				return 0.0;
+			}
+		};
+		/** 卷积核半径(未缩放) */
+		private final double support;
+		private Filter(double support) {
+			this.support = support;
+		}
+		abstract double weight(double x);
+	}
+	/** 权重定点数小数位数 */
+	private static final int PRECISION_BITS = 16;
+	private static final int HALF = 1 << (PRECISION_BITS - 1);
+	/** 并行计算时每个分段的最少输出字节数 */
+	private static final int MIN_BYTES_PER_BAND = 64 * 1024;
+	private Resampler() {
+	}
+	/**
+	 * 一个方向上每个输出像素的卷积系数
+	 */
+	private static class Coefficients{
+		/** 输出像素i对应的第一个输入像素 */
+		final int[] start;
+		/** 输出像素i对应的输入像素数 */
+		final int[] count;
+		/** 输出像素i的权重从 i*size 开始 */
+		final int[] weights;
+		final int size;
+		Coefficients(int inSize, int outSize, Filter filter){
+			double scale = (double) inSize / outSize;
+			double filterScale = Math.max(1.0, scale);
+			double support = filter.support * filterScale;
+			this.size = (int) Math.ceil(support) * 2 + 1;
+			this.start = new int[outSize];
+			this.count = new int[outSize];
+			this.weights = new int[outSize * size];
+			double[] w = new double[size];
+			for(int i = 0; i < outSize; ++i){
+				double center = (i + 0.5) * scale;
+				int min = Math.max(0, (int) Math.floor(center - support));
+				int max = Math.min(inSize, (int) Math.ceil(center + support));
+				int n = Math.min(max - min, size);
+				double total = 0;
+				for(int k = 0; k < n; ++k){
+					w[k] = filter.weight((k + min - center + 0.5) / filterScale);
+					total += w[k];
+				}
+				if(0 == total){
+					// 放大时AREA核可能没有覆盖任何像素中心,取最近的像素
+					n = 1;
+					min = Math.min(inSize - 1, (int) center);
+					w[0] = total = 1;
+				}
+				start[i] = min;
+				count[i] = n;
+				for(int k = 0; k < n; ++k){
+					weights[i * size + k] = (int) Math.round(w[k] / total * (1 << PRECISION_BITS));
+				}
+			}
+		}
+	}
+	private static byte clamp(int v){
+		v = (v + HALF) >> PRECISION_BITS;
+		return (byte) (0 == (v & ~0xff) ? v : (v < 0 ? 0 : 255));
+	}
+	/**
+	 * 在默认线程池中缩放
+	 * @see #resize(byte[], int, int, int, byte[], int, int, Filter, ForkJoinPool)
+	 */
+	public static byte[] resize(byte[] src, int srcWidth, int srcHeight, int channels, int dstWidth, int dstHeight, Filter filter){
+		byte[] dst = new byte[dstWidth * dstHeight * channels];
+		resize(src, srcWidth, srcHeight, channels, dst, dstWidth, dstHeight, filter, ParallelRows.getDefaultPool());
+		return dst;
+	}
+	/**
+	 * 缩放图像矩阵
+	 * @param src 源矩阵
+	 * @param srcWidth
+	 * @param srcHeight
+	 * @param channels 每像素字节数(1~4)
+	 * @param dst 目标矩阵,长度不小于{@code dstWidth*dstHeight*channels}
+	 * @param dstWidth
+	 * @param dstHeight
+	 * @param filter 滤波器,为{@code null}时为{@link Filter#BICUBIC}
+	 * @param pool 线程池,为{@code null}时在调用线程中计算
+	 * @throws IllegalArgumentException 参数无效
+	 */
+	public static void resize(final byte[] src, final int srcWidth, int srcHeight, final int channels,
+			final byte[] dst, final int dstWidth, final int dstHeight, Filter filter, ForkJoinPool pool){
+		Assert.notNull(src, "src");
+		Assert.notNull(dst, "dst");
+		if(srcWidth <= 0 || srcHeight <= 0 || dstWidth <= 0 || dstHeight <= 0 || channels < 1 || channels > 4
+				|| src.length < srcWidth * srcHeight * channels || dst.length < dstWidth * dstHeight * channels){
+			throw new IllegalArgumentException(String.format("INVALID argument:src %dx%d,dst %dx%d,channels=%d",
+					srcWidth,srcHeight,dstWidth,dstHeight,channels));
+		}
+		if(null == filter){
+			filter = Filter.BICUBIC;
+		}
+		if(srcWidth == dstWidth && srcHeight == dstHeight){
+			System.arraycopy(src, 0, dst, 0, dstWidth * dstHeight * channels);
+			return;
+		}
+		final Coefficients vertical = srcHeight == dstHeight ? null : new Coefficients(srcHeight, dstHeight, filter);
+		// 水平缩放只计算垂直方向用到的行
+		final int firstRow = null == vertical ? 0 : vertical.start[0];
+		int lastRow = null == vertical ? srcHeight : vertical.start[dstHeight - 1] + vertical.count[dstHeight - 1];
+		final byte[] temp;
+		if(srcWidth == dstWidth){
+			temp = src;
+		}else{
+			final Coefficients horizontal = new Coefficients(srcWidth, dstWidth, filter);
+			final byte[] out = null == vertical ? dst : new byte[(lastRow - firstRow) * dstWidth * channels];
+			final int outFirstRow = null == vertical ? 0 : firstRow;
+			new ParallelRows(){
+				@Override
+				protected void process(int start, int end) {
+					for(int y = start + firstRow; y < end + firstRow; ++y){
+						horizontal(src, y * srcWidth * channels, out, (y - outFirstRow) * dstWidth * channels, channels, horizontal);
+					}
+				}
+			}.run(lastRow - firstRow, rowsPerBand(dstWidth * channels), pool);
+			temp = out;
+		}
+		if(null != vertical){
+			final int tempFirstRow = temp == src ? 0 : firstRow;
+			final int rowBytes = dstWidth * channels;
+			new ParallelRows(){
+				@Override
+				protected void process(int start, int end) {
+					for(int y = start; y < end; ++y){
+						vertical(temp, rowBytes, tempFirstRow, dst, y * rowBytes, y, vertical);
+					}
+				}
+			}.run(dstHeight, rowsPerBand(rowBytes), pool);
+		}
+	}
+	private static int rowsPerBand(int rowBytes){
+		return Math.max(1, MIN_BYTES_PER_BAND / rowBytes);
+	}
+	/**
+	 * 水平缩放一行
+	 */
+	private static void horizontal(byte[] src, int srcOff, byte[] dst, int dstOff, int channels, Coefficients c){
+		int[] weights = c.weights;
+		int outSize = c.start.length;
+		for(int x = 0; x < outSize; ++x){
+			int s = srcOff + c.start[x] * channels;
+			int w = x * c.size;
+			int n = c.count[x];
+			for(int ch = 0; ch < channels; ++ch){
+				int sum = 0;
+				for(int k = 0, p = s + ch; k < n; ++k, p += channels){
+					sum += (src[p] & 0xff) * weights[w + k];
+				}
+				dst[dstOff++] = clamp(sum);
+			}
+		}
+	}
+	/**
+	 * 垂直缩放输出一行
+	 * @param src 水平缩放后的矩阵
+	 * @param rowBytes 每行字节数
+	 * @param firstRow {@code src}第一行对应的源图像行号
+	 */
+	private static void vertical(byte[] src, int rowBytes, int firstRow, byte[] dst, int dstOff, int y, Coefficients c){
+		int[] weights = c.weights;
+		int s = (c.start[y] - firstRow) * rowBytes;
+		int w = y * c.size;
+		int n = c.count[y];
+		for(int i = 0; i < rowBytes; ++i){
+			int sum = 0;
+			for(int k = 0, p = s + i; k < n; ++k, p += rowBytes){
+				sum += (src[p] & 0xff) * weights[w + k];
+			}
+			dst[dstOff + i] = clamp(sum);
+		}
+	}
+}
@@ -0,0 +1,786 @@
+package net.gdface.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Base64编解码器<br>
+ * 直接在byte[]/{@link ByteBuffer}/{@link CharSequence}上编解码,可以输出到调用者提供的缓冲区,
+ * 解码时在一次遍历中同时完成校验和转换,不生成中间数组<br>
+ * 提供三种编码方式:
+ * <ul>
+ * <li>{@link #STANDARD} RFC4648 标准字符表,严格解码(不允许非Base64字符)</li>
+ * <li>{@link #URL_SAFE} RFC4648 URL安全字符表('-','_'),严格解码</li>
+ * <li>{@link #MIME} RFC2045 标准字符表,编码时每76个字符插入"\r\n",解码时忽略所有非Base64字符</li>
+ * </ul>
+ * 解码时结尾的填充字符('=')可以省略,对象线程安全
+ * @author guyadong
+ *
+ */
+public class Base64Codec {
+	private static final byte[] STANDARD_ALPHABET =
+			"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(Charset.forName("US-ASCII"));
+	private static final byte[] URL_SAFE_ALPHABET =
+			"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(Charset.forName("US-ASCII"));
+	private static final byte PAD = '=';
+	/** 解码表中非法字符的值 */
+	private static final byte INVALID = -1;
+	/** 解码表中填充字符的值 */
+	private static final byte PADDING = -2;
+	/** 解码表中忽略字符的值 */
+	private static final byte IGNORE = -3;
+	/** MIME每行最大字符数 */
+	private static final int MIME_LINE_LENGTH = 76;
+	private static final byte[] CRLF = {'\r','\n'};
+	/** 分段解码时每段的4字符组数 */
+	private static final int SEGMENT_QUADS = 1024;
+	/** RFC4648 标准编码 */
+	public static final Base64Codec STANDARD = new Base64Codec(STANDARD_ALPHABET, 0, null, false);
+	/** RFC4648 URL安全编码 */
+	public static final Base64Codec URL_SAFE = new Base64Codec(URL_SAFE_ALPHABET, 0, null, false);
+	/** RFC2045 MIME编码 */
+	public static final Base64Codec MIME = new Base64Codec(STANDARD_ALPHABET, MIME_LINE_LENGTH, CRLF, true);
+
+	private final byte[] encodeTable;
+	private final char[] encodeChars;
+	private final byte[] decodeTable = new byte[256];
+	/** 每行最大字符数(4的倍数),为0不分行 */
+	private final int lineLength;
+	private final byte[] lineSeparator;
+	/** 解码时是否忽略非Base64字符 */
+	private final boolean lenient;
+	/**
+	 * @param alphabet 64个字符的编码表
+	 * @param lineLength 每行最大字符数,为0不分行,向下取整为4的倍数
+	 * @param lineSeparator 行分隔符
+	 * @param lenient 解码时是否忽略非Base64字符
+	 */
+	private Base64Codec(byte[] alphabet, int lineLength, byte[] lineSeparator, boolean lenient) {
+		this.encodeTable = alphabet;
+		this.encodeChars = new char[alphabet.length];
+		for(int i = 0; i < alphabet.length; ++i){
+			encodeChars[i] = (char) alphabet[i];
+		}
+		this.lineLength = lineLength > 0 && null != lineSeparator ? lineLength & ~3 : 0;
+		this.lineSeparator = null == lineSeparator ? new byte[0] : lineSeparator;
+		this.lenient = lenient;
+		Arrays.fill(decodeTable, lenient ? IGNORE : INVALID);
+		for(int i = 0; i < alphabet.length; ++i){
+			decodeTable[alphabet[i]] = (byte) i;
+		}
+		decodeTable[PAD] = PADDING;
+	}
+	/**
+	 * 返回使用相同字符表和解码方式,按指定行长度和行分隔符分行编码的对象
+	 * @param lineLength 每行最大字符数,向下取整为4的倍数,为0不分行
+	 * @param lineSeparator 行分隔符,只能包含非Base64字符
+	 * @return
+	 * @throws IllegalArgumentException {@code lineSeparator}包含Base64字符
+	 */
+	public Base64Codec withLineSeparator(int lineLength, String lineSeparator){
+		byte[] separator = null == lineSeparator ? null : lineSeparator.getBytes(Charset.forName("US-ASCII"));
+		if(null != separator){
+			for(byte b : separator){
+				if(decodeTable[b & 0xff] != INVALID && decodeTable[b & 0xff] != IGNORE){
+					throw new IllegalArgumentException("INVALID lineSeparator");
+				}
+			}
+		}
+		return new Base64Codec(encodeTable, lineLength, separator, lenient);
+	}
+	/**
+	 * 返回{@code length}字节数据编码后的字符数(包含行分隔符)
+	 * @param length
+	 * @return
+	 */
+	public int encodedLength(int length){
+		long chars = (length + 2L) / 3 * 4;
+		if(lineLength > 0 && chars > 0){
+			chars += (chars - 1) / lineLength * lineSeparator.length;
+		}
+		if(chars > Integer.MAX_VALUE){
+			throw new IllegalArgumentException(String.format("input too large:%d",length));
+		}
+		return (int) chars;
+	}
+	/**
+	 * 将{@code src}中[off,off+len)的数据编码后写入{@code dst}从{@code dstOff}开始的位置
+	 * @param src
+	 * @param off
+	 * @param len
+	 * @param dst 剩余长度不小于{@link #encodedLength(int)}
+	 * @param dstOff
+	 * @return {@code dst}中写入结束的位置
+	 * @throws IndexOutOfBoundsException 数组越界
+	 */
+	public int encode(byte[] src, int off, int len, byte[] dst, int dstOff){
+		final byte[] table = encodeTable;
+		int end = off + len - len % 3;
+		int p = dstOff, lineChars = 0;
+		while(off < end){
+			if(lineLength > 0 && lineChars == lineLength){
+				for(byte b : lineSeparator){
+					dst[p++] = b;
+				}
+				lineChars = 0;
+			}
+			int bits = (src[off++] & 0xff) << 16 | (src[off++] & 0xff) << 8 | (src[off++] & 0xff);
+			dst[p++] = table[bits >>> 18];
+			dst[p++] = table[(bits >>> 12) & 0x3f];
+			dst[p++] = table[(bits >>> 6) & 0x3f];
+			dst[p++] = table[bits & 0x3f];
+			lineChars += 4;
+		}
+		int rest = len % 3;
+		if(rest > 0){
+			if(lineLength > 0 && lineChars == lineLength){
+				for(byte b : lineSeparator){
+					dst[p++] = b;
+				}
+			}
+			int bits = rest == 1 ? (src[off] & 0xff) << 16 : (src[off] & 0xff) << 16 | (src[off + 1] & 0xff) << 8;
+			dst[p++] = table[bits >>> 18];
+			dst[p++] = table[(bits >>> 12) & 0x3f];
+			dst[p++] = rest == 1 ? PAD : table[(bits >>> 6) & 0x3f];
+			dst[p++] = PAD;
+		}
+		return p;
+	}
+	/**
+	 * 将{@code src}中[off,off+len)的数据编码后写入{@code dst}从{@code dstOff}开始的位置
+	 * @see #encode(byte[], int, int, byte[], int)
+	 */
+	public int encode(byte[] src, int off, int len, char[] dst, int dstOff){
+		final char[] table = encodeChars;
+		int end = off + len - len % 3;
+		int p = dstOff, lineChars = 0;
+		while(off < end){
+			if(lineLength > 0 && lineChars == lineLength){
+				for(byte b : lineSeparator){
+					dst[p++] = (char) b;
+				}
+				lineChars = 0;
+			}
+			int bits = (src[off++] & 0xff) << 16 | (src[off++] & 0xff) << 8 | (src[off++] & 0xff);
+			dst[p++] = table[bits >>> 18];
+			dst[p++] = table[(bits >>> 12) & 0x3f];
+			dst[p++] = table[(bits >>> 6) & 0x3f];
+			dst[p++] = table[bits & 0x3f];
+			lineChars += 4;
+		}
+		int rest = len % 3;
+		if(rest > 0){
+			if(lineLength > 0 && lineChars == lineLength){
+				for(byte b : lineSeparator){
+					dst[p++] = (char) b;
+				}
+			}
+			int bits = rest == 1 ? (src[off] & 0xff) << 16 : (src[off] & 0xff) << 16 | (src[off + 1] & 0xff) << 8;
+			dst[p++] = table[bits >>> 18];
+			dst[p++] = table[(bits >>> 12) & 0x3f];
+			dst[p++] = rest == 1 ? (char) PAD : table[(bits >>> 6) & 0x3f];
+			dst[p++] = (char) PAD;
+		}
+		return p;
+	}
+	/**
+	 * 编码
+	 * @param src
+	 * @param off
+	 * @param len
+	 * @return 编码后的字节数组
+	 */
+	public byte[] encode(byte[] src, int off, int len){
+		byte[] dst = new byte[encodedLength(len)];
+		encode(src, off, len, dst, 0);
+		return dst;
+	}
+	/**
+	 * 编码
+	 * @param src
+	 * @return 编码后的字节数组,{@code src}为{@code null}返回{@code null}
+	 */
+	public byte[] encode(byte[] src){
+		return null == src ? null : encode(src, 0, src.length);
+	}
+	/**
+	 * 编码为字符串
+	 * @param src
+	 * @param off
+	 * @param len
+	 * @return
+	 */
+	public String encodeToString(byte[] src, int off, int len){
+		char[] dst = new char[encodedLength(len)];
+		encode(src, off, len, dst, 0);
+		return new String(dst);
+	}
+	/**
+	 * 编码为字符串
+	 * @param src
+	 * @return {@code src}为{@code null}返回{@code null}
+	 */
+	public String encodeToString(byte[] src){
+		return null == src ? null : encodeToString(src, 0, src.length);
+	}
+	/**
+	 * @return 分块编码时每块的数据长度,为3的倍数,分行时每块编码后恰好为整行
+	 */
+	private int chunkSize(){
+		return (lineLength > 0 ? lineLength / 4 * 3 : 3) * 256;
+	}
+	/**
+	 * 将{@code src}中[off,off+len)的数据分块编码后写入{@code out},只使用固定大小的临时数组
+	 * @param src
+	 * @param off
+	 * @param len
+	 * @param out
+	 * @throws IOException
+	 */
+	public void encode(byte[] src, int off, int len, OutputStream out) throws IOException{
+		Assert.notNull(src, "src");
+		Assert.notNull(out, "out");
+		int chunkSize = chunkSize();
+		byte[] buffer = new byte[encodedLength(Math.min(chunkSize, len))];
+		for(int end = off + len; off < end;){
+			int n = Math.min(chunkSize, end - off);
+			out.write(buffer, 0, encode(src, off, n, buffer, 0));
+			off += n;
+			if(lineLength > 0 && off < end){
+				out.write(lineSeparator);
+			}
+		}
+	}
+	/**
+	 * 将{@code src}的剩余数据编码后写入{@code dst}的当前位置,
+	 * {@code src}和{@code dst}的position前移
+	 * @param src
+	 * @param dst 剩余空间不小于{@link #encodedLength(int)}
+	 * @return {@code dst}
+	 * @throws BufferOverflowException {@code dst}剩余空间不足
+	 */
+	public ByteBuffer encode(ByteBuffer src, ByteBuffer dst){
+		Assert.notNull(src, "src");
+		Assert.notNull(dst, "dst");
+		int len = src.remaining();
+		int length = encodedLength(len);
+		if(dst.remaining() < length){
+			throw new BufferOverflowException();
+		}
+		if(src.hasArray() && dst.hasArray()){
+			encode(src.array(), src.arrayOffset() + src.position(), len,
+					dst.array(), dst.arrayOffset() + dst.position());
+			src.position(src.limit());
+			dst.position(dst.position() + length);
+			return dst;
+		}
+		// 非数组缓冲区分块编码,每块数据长度为3的倍数且编码后恰好为整行
+		int chunkSize = chunkSize();
+		byte[] in = new byte[chunkSize];
+		byte[] out = new byte[encodedLength(chunkSize)];
+		while(src.hasRemaining()){
+			int n = Math.min(chunkSize, src.remaining());
+			src.get(in, 0, n);
+			dst.put(out, 0, encode(in, 0, n, out, 0));
+			if(lineLength > 0 && src.hasRemaining()){
+				dst.put(lineSeparator);
+			}
+		}
+		return dst;
+	}
+	/**
+	 * 编码{@code src}的剩余数据,{@code src}的position前移
+	 * @param src
+	 * @return 编码后的数据(position为0)
+	 */
+	public ByteBuffer encode(ByteBuffer src){
+		Assert.notNull(src, "src");
+		ByteBuffer dst = ByteBuffer.allocate(encodedLength(src.remaining()));
+		encode(src, dst);
+		dst.flip();
+		return dst;
+	}
+	/**
+	 * 根据Base64数据长度和结尾的填充字符计算解码后的长度
+	 * @param length 不计结尾填充字符的Base64字符数
+	 * @return
+	 * @throws IllegalArgumentException 长度无效
+	 */
+	private static int decodedLength(long length){
+		if(length % 4 == 1){
+			throw new IllegalArgumentException("INVALID base64 length");
+		}
+		return (int) (length / 4 * 3 + (length % 4 == 0 ? 0 : length % 4 - 1));
+	}
+	/**
+	 * 返回{@code src}中[off,off+len)的Base64数据解码后的字节数<br>
+	 * 严格模式下只检查结尾的填充字符;{@link #MIME}需要遍历统计有效字符数
+	 * @param src
+	 * @param off
+	 * @param len
+	 * @return
+	 * @throws IllegalArgumentException 长度无效
+	 */
+	public int decodedLength(CharSequence src, int off, int len){
+		if(lenient){
+			long count = 0;
+			for(int i = off, end = off + len; i < end; ++i){
+				char c = src.charAt(i);
+				int v = c < 256 ? decodeTable[c] : IGNORE;
+				if(v >= 0){
+					++count;
+				}else if(v == PADDING){
+					break;
+				}
+			}
+			return decodedLength(count);
+		}
+		int end = off + len;
+		while(end > off && end > off + len - 2 && src.charAt(end - 1) == PAD){
+			--end;
+		}
+		return decodedLength(end - off);
+	}
+	/**
+	 * @see #decodedLength(CharSequence, int, int)
+	 */
+	public int decodedLength(byte[] src, int off, int len){
+		if(lenient){
+			long count = 0;
+			for(int i = off, end = off + len; i < end; ++i){
+				int v = decodeTable[src[i] & 0xff];
+				if(v >= 0){
+					++count;
+				}else if(v == PADDING){
+					break;
+				}
+			}
+			return decodedLength(count);
+		}
+		int end = off + len;
+		while(end > off && end > off + len - 2 && src[end - 1] == PAD){
+			--end;
+		}
+		return decodedLength(end - off);
+	}
+	/**
+	 * 解码结尾不完整的4字符组,检查填充字符之后的数据
+	 * @param bits 已累积的数据
+	 * @param n 已累积的字符数
+	 * @param dst
+	 * @param p
+	 * @return {@code dst}中写入结束的位置
+	 */
+	private static int decodeTail(int bits, int n, byte[] dst, int p){
+		switch(n){
+		case 0:
+			return p;
+		case 2:
+			dst[p++] = (byte) (bits >>> 4);
+			return p;
+		case 3:
+			dst[p++] = (byte) (bits >>> 10);
+			dst[p++] = (byte) (bits >>> 2);
+			return p;
+		default:
+			throw new IllegalArgumentException("INVALID base64 length");
+		}
+	}
+	/**
+	 * 检查填充字符之后的数据,返回{@code true}为合法
+	 * @param v 字符对应的解码表的值
+	 * @param pads 已有的填充字符数(包含当前字符)
+	 * @param n 已累积的字符数
+	 */
+	private boolean checkAfterPad(int v, int pads, int n){
+		if(v == PADDING){
+			return n + pads <= 4;
+		}
+		return lenient && v == IGNORE;
+	}
+	/**
+	 * 将{@code src}中[off,off+len)的Base64数据解码后写入{@code dst}从{@code dstOff}开始的位置,
+	 * 在一次遍历中完成校验和解码
+	 * @param src
+	 * @param off
+	 * @param len
+	 * @param dst 剩余长度不小于{@link #decodedLength(byte[], int, int)}
+	 * @param dstOff
+	 * @return {@code dst}中写入结束的位置
+	 * @throws IllegalArgumentException 非法的Base64数据
+	 * @throws IndexOutOfBoundsException 数组越界
+	 */
+	public int decode(byte[] src, int off, int len, byte[] dst, int dstOff){
+		final byte[] table = decodeTable;
+		int bits = 0, n = 0, p = dstOff;
+		for(int i = off, end = off + len; i < end; ++i){
+			// 快速路径:一次解码4个有效字符
+			while(0 == n && i + 4 <= end){
+				int a = table[src[i] & 0xff], b = table[src[i + 1] & 0xff],
+						c = table[src[i + 2] & 0xff], d = table[src[i + 3] & 0xff];
+				if((a | b | c | d) < 0){
+					break;
+				}
+				int quad = a << 18 | b << 12 | c << 6 | d;
+				dst[p++] = (byte) (quad >>> 16);
+				dst[p++] = (byte) (quad >>> 8);
+				dst[p++] = (byte) quad;
+				i += 4;
+			}
+			if(i == end){
+				break;
+			}
+			int v = table[src[i] & 0xff];
+			if(v < 0){
+				if(v == IGNORE){
+					continue;
+				}
+				if(v == PADDING && n >= 2){
+					for(int pads = 1; ++i < end;){
+						int w = table[src[i] & 0xff];
+						if(!checkAfterPad(w, w == PADDING ? ++pads : pads, n)){
+							throw new IllegalArgumentException(String.format("INVALID base64 char 0x%02x at %d",src[i] & 0xff,i));
+						}
+					}
+					break;
+				}
+				throw new IllegalArgumentException(String.format("INVALID base64 char 0x%02x at %d",src[i] & 0xff,i));
+			}
+			bits = bits << 6 | v;
+			if(++n == 4){
+				dst[p++] = (byte) (bits >>> 16);
+				dst[p++] = (byte) (bits >>> 8);
+				dst[p++] = (byte) bits;
+				bits = 0;
+				n = 0;
+			}
+		}
+		return decodeTail(bits, n, dst, p);
+	}
+	/**
+	 * @see #decode(byte[], int, int, byte[], int)
+	 */
+	public int decode(CharSequence src, int off, int len, byte[] dst, int dstOff){
+		final byte[] table = decodeTable;
+		int bits = 0, n = 0, p = dstOff;
+		for(int i = off, end = off + len; i < end; ++i){
+			// 快速路径:一次解码4个有效字符
+			while(0 == n && i + 4 <= end){
+				char c0 = src.charAt(i), c1 = src.charAt(i + 1), c2 = src.charAt(i + 2), c3 = src.charAt(i + 3);
+				if(((c0 | c1 | c2 | c3) & 0xff00) != 0){
+					break;
+				}
+				int a = table[c0], b = table[c1], c = table[c2], d = table[c3];
+				if((a | b | c | d) < 0){
+					break;
+				}
+				int quad = a << 18 | b << 12 | c << 6 | d;
+				dst[p++] = (byte) (quad >>> 16);
+				dst[p++] = (byte) (quad >>> 8);
+				dst[p++] = (byte) quad;
+				i += 4;
+			}
+			if(i == end){
+				break;
+			}
+			char c = src.charAt(i);
+			int v = c < 256 ? table[c] : (lenient ? IGNORE : INVALID);
+			if(v < 0){
+				if(v == IGNORE){
+					continue;
+				}
+				if(v == PADDING && n >= 2){
+					for(int pads = 1; ++i < end;){
+						char d = src.charAt(i);
+						int w = d < 256 ? table[d] : (lenient ? IGNORE : INVALID);
+						if(!checkAfterPad(w, w == PADDING ? ++pads : pads, n)){
+							throw new IllegalArgumentException(String.format("INVALID base64 char 0x%02x at %d",(int) d,i));
+						}
+					}
+					break;
+				}
+				throw new IllegalArgumentException(String.format("INVALID base64 char 0x%02x at %d",(int) c,i));
+			}
+			bits = bits << 6 | v;
+			if(++n == 4){
+				dst[p++] = (byte) (bits >>> 16);
+				dst[p++] = (byte) (bits >>> 8);
+				dst[p++] = (byte) bits;
+				bits = 0;
+				n = 0;
+			}
+		}
+		return decodeTail(bits, n, dst, p);
+	}
+	/**
+	 * 解码
+	 * @param src
+	 * @return {@code src}为{@code null}返回{@code null}
+	 * @throws IllegalArgumentException 非法的Base64数据
+	 */
+	public byte[] decode(CharSequence src){
+		if(null == src){
+			return null;
+		}
+		byte[] dst = new byte[decodedLength(src, 0, src.length())];
+		decode(src, 0, src.length(), dst, 0);
+		return dst;
+	}
+	/**
+	 * 解码
+	 * @param src
+	 * @return {@code src}为{@code null}返回{@code null}
+	 * @throws IllegalArgumentException 非法的Base64数据
+	 */
+	public byte[] decode(byte[] src){
+		if(null == src){
+			return null;
+		}
+		byte[] dst = new byte[decodedLength(src, 0, src.length)];
+		decode(src, 0, src.length, dst, 0);
+		return dst;
+	}
+	/**
+	 * 将{@code src}的剩余数据解码后写入{@code dst}的当前位置,
+	 * {@code src}和{@code dst}的position前移
+	 * @param src
+	 * @param dst 剩余空间不小于解码后的长度
+	 * @return {@code dst}
+	 * @throws IllegalArgumentException 非法的Base64数据
+	 * @throws BufferOverflowException {@code dst}剩余空间不足
+	 */
+	public ByteBuffer decode(ByteBuffer src, ByteBuffer dst){
+		Assert.notNull(src, "src");
+		Assert.notNull(dst, "dst");
+		CharSequence chars = src.hasArray() ? null : new ByteBufferChars(src);
+		int len = src.remaining();
+		int length = null == chars
+				? decodedLength(src.array(), src.arrayOffset() + src.position(), len)
+				: decodedLength(chars, 0, len);
+		if(dst.remaining() < length){
+			throw new BufferOverflowException();
+		}
+		if(dst.hasArray()){
+			int dstOff = dst.arrayOffset() + dst.position();
+			if(null == chars){
+				decode(src.array(), src.arrayOffset() + src.position(), len, dst.array(), dstOff);
+			}else{
+				decode(chars, 0, len, dst.array(), dstOff);
+			}
+			dst.position(dst.position() + length);
+		}else{
+			// 直接内存分段解码,只使用固定大小的临时数组
+			decodeSegments(null == chars ? new ByteBufferChars(src) : chars, dst);
+		}
+		src.position(src.limit());
+		return dst;
+	}
+	/**
+	 * 解码{@code src}的剩余数据,{@code src}的position前移
+	 * @param src
+	 * @return 解码后的数据(position为0)
+	 * @throws IllegalArgumentException 非法的Base64数据
+	 */
+	public ByteBuffer decode(ByteBuffer src){
+		Assert.notNull(src, "src");
+		int len = src.remaining();
+		ByteBuffer dst = ByteBuffer.allocate(src.hasArray()
+				? decodedLength(src.array(), src.arrayOffset() + src.position(), len)
+				: decodedLength(new ByteBufferChars(src), 0, len));
+		decode(src, dst);
+		dst.flip();
+		return dst;
+	}
+	/**
+	 * 返回从{@code from}开始包含不超过{@code quads}组(每组4个)有效字符的数据段结束位置,
+	 * 用于分段解码,分段边界总是落在4字符组的边界上<br>
+	 * 遇到填充字符时返回{@code end}(填充字符之后只有填充字符或忽略字符)
+	 * @param src
+	 * @param from
+	 * @param end
+	 * @param quads
+	 * @return
+	 */
+	private int nextSegment(CharSequence src, int from, int end, int quads){
+		if(!lenient){
+			// 严格模式下没有忽略字符,按长度分段
+			long limit = from + (long) quads * 4;
+			return limit >= end ? end : (int) limit;
+		}
+		int count = quads * 4;
+		for(int i = from; i < end; ++i){
+			char c = src.charAt(i);
+			int v = c < 256 ? decodeTable[c] : IGNORE;
+			if(v >= 0){
+				if(--count == 0){
+					return i + 1;
+				}
+			}else if(v == PADDING){
+				return end;
+			}
+		}
+		return end;
+	}
+	/**
+	 * 将{@code src}的Base64数据解码后写入{@code dst}的当前位置,{@code dst}的position前移<br>
+	 * {@code dst}为直接内存缓冲区时分段解码,只使用固定大小的临时数组
+	 * @param src
+	 * @param dst 剩余空间不小于{@link #decodedLength(CharSequence, int, int)}
+	 * @return {@code dst}
+	 * @throws IllegalArgumentException 非法的Base64数据
+	 * @throws BufferOverflowException {@code dst}剩余空间不足
+	 */
+	public ByteBuffer decode(CharSequence src, ByteBuffer dst){
+		Assert.notNull(src, "src");
+		Assert.notNull(dst, "dst");
+		int end = src.length();
+		if(dst.remaining() < decodedLength(src, 0, end)){
+			throw new BufferOverflowException();
+		}
+		if(dst.hasArray()){
+			int dstOff = dst.arrayOffset() + dst.position();
+			dst.position(decode(src, 0, end, dst.array(), dstOff) - dst.arrayOffset());
+			return dst;
+		}
+		decodeSegments(src, dst);
+		return dst;
+	}
+	/**
+	 * 每次解码不超过{@link #SEGMENT_QUADS}组字符,通过固定大小的临时数组写入{@code dst}
+	 * @param src
+	 * @param dst
+	 */
+	private void decodeSegments(CharSequence src, ByteBuffer dst){
+		byte[] out = new byte[SEGMENT_QUADS * 3];
+		for(int from = 0, end = src.length(); from < end;){
+			int to = nextSegment(src, from, end, SEGMENT_QUADS);
+			dst.put(out, 0, decode(src, from, to - from, out, 0));
+			from = to;
+		}
+	}
+	/**
+	 * 将{@code src}的Base64数据分段解码后写入{@code out},只使用固定大小的临时数组
+	 * @param src
+	 * @param out
+	 * @throws IllegalArgumentException 非法的Base64数据
+	 * @throws IOException
+	 */
+	public void decode(CharSequence src, OutputStream out) throws IOException{
+		Assert.notNull(src, "src");
+		Assert.notNull(out, "out");
+		byte[] buffer = new byte[SEGMENT_QUADS * 3];
+		for(int from = 0, end = src.length(); from < end;){
+			int to = nextSegment(src, from, end, SEGMENT_QUADS);
+			out.write(buffer, 0, decode(src, from, to - from, buffer, 0));
+			from = to;
+		}
+	}
+	/**
+	 * 返回对{@code src}边读取边解码的{@link InputStream},只使用固定大小的缓冲区,不需要一次解码全部数据
+	 * @param src
+	 * @return
+	 * @throws IllegalArgumentException {@code src}为{@code null}
+	 */
+	public InputStream decodingStream(CharSequence src){
+		Assert.notNull(src, "src");
+		return new DecodingInputStream(src);
+	}
+	/**
+	 * 边读取边解码的输入流,每次解码不超过{@link #SEGMENT_QUADS}组字符
+	 */
+	private class DecodingInputStream extends InputStream{
+		private final CharSequence src;
+		private final byte[] buffer = new byte[SEGMENT_QUADS * 3];
+		/** {@link #src}中下一个待解码的位置 */
+		private int index = 0;
+		private int position = 0;
+		private int limit = 0;
+		DecodingInputStream(CharSequence src) {
+			this.src = src;
+		}
+		/**
+		 * 解码下一段数据到缓冲区
+		 * @return 没有数据返回{@code false}
+		 * @throws IOException 非法的Base64数据
+		 */
+		private boolean fill() throws IOException{
+			int end = src.length();
+			while(position == limit){
+				if(index >= end){
+					return false;
+				}
+				int to = nextSegment(src, index, end, SEGMENT_QUADS);
+				try{
+					limit = decode(src, index, to - index, buffer, 0);
+				}catch(IllegalArgumentException e){
+					throw new IOException(e);
+				}
+				position = 0;
+				index = to;
+			}
+			return true;
+		}
+		@Override
+		public int read() throws IOException {
+			return fill() ? buffer[position++] & 0xff : -1;
+		}
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(0 == len){
+				return 0;
+			}
+			if(!fill()){
+				return -1;
+			}
+			int n = Math.min(len, limit - position);
+			System.arraycopy(buffer, position, b, off, n);
+			position += n;
+			return n;
+		}
+		@Override
+		public int available() throws IOException {
+			return limit - position;
+		}
+	}
+	/**
+	 * 将{@link ByteBuffer}的剩余数据([position,limit))作为ASCII字符序列访问,不复制数据
+	 */
+	private static class ByteBufferChars implements CharSequence{
+		private final ByteBuffer buffer;
+		private final int offset;
+		private final int length;
+		ByteBufferChars(ByteBuffer buffer) {
+			this(buffer, buffer.position(), buffer.remaining());
+		}
+		private ByteBufferChars(ByteBuffer buffer, int offset, int length) {
+			this.buffer = buffer;
+			this.offset = offset;
+			this.length = length;
+		}
+		@Override
+		public int length() {
+			return length;
+		}
+		@Override
+		public char charAt(int index) {
+			return (char) (buffer.get(offset + index) & 0xff);
+		}
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new ByteBufferChars(buffer, offset + start, end - start);
+		}
+		@Override
+		public String toString() {
+			char[] chars = new char[length];
+			for(int i = 0; i < length; ++i){
+				chars[i] = charAt(i);
+			}
+			return new String(chars);
+		}
+	}
+}
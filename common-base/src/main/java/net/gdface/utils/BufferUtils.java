@@ -1,12 +1,17 @@
 package net.gdface.utils;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.nio.ShortBuffer;
 
+import net.gdface.utils.DirectBufferPool.PooledBuffer;
+
 /**
  * NIO Buffer工具类
  * @author guyadong
@@ -214,4 +219,577 @@ public class BufferUtils {
 		buffer.get(res);
 		return res;
 	}
+	/**
+	 * 返回{@code order},为{@code null}时返回{@link ByteOrder#BIG_ENDIAN}(与{@link ByteBuffer}默认字节顺序一致)
+	 * @param order
+	 * @return
+	 */
+	private static ByteOrder orderOf(ByteOrder order){
+		return null == order ? ByteOrder.BIG_ENDIAN : order;
+	}
+	/**
+	 * 将{@code input}包装为{@link DoubleBuffer}视图(不复制数据),修改视图会修改{@code input}
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @return
+	 */
+	public static DoubleBuffer asDoubleBuffer(byte[] input,ByteOrder order){
+		if(null == input ){
+			return null;
+		}
+		return ByteBuffer.wrap(input).order(orderOf(order)).asDoubleBuffer();
+	}
+	/**
+	 * 将{@code input}的剩余数据([position,limit))包装为{@link DoubleBuffer}视图(不复制数据),
+	 * 不修改{@code input}的position和字节顺序
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @return
+	 */
+	public static DoubleBuffer asDoubleBuffer(ByteBuffer input,ByteOrder order){
+		if(null == input ){
+			return null;
+		}
+		return input.duplicate().order(orderOf(order)).asDoubleBuffer();
+	}
+	/**
+	 * byte[] TO double[],结果写入{@code dst}(不分配新数组)
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param dst 输出数组,长度不小于{@code input.length/8}
+	 * @return {@code dst}
+	 * @throws IllegalArgumentException {@code dst}长度不足
+	 */
+	public static double[] asDoubleArray(byte[] input,ByteOrder order,double[] dst){
+		Assert.notNull(input, "input");
+		Assert.notNull(dst, "dst");
+		DoubleBuffer buffer = asDoubleBuffer(input, order);
+		if(dst.length < buffer.remaining()){
+			throw new IllegalArgumentException(String.format("dst too small:%d < %d",dst.length,buffer.remaining()));
+		}
+		buffer.get(dst, 0, buffer.remaining());
+		return dst;
+	}
+	/**
+	 * double[] TO byte[],结果写入{@code dst}(不分配新数组)
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param dst 输出数组,长度不小于{@code input.length*8}
+	 * @return {@code dst}
+	 * @throws IllegalArgumentException {@code dst}长度不足
+	 */
+	public static byte[] asByteArray(double[] input,ByteOrder order,byte[] dst){
+		Assert.notNull(input, "input");
+		Assert.notNull(dst, "dst");
+		if(dst.length < input.length * (Double.SIZE/8)){
+			throw new IllegalArgumentException(String.format("dst too small:%d < %d",dst.length,input.length * (Double.SIZE/8)));
+		}
+		asDoubleBuffer(dst, order).put(input);
+		return dst;
+	}
+	/**
+	 * 从{@code src}当前位置按{@code src}的字节顺序读取{@code dst.length}个double写入{@code dst},
+	 * {@code src}的position前移
+	 * @param src
+	 * @param dst
+	 * @return {@code dst}
+	 * @throws java.nio.BufferUnderflowException {@code src}剩余数据不足
+	 */
+	public static double[] get(ByteBuffer src,double[] dst){
+		Assert.notNull(src, "src");
+		Assert.notNull(dst, "dst");
+		int length = dst.length * (Double.SIZE/8);
+		if(src.remaining() < length){
+			throw new BufferUnderflowException();
+		}
+		src.asDoubleBuffer().get(dst);
+		src.position(src.position() + length);
+		return dst;
+	}
+	/**
+	 * 将{@code src}按{@code dst}的字节顺序写入{@code dst}当前位置,{@code dst}的position前移
+	 * @param dst
+	 * @param src
+	 * @return {@code dst}
+	 * @throws java.nio.BufferOverflowException {@code dst}剩余空间不足
+	 */
+	public static ByteBuffer put(ByteBuffer dst,double[] src){
+		Assert.notNull(dst, "dst");
+		Assert.notNull(src, "src");
+		int length = src.length * (Double.SIZE/8);
+		if(dst.remaining() < length){
+			throw new BufferOverflowException();
+		}
+		dst.asDoubleBuffer().put(src);
+		dst.position(dst.position() + length);
+		return dst;
+	}
+	/**
+	 * 将{@code input}包装为{@link FloatBuffer}视图(不复制数据),修改视图会修改{@code input}
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @return
+	 */
+	public static FloatBuffer asFloatBuffer(byte[] input,ByteOrder order){
+		if(null == input ){
+			return null;
+		}
+		return ByteBuffer.wrap(input).order(orderOf(order)).asFloatBuffer();
+	}
+	/**
+	 * 将{@code input}的剩余数据([position,limit))包装为{@link FloatBuffer}视图(不复制数据),
+	 * 不修改{@code input}的position和字节顺序
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @return
+	 */
+	public static FloatBuffer asFloatBuffer(ByteBuffer input,ByteOrder order){
+		if(null == input ){
+			return null;
+		}
+		return input.duplicate().order(orderOf(order)).asFloatBuffer();
+	}
+	/**
+	 * byte[] TO float[],结果写入{@code dst}(不分配新数组)
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param dst 输出数组,长度不小于{@code input.length/4}
+	 * @return {@code dst}
+	 * @throws IllegalArgumentException {@code dst}长度不足
+	 */
+	public static float[] asFloatArray(byte[] input,ByteOrder order,float[] dst){
+		Assert.notNull(input, "input");
+		Assert.notNull(dst, "dst");
+		FloatBuffer buffer = asFloatBuffer(input, order);
+		if(dst.length < buffer.remaining()){
+			throw new IllegalArgumentException(String.format("dst too small:%d < %d",dst.length,buffer.remaining()));
+		}
+		buffer.get(dst, 0, buffer.remaining());
+		return dst;
+	}
+	/**
+	 * float[] TO byte[],结果写入{@code dst}(不分配新数组)
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param dst 输出数组,长度不小于{@code input.length*4}
+	 * @return {@code dst}
+	 * @throws IllegalArgumentException {@code dst}长度不足
+	 */
+	public static byte[] asByteArray(float[] input,ByteOrder order,byte[] dst){
+		Assert.notNull(input, "input");
+		Assert.notNull(dst, "dst");
+		if(dst.length < input.length * (Float.SIZE/8)){
+			throw new IllegalArgumentException(String.format("dst too small:%d < %d",dst.length,input.length * (Float.SIZE/8)));
+		}
+		asFloatBuffer(dst, order).put(input);
+		return dst;
+	}
+	/**
+	 * 从{@code src}当前位置按{@code src}的字节顺序读取{@code dst.length}个float写入{@code dst},
+	 * {@code src}的position前移
+	 * @param src
+	 * @param dst
+	 * @return {@code dst}
+	 * @throws java.nio.BufferUnderflowException {@code src}剩余数据不足
+	 */
+	public static float[] get(ByteBuffer src,float[] dst){
+		Assert.notNull(src, "src");
+		Assert.notNull(dst, "dst");
+		int length = dst.length * (Float.SIZE/8);
+		if(src.remaining() < length){
+			throw new BufferUnderflowException();
+		}
+		src.asFloatBuffer().get(dst);
+		src.position(src.position() + length);
+		return dst;
+	}
+	/**
+	 * 将{@code src}按{@code dst}的字节顺序写入{@code dst}当前位置,{@code dst}的position前移
+	 * @param dst
+	 * @param src
+	 * @return {@code dst}
+	 * @throws java.nio.BufferOverflowException {@code dst}剩余空间不足
+	 */
+	public static ByteBuffer put(ByteBuffer dst,float[] src){
+		Assert.notNull(dst, "dst");
+		Assert.notNull(src, "src");
+		int length = src.length * (Float.SIZE/8);
+		if(dst.remaining() < length){
+			throw new BufferOverflowException();
+		}
+		dst.asFloatBuffer().put(src);
+		dst.position(dst.position() + length);
+		return dst;
+	}
+	/**
+	 * 将{@code input}包装为{@link IntBuffer}视图(不复制数据),修改视图会修改{@code input}
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @return
+	 */
+	public static IntBuffer asIntBuffer(byte[] input,ByteOrder order){
+		if(null == input ){
+			return null;
+		}
+		return ByteBuffer.wrap(input).order(orderOf(order)).asIntBuffer();
+	}
+	/**
+	 * 将{@code input}的剩余数据([position,limit))包装为{@link IntBuffer}视图(不复制数据),
+	 * 不修改{@code input}的position和字节顺序
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @return
+	 */
+	public static IntBuffer asIntBuffer(ByteBuffer input,ByteOrder order){
+		if(null == input ){
+			return null;
+		}
+		return input.duplicate().order(orderOf(order)).asIntBuffer();
+	}
+	/**
+	 * byte[] TO int[],结果写入{@code dst}(不分配新数组)
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param dst 输出数组,长度不小于{@code input.length/4}
+	 * @return {@code dst}
+	 * @throws IllegalArgumentException {@code dst}长度不足
+	 */
+	public static int[] asIntArray(byte[] input,ByteOrder order,int[] dst){
+		Assert.notNull(input, "input");
+		Assert.notNull(dst, "dst");
+		IntBuffer buffer = asIntBuffer(input, order);
+		if(dst.length < buffer.remaining()){
+			throw new IllegalArgumentException(String.format("dst too small:%d < %d",dst.length,buffer.remaining()));
+		}
+		buffer.get(dst, 0, buffer.remaining());
+		return dst;
+	}
+	/**
+	 * int[] TO byte[],结果写入{@code dst}(不分配新数组)
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param dst 输出数组,长度不小于{@code input.length*4}
+	 * @return {@code dst}
+	 * @throws IllegalArgumentException {@code dst}长度不足
+	 */
+	public static byte[] asByteArray(int[] input,ByteOrder order,byte[] dst){
+		Assert.notNull(input, "input");
+		Assert.notNull(dst, "dst");
+		if(dst.length < input.length * (Integer.SIZE/8)){
+			throw new IllegalArgumentException(String.format("dst too small:%d < %d",dst.length,input.length * (Integer.SIZE/8)));
+		}
+		asIntBuffer(dst, order).put(input);
+		return dst;
+	}
+	/**
+	 * 从{@code src}当前位置按{@code src}的字节顺序读取{@code dst.length}个int写入{@code dst},
+	 * {@code src}的position前移
+	 * @param src
+	 * @param dst
+	 * @return {@code dst}
+	 * @throws java.nio.BufferUnderflowException {@code src}剩余数据不足
+	 */
+	public static int[] get(ByteBuffer src,int[] dst){
+		Assert.notNull(src, "src");
+		Assert.notNull(dst, "dst");
+		int length = dst.length * (Integer.SIZE/8);
+		if(src.remaining() < length){
+			throw new BufferUnderflowException();
+		}
+		src.asIntBuffer().get(dst);
+		src.position(src.position() + length);
+		return dst;
+	}
+	/**
+	 * 将{@code src}按{@code dst}的字节顺序写入{@code dst}当前位置,{@code dst}的position前移
+	 * @param dst
+	 * @param src
+	 * @return {@code dst}
+	 * @throws java.nio.BufferOverflowException {@code dst}剩余空间不足
+	 */
+	public static ByteBuffer put(ByteBuffer dst,int[] src){
+		Assert.notNull(dst, "dst");
+		Assert.notNull(src, "src");
+		int length = src.length * (Integer.SIZE/8);
+		if(dst.remaining() < length){
+			throw new BufferOverflowException();
+		}
+		dst.asIntBuffer().put(src);
+		dst.position(dst.position() + length);
+		return dst;
+	}
+	/**
+	 * 将{@code input}包装为{@link LongBuffer}视图(不复制数据),修改视图会修改{@code input}
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @return
+	 */
+	public static LongBuffer asLongBuffer(byte[] input,ByteOrder order){
+		if(null == input ){
+			return null;
+		}
+		return ByteBuffer.wrap(input).order(orderOf(order)).asLongBuffer();
+	}
+	/**
+	 * 将{@code input}的剩余数据([position,limit))包装为{@link LongBuffer}视图(不复制数据),
+	 * 不修改{@code input}的position和字节顺序
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @return
+	 */
+	public static LongBuffer asLongBuffer(ByteBuffer input,ByteOrder order){
+		if(null == input ){
+			return null;
+		}
+		return input.duplicate().order(orderOf(order)).asLongBuffer();
+	}
+	/**
+	 * byte[] TO long[],结果写入{@code dst}(不分配新数组)
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param dst 输出数组,长度不小于{@code input.length/8}
+	 * @return {@code dst}
+	 * @throws IllegalArgumentException {@code dst}长度不足
+	 */
+	public static long[] asLongArray(byte[] input,ByteOrder order,long[] dst){
+		Assert.notNull(input, "input");
+		Assert.notNull(dst, "dst");
+		LongBuffer buffer = asLongBuffer(input, order);
+		if(dst.length < buffer.remaining()){
+			throw new IllegalArgumentException(String.format("dst too small:%d < %d",dst.length,buffer.remaining()));
+		}
+		buffer.get(dst, 0, buffer.remaining());
+		return dst;
+	}
+	/**
+	 * long[] TO byte[],结果写入{@code dst}(不分配新数组)
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param dst 输出数组,长度不小于{@code input.length*8}
+	 * @return {@code dst}
+	 * @throws IllegalArgumentException {@code dst}长度不足
+	 */
+	public static byte[] asByteArray(long[] input,ByteOrder order,byte[] dst){
+		Assert.notNull(input, "input");
+		Assert.notNull(dst, "dst");
+		if(dst.length < input.length * (Long.SIZE/8)){
+			throw new IllegalArgumentException(String.format("dst too small:%d < %d",dst.length,input.length * (Long.SIZE/8)));
+		}
+		asLongBuffer(dst, order).put(input);
+		return dst;
+	}
+	/**
+	 * 从{@code src}当前位置按{@code src}的字节顺序读取{@code dst.length}个long写入{@code dst},
+	 * {@code src}的position前移
+	 * @param src
+	 * @param dst
+	 * @return {@code dst}
+	 * @throws java.nio.BufferUnderflowException {@code src}剩余数据不足
+	 */
+	public static long[] get(ByteBuffer src,long[] dst){
+		Assert.notNull(src, "src");
+		Assert.notNull(dst, "dst");
+		int length = dst.length * (Long.SIZE/8);
+		if(src.remaining() < length){
+			throw new BufferUnderflowException();
+		}
+		src.asLongBuffer().get(dst);
+		src.position(src.position() + length);
+		return dst;
+	}
+	/**
+	 * 将{@code src}按{@code dst}的字节顺序写入{@code dst}当前位置,{@code dst}的position前移
+	 * @param dst
+	 * @param src
+	 * @return {@code dst}
+	 * @throws java.nio.BufferOverflowException {@code dst}剩余空间不足
+	 */
+	public static ByteBuffer put(ByteBuffer dst,long[] src){
+		Assert.notNull(dst, "dst");
+		Assert.notNull(src, "src");
+		int length = src.length * (Long.SIZE/8);
+		if(dst.remaining() < length){
+			throw new BufferOverflowException();
+		}
+		dst.asLongBuffer().put(src);
+		dst.position(dst.position() + length);
+		return dst;
+	}
+	/**
+	 * 将{@code input}包装为{@link ShortBuffer}视图(不复制数据),修改视图会修改{@code input}
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @return
+	 */
+	public static ShortBuffer asShortBuffer(byte[] input,ByteOrder order){
+		if(null == input ){
+			return null;
+		}
+		return ByteBuffer.wrap(input).order(orderOf(order)).asShortBuffer();
+	}
+	/**
+	 * 将{@code input}的剩余数据([position,limit))包装为{@link ShortBuffer}视图(不复制数据),
+	 * 不修改{@code input}的position和字节顺序
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @return
+	 */
+	public static ShortBuffer asShortBuffer(ByteBuffer input,ByteOrder order){
+		if(null == input ){
+			return null;
+		}
+		return input.duplicate().order(orderOf(order)).asShortBuffer();
+	}
+	/**
+	 * byte[] TO short[],结果写入{@code dst}(不分配新数组)
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param dst 输出数组,长度不小于{@code input.length/2}
+	 * @return {@code dst}
+	 * @throws IllegalArgumentException {@code dst}长度不足
+	 */
+	public static short[] asShortArray(byte[] input,ByteOrder order,short[] dst){
+		Assert.notNull(input, "input");
+		Assert.notNull(dst, "dst");
+		ShortBuffer buffer = asShortBuffer(input, order);
+		if(dst.length < buffer.remaining()){
+			throw new IllegalArgumentException(String.format("dst too small:%d < %d",dst.length,buffer.remaining()));
+		}
+		buffer.get(dst, 0, buffer.remaining());
+		return dst;
+	}
+	/**
+	 * short[] TO byte[],结果写入{@code dst}(不分配新数组)
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param dst 输出数组,长度不小于{@code input.length*2}
+	 * @return {@code dst}
+	 * @throws IllegalArgumentException {@code dst}长度不足
+	 */
+	public static byte[] asByteArray(short[] input,ByteOrder order,byte[] dst){
+		Assert.notNull(input, "input");
+		Assert.notNull(dst, "dst");
+		if(dst.length < input.length * (Short.SIZE/8)){
+			throw new IllegalArgumentException(String.format("dst too small:%d < %d",dst.length,input.length * (Short.SIZE/8)));
+		}
+		asShortBuffer(dst, order).put(input);
+		return dst;
+	}
+	/**
+	 * 从{@code src}当前位置按{@code src}的字节顺序读取{@code dst.length}个short写入{@code dst},
+	 * {@code src}的position前移
+	 * @param src
+	 * @param dst
+	 * @return {@code dst}
+	 * @throws java.nio.BufferUnderflowException {@code src}剩余数据不足
+	 */
+	public static short[] get(ByteBuffer src,short[] dst){
+		Assert.notNull(src, "src");
+		Assert.notNull(dst, "dst");
+		int length = dst.length * (Short.SIZE/8);
+		if(src.remaining() < length){
+			throw new BufferUnderflowException();
+		}
+		src.asShortBuffer().get(dst);
+		src.position(src.position() + length);
+		return dst;
+	}
+	/**
+	 * 将{@code src}按{@code dst}的字节顺序写入{@code dst}当前位置,{@code dst}的position前移
+	 * @param dst
+	 * @param src
+	 * @return {@code dst}
+	 * @throws java.nio.BufferOverflowException {@code dst}剩余空间不足
+	 */
+	public static ByteBuffer put(ByteBuffer dst,short[] src){
+		Assert.notNull(dst, "dst");
+		Assert.notNull(src, "src");
+		int length = src.length * (Short.SIZE/8);
+		if(dst.remaining() < length){
+			throw new BufferOverflowException();
+		}
+		dst.asShortBuffer().put(src);
+		dst.position(dst.position() + length);
+		return dst;
+	}
+	/**
+	 * double[] TO 直接内存{@link ByteBuffer},从缓冲池{@code pool}申请缓冲区,使用结束后调用{@link PooledBuffer#release()}归还<br>
+	 * 返回的缓冲区position为0,limit为数据长度({@code input.length*8})
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param pool 缓冲池,为{@code null}时使用{@link DirectBufferPool#getDefault()}
+	 * @return
+	 */
+	public static PooledBuffer asDirectBuffer(double[] input,ByteOrder order,DirectBufferPool pool){
+		if(null == input ){
+			return null;
+		}
+		PooledBuffer pooled = (null == pool ? DirectBufferPool.getDefault() : pool).acquire(input.length * (Double.SIZE/8));
+		pooled.buffer().order(orderOf(order)).asDoubleBuffer().put(input);
+		return pooled;
+	}
+	/**
+	 * float[] TO 直接内存{@link ByteBuffer},从缓冲池{@code pool}申请缓冲区,使用结束后调用{@link PooledBuffer#release()}归还<br>
+	 * 返回的缓冲区position为0,limit为数据长度({@code input.length*4})
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param pool 缓冲池,为{@code null}时使用{@link DirectBufferPool#getDefault()}
+	 * @return
+	 */
+	public static PooledBuffer asDirectBuffer(float[] input,ByteOrder order,DirectBufferPool pool){
+		if(null == input ){
+			return null;
+		}
+		PooledBuffer pooled = (null == pool ? DirectBufferPool.getDefault() : pool).acquire(input.length * (Float.SIZE/8));
+		pooled.buffer().order(orderOf(order)).asFloatBuffer().put(input);
+		return pooled;
+	}
+	/**
+	 * int[] TO 直接内存{@link ByteBuffer},从缓冲池{@code pool}申请缓冲区,使用结束后调用{@link PooledBuffer#release()}归还<br>
+	 * 返回的缓冲区position为0,limit为数据长度({@code input.length*4})
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param pool 缓冲池,为{@code null}时使用{@link DirectBufferPool#getDefault()}
+	 * @return
+	 */
+	public static PooledBuffer asDirectBuffer(int[] input,ByteOrder order,DirectBufferPool pool){
+		if(null == input ){
+			return null;
+		}
+		PooledBuffer pooled = (null == pool ? DirectBufferPool.getDefault() : pool).acquire(input.length * (Integer.SIZE/8));
+		pooled.buffer().order(orderOf(order)).asIntBuffer().put(input);
+		return pooled;
+	}
+	/**
+	 * long[] TO 直接内存{@link ByteBuffer},从缓冲池{@code pool}申请缓冲区,使用结束后调用{@link PooledBuffer#release()}归还<br>
+	 * 返回的缓冲区position为0,limit为数据长度({@code input.length*8})
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param pool 缓冲池,为{@code null}时使用{@link DirectBufferPool#getDefault()}
+	 * @return
+	 */
+	public static PooledBuffer asDirectBuffer(long[] input,ByteOrder order,DirectBufferPool pool){
+		if(null == input ){
+			return null;
+		}
+		PooledBuffer pooled = (null == pool ? DirectBufferPool.getDefault() : pool).acquire(input.length * (Long.SIZE/8));
+		pooled.buffer().order(orderOf(order)).asLongBuffer().put(input);
+		return pooled;
+	}
+	/**
+	 * short[] TO 直接内存{@link ByteBuffer},从缓冲池{@code pool}申请缓冲区,使用结束后调用{@link PooledBuffer#release()}归还<br>
+	 * 返回的缓冲区position为0,limit为数据长度({@code input.length*2})
+	 * @param input
+	 * @param order 字节顺序,为{@code null}时为{@link ByteOrder#BIG_ENDIAN}
+	 * @param pool 缓冲池,为{@code null}时使用{@link DirectBufferPool#getDefault()}
+	 * @return
+	 */
+	public static PooledBuffer asDirectBuffer(short[] input,ByteOrder order,DirectBufferPool pool){
+		if(null == input ){
+			return null;
+		}
+		PooledBuffer pooled = (null == pool ? DirectBufferPool.getDefault() : pool).acquire(input.length * (Short.SIZE/8));
+		pooled.buffer().order(orderOf(order)).asShortBuffer().put(input);
+		return pooled;
+	}
 }
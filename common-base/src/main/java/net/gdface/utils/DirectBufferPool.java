@@ -0,0 +1,207 @@
+package net.gdface.utils;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 直接内存(off-heap){@link ByteBuffer}缓冲池<br>
+ * 按2的幂划分容量等级,每个等级维护一个空闲队列,申请时从对应等级取出空闲缓冲区,没有则分配新的直接内存;
+ * 申请的缓冲区以{@link PooledBuffer}形式返回,引用计数归0时归还到缓冲池<br>
+ * 超过最大等级的申请直接分配不入池,缓冲池保留的空闲内存总量不超过{@link #getMaxPooledBytes()},超出部分由GC回收<br>
+ * example:
+ * <pre>
+ * PooledBuffer pooled = DirectBufferPool.getDefault().acquire(size);
+ * try{
+ *     ByteBuffer buffer = pooled.buffer();
+ *     ....
+ * }finally{
+ *     pooled.release();
+ * }
+ * </pre>
+ * @author guyadong
+ *
+ */
+public class DirectBufferPool {
+	/** 最小容量等级(4KB) */
+	private static final int MIN_SHIFT = 12;
+	/** 最大容量等级(64MB) */
+	private static final int MAX_SHIFT = 26;
+	private static final DirectBufferPool DEFAULT = new DirectBufferPool(256L << 20);
+	/** 每个容量等级的空闲缓冲区 */
+	@SuppressWarnings({"unchecked","rawtypes"})
+	private final ConcurrentLinkedQueue<ByteBuffer>[] freeLists = new ConcurrentLinkedQueue[MAX_SHIFT - MIN_SHIFT + 1];
+	/** 缓冲池保留的空闲内存总量上限(字节) */
+	private final long maxPooledBytes;
+	/** 当前保留的空闲内存总量(字节) */
+	private final AtomicLong pooledBytes = new AtomicLong(0);
+	/**
+	 * @param maxPooledBytes 缓冲池保留的空闲内存总量上限(字节)
+	 * @throws IllegalArgumentException {@code maxPooledBytes}<0
+	 */
+	public DirectBufferPool(long maxPooledBytes) {
+		if(maxPooledBytes < 0){
+			throw new IllegalArgumentException(String.format("INVALID maxPooledBytes:%d",maxPooledBytes));
+		}
+		this.maxPooledBytes = maxPooledBytes;
+		for(int i = 0; i < freeLists.length; ++i){
+			freeLists[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+		}
+	}
+	/**
+	 * @return 默认缓冲池,保留的空闲内存总量上限为256MB
+	 */
+	public static DirectBufferPool getDefault(){
+		return DEFAULT;
+	}
+	/**
+	 * 返回{@code capacity}对应的容量等级索引,超过最大等级返回-1
+	 * @param capacity
+	 * @return
+	 */
+	private static int sizeClass(int capacity){
+		if(capacity <= (1 << MIN_SHIFT)){
+			return 0;
+		}
+		int shift = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+		return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+	}
+	/**
+	 * 申请容量为{@code capacity}的直接内存缓冲区,引用计数为1<br>
+	 * 返回的缓冲区position为0,limit和capacity为{@code capacity},字节顺序为{@link java.nio.ByteOrder#BIG_ENDIAN},内容未初始化
+	 * @param capacity
+	 * @return
+	 * @throws IllegalArgumentException {@code capacity}<0
+	 */
+	public PooledBuffer acquire(int capacity){
+		if(capacity < 0){
+			throw new IllegalArgumentException(String.format("INVALID capacity:%d",capacity));
+		}
+		int index = sizeClass(capacity);
+		ByteBuffer chunk = null;
+		if(index >= 0){
+			chunk = freeLists[index].poll();
+			if(null != chunk){
+				pooledBytes.addAndGet(-chunk.capacity());
+			}else{
+				chunk = ByteBuffer.allocateDirect(1 << (index + MIN_SHIFT));
+			}
+		}else{
+			chunk = ByteBuffer.allocateDirect(capacity);
+		}
+		chunk.clear().limit(capacity);
+		return new PooledBuffer(this, chunk, index);
+	}
+	/**
+	 * 归还缓冲区,超过空闲内存上限时丢弃
+	 * @param chunk
+	 * @param index 容量等级索引
+	 */
+	private void recycle(ByteBuffer chunk, int index){
+		if(index < 0){
+			return;
+		}
+		long bytes = chunk.capacity();
+		for(;;){
+			long current = pooledBytes.get();
+			if(current + bytes > maxPooledBytes){
+				return;
+			}
+			if(pooledBytes.compareAndSet(current, current + bytes)){
+				break;
+			}
+		}
+		freeLists[index].offer(chunk);
+	}
+	/**
+	 * @return 缓冲池保留的空闲内存总量上限(字节)
+	 */
+	public long getMaxPooledBytes() {
+		return maxPooledBytes;
+	}
+	/**
+	 * @return 当前保留的空闲内存总量(字节)
+	 */
+	public long getPooledBytes() {
+		return pooledBytes.get();
+	}
+	/**
+	 * 引用计数的缓冲池缓冲区<br>
+	 * 每次{@link #retain()}要对应一次{@link #release()},引用计数归0后缓冲区归还缓冲池,不可再访问
+	 * @author guyadong
+	 *
+	 */
+	public static final class PooledBuffer implements Closeable{
+		private final DirectBufferPool pool;
+		/** 从缓冲池申请的原始缓冲区 */
+		private final ByteBuffer chunk;
+		private final int sizeClass;
+		/** 提供给调用者的缓冲区,容量为申请的容量 */
+		private final ByteBuffer buffer;
+		private final AtomicInteger refCnt = new AtomicInteger(1);
+		private PooledBuffer(DirectBufferPool pool, ByteBuffer chunk, int sizeClass) {
+			this.pool = pool;
+			this.chunk = chunk;
+			this.sizeClass = sizeClass;
+			this.buffer = chunk.slice();
+		}
+		/**
+		 * @return 直接内存缓冲区,引用计数归0之后不可再访问
+		 * @throws IllegalStateException 已经释放
+		 */
+		public ByteBuffer buffer(){
+			if(refCnt.get() <= 0){
+				throw new IllegalStateException("buffer released");
+			}
+			return buffer;
+		}
+		/**
+		 * 引用计数加1
+		 * @return 当前对象
+		 * @throws IllegalStateException 已经释放
+		 */
+		public PooledBuffer retain(){
+			for(;;){
+				int count = refCnt.get();
+				if(count <= 0){
+					throw new IllegalStateException("buffer released");
+				}
+				if(refCnt.compareAndSet(count, count + 1)){
+					return this;
+				}
+			}
+		}
+		/**
+		 * 引用计数减1,归0时将缓冲区归还缓冲池
+		 * @return 引用计数归0返回{@code true}
+		 * @throws IllegalStateException 已经释放
+		 */
+		public boolean release(){
+			int count = refCnt.decrementAndGet();
+			if(count < 0){
+				refCnt.incrementAndGet();
+				throw new IllegalStateException("buffer released");
+			}
+			if(0 == count){
+				pool.recycle(chunk, sizeClass);
+				return true;
+			}
+			return false;
+		}
+		/**
+		 * @return 引用计数
+		 */
+		public int refCnt(){
+			return refCnt.get();
+		}
+		/**
+		 * 等同于{@link #release()},用于try-with-resources
+		 */
+		@Override
+		public void close() {
+			release();
+		}
+	}
+}
@@ -16,6 +16,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.lang.reflect.MalformedParameterizedTypeException;
 import java.lang.reflect.ParameterizedType;
@@ -25,11 +26,16 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
@@ -38,13 +44,39 @@ import java.util.Map.Entry;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import net.gdface.utils.DirectBufferPool.PooledBuffer;
+
 /**
  * @author guyadong
  *
  */
 public class FaceUtilits {
+	/** {@link #saveImage(InputStream, File)}判断图像格式读取的文件头长度 */
+	private static final int IMAGE_HEADER_SIZE = 4096;
+	/** HEX字符表 */
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	/** HEX字符对应的数值,非HEX字符为-1 */
+	private static final byte[] HEX_VALUES = new byte[128];
+	static{
+		Arrays.fill(HEX_VALUES, (byte) -1);
+		for(int i = 0; i < 10; ++i){
+			HEX_VALUES['0' + i] = (byte) i;
+		}
+		for(int i = 0; i < 6; ++i){
+			HEX_VALUES['a' + i] = (byte) (10 + i);
+			HEX_VALUES['A' + i] = (byte) (10 + i);
+		}
+	}
 	private static final String MD5_REGEX = "^[a-fA-F0-9]{32}$";
 	private static final String HEX_REGEX  = "^([a-fA-F0-9]{2})+$";
+	/** 当前线程缓存的{@link MessageDigest}对象,以算法名索引 */
+	private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = new ThreadLocal<Map<String, MessageDigest>>(){
+		@Override
+		protected Map<String, MessageDigest> initialValue() {
+			return new HashMap<String, MessageDigest>();
+		}};
+	/** {@link #mapOrRead(File)}使用内存映射方式读取的文件长度阈值(字节) */
+	private static volatile long mappedThreshold = 4L << 20;
 	/**
 	 * 生成MD5校验码
 	 * 
@@ -55,13 +87,108 @@ public class FaceUtilits {
 		if (Judge.isNull(source)){
 			return null;
 		}
+		return getDigest("MD5").digest(source);
+	}
+	/**
+	 * 返回当前线程缓存的{@link MessageDigest}对象(已重置),避免每次调用{@link MessageDigest#getInstance(String)}<br>
+	 * 返回的对象只能在当前线程中使用,且在当前线程调用其他摘要方法之前完成计算,
+	 * 需要分多次提供数据(增量计算)时使用{@link #newDigest(String)}
+	 * @param algorithm 算法名称,如"MD5","SHA-256"
+	 * @return
+	 * @throws IllegalArgumentException 不支持的算法
+	 */
+	public static MessageDigest getDigest(String algorithm){
+		Map<String, MessageDigest> cache = DIGESTS.get();
+		MessageDigest md = cache.get(algorithm);
+		if(null == md){
+			try {
+				md = MessageDigest.getInstance(algorithm);
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalArgumentException(e);
+			}
+			cache.put(algorithm, md);
+		}else{
+			md.reset();
+		}
+		return md;
+	}
+	/**
+	 * 返回新的{@link MessageDigest}对象,用于增量计算摘要:
+	 * 多次调用{@link MessageDigest#update(byte[], int, int)}提供数据,最后调用{@link MessageDigest#digest()}<br>
+	 * 优先复制({@link MessageDigest#clone()})当前线程缓存的对象
+	 * @param algorithm 算法名称,如"MD5","SHA-256"
+	 * @return
+	 * @throws IllegalArgumentException 不支持的算法
+	 */
+	public static MessageDigest newDigest(String algorithm){
+		MessageDigest md = getDigest(algorithm);
 		try {
-			MessageDigest md = MessageDigest.getInstance("MD5");
-			return md.digest(source);
-		} catch (NoSuchAlgorithmException e) {
-			throw new RuntimeException(e);
+			return (MessageDigest) md.clone();
+		} catch (CloneNotSupportedException e) {
+			try {
+				return MessageDigest.getInstance(algorithm);
+			} catch (NoSuchAlgorithmException e1) {
+				throw new IllegalArgumentException(e1);
+			}
 		}
 	}
+	/**
+	 * 从{@code in}读取所有数据计算摘要,不会关闭{@code in}
+	 * @param in
+	 * @param algorithm 算法名称,如"MD5","SHA-256"
+	 * @return
+	 * @throws IOException
+	 * @throws IllegalArgumentException {@code in}为{@code null}或不支持的算法
+	 */
+	public static byte[] digest(InputStream in, String algorithm) throws IOException {
+		Assert.notNull(in, "in");
+		MessageDigest md = getDigest(algorithm);
+		byte[] buffer = new byte[8*1024];
+		int size;
+		while ((size = in.read(buffer)) != -1) {
+			md.update(buffer, 0, size);
+		}
+		return md.digest();
+	}
+	/**
+	 * 从{@code channel}读取所有数据计算摘要,不会关闭{@code channel}
+	 * @param channel
+	 * @param algorithm 算法名称,如"MD5","SHA-256"
+	 * @return
+	 * @throws IOException
+	 * @throws IllegalArgumentException {@code channel}为{@code null}或不支持的算法
+	 */
+	public static byte[] digest(ReadableByteChannel channel, String algorithm) throws IOException {
+		Assert.notNull(channel, "channel");
+		MessageDigest md = getDigest(algorithm);
+		ByteBuffer buffer = ByteBuffer.allocate(8*1024);
+		while (channel.read(buffer) != -1) {
+			buffer.flip();
+			md.update(buffer);
+			buffer.clear();
+		}
+		return md.digest();
+	}
+	/**
+	 * 从{@code in}读取所有数据生成MD5校验码,不会关闭{@code in}
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 * @see #digest(InputStream, String)
+	 */
+	public static byte[] getMD5(InputStream in) throws IOException {
+		return digest(in, "MD5");
+	}
+	/**
+	 * 从{@code in}读取所有数据生成MD5校验码字符串,不会关闭{@code in}
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 * @see #getMD5(InputStream)
+	 */
+	public static String getMD5String(InputStream in) throws IOException {
+		return toHex(getMD5(in));
+	}
 	/**
 	 * 返回buffer中所有字节(position~limit),不改变buffer状态
 	 * @param buffer
@@ -99,16 +226,111 @@ public class FaceUtilits {
 		if (Judge.isNull(buffer)){
 			return null;
 		}
-		StringBuffer sb = new StringBuffer(buffer.length * 2);
-		for (int i = 0; i < buffer.length; i++) {
-			sb.append(Character.forDigit((buffer[i] & 240) >> 4, 16));
-			sb.append(Character.forDigit(buffer[i] & 15, 16));
-		}
-		return sb.toString();
+		char[] chars = new char[buffer.length << 1];
+		toHex(buffer, 0, buffer.length, chars, 0);
+		return new String(chars);
 	}
 	/** @see #toHex(byte[]) */
 	static public String toHex(ByteBuffer buffer) {
-		return toHex(getBytesInBuffer(buffer));  
+		if (null == buffer){
+			return null;
+		}
+		return toHex(buffer, new StringBuilder(buffer.remaining() << 1)).toString();
+	}
+	/**
+	 * 将{@code src}中[off,off+len)的字节转为HEX字符(小写),写入{@code dst}从{@code dstOff}开始的位置
+	 * @param src
+	 * @param off
+	 * @param len
+	 * @param dst 长度不小于{@code dstOff+len*2}
+	 * @param dstOff
+	 * @return {@code dst}中写入结束的位置
+	 * @throws IndexOutOfBoundsException 数组越界
+	 */
+	public static int toHex(byte[] src, int off, int len, char[] dst, int dstOff){
+		for(int end = off + len; off < end; ++off){
+			int b = src[off];
+			dst[dstOff++] = HEX_DIGITS[(b >> 4) & 0x0f];
+			dst[dstOff++] = HEX_DIGITS[b & 0x0f];
+		}
+		return dstOff;
+	}
+	/**
+	 * 将{@code src}转为HEX字符(小写)追加到{@code dst}
+	 * @param src
+	 * @param dst
+	 * @return {@code dst}
+	 */
+	public static StringBuilder toHex(byte[] src, StringBuilder dst){
+		Assert.notNull(src, "src");
+		Assert.notNull(dst, "dst");
+		dst.ensureCapacity(dst.length() + (src.length << 1));
+		for(int b : src){
+			dst.append(HEX_DIGITS[(b >> 4) & 0x0f]).append(HEX_DIGITS[b & 0x0f]);
+		}
+		return dst;
+	}
+	/**
+	 * 将{@code src}中所有字节(position~limit)转为HEX字符(小写)追加到{@code dst},不改变{@code src}状态
+	 * @param src
+	 * @param dst
+	 * @return {@code dst}
+	 */
+	public static StringBuilder toHex(ByteBuffer src, StringBuilder dst){
+		Assert.notNull(src, "src");
+		Assert.notNull(dst, "dst");
+		dst.ensureCapacity(dst.length() + (src.remaining() << 1));
+		for(int i = src.position(), end = src.limit(); i < end; ++i){
+			int b = src.get(i);
+			dst.append(HEX_DIGITS[(b >> 4) & 0x0f]).append(HEX_DIGITS[b & 0x0f]);
+		}
+		return dst;
+	}
+	/**
+	 * 返回HEX字符对应的数值
+	 * @param c
+	 * @return
+	 * @throws IllegalArgumentException {@code c}不是HEX字符
+	 */
+	private static int hexValue(char c){
+		int v = c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+		if(v < 0){
+			throw new IllegalArgumentException(String.format("INVALID hex char '%c'",c));
+		}
+		return v;
+	}
+	/**
+	 * 将{@code src}中[off,off+len)的HEX字符(大小写均可)转为字节,写入{@code dst}从{@code dstOff}开始的位置
+	 * @param src
+	 * @param off
+	 * @param len HEX字符数量,为奇数时忽略最后一个字符
+	 * @param dst 长度不小于{@code dstOff+len/2}
+	 * @param dstOff
+	 * @return {@code dst}中写入结束的位置
+	 * @throws IllegalArgumentException 包含非HEX字符
+	 * @throws IndexOutOfBoundsException 数组越界
+	 */
+	public static int hex2Bytes(CharSequence src, int off, int len, byte[] dst, int dstOff){
+		for(int end = off + (len & ~1); off < end; off += 2){
+			dst[dstOff++] = (byte) ((hexValue(src.charAt(off)) << 4) | hexValue(src.charAt(off + 1)));
+		}
+		return dstOff;
+	}
+	/**
+	 * 将{@code src}中的HEX字符(大小写均可)转为字节,写入{@code dst}的当前位置,{@code dst}的position前移
+	 * @param src HEX字符串,长度为奇数时忽略最后一个字符
+	 * @param dst
+	 * @return {@code dst}
+	 * @throws IllegalArgumentException 包含非HEX字符
+	 * @throws java.nio.BufferOverflowException {@code dst}剩余空间不足
+	 */
+	public static ByteBuffer hex2Bytes(CharSequence src, ByteBuffer dst){
+		Assert.notNull(src, "src");
+		Assert.notNull(dst, "dst");
+		for(int i = 0, end = src.length() & ~1; i < end; i += 2){
+			dst.put((byte) ((hexValue(src.charAt(i)) << 4) | hexValue(src.charAt(i + 1))));
+		}
+		return dst;
 	}
 	/**
 	 * 字符串验证器,根据正则表达式判断字符串是否为十六进制(HEX)字符串
@@ -117,32 +339,20 @@ public class FaceUtilits {
 	public boolean validHEX(String input){
 		return input != null && input.matches(HEX_REGEX);
 	}
-    public static byte[] hex2Bytes(String src){
-    	if(null == src){
-    		return null;
-    	}
-        byte[] res = new byte[src.length()/2];  
-        char[] chs = src.toCharArray();  
-        int[] b = new int[2];  
-  
-        for(int i=0,c=0; i<chs.length; i+=2,c++){              
-            for(int j=0; j<2; j++){  
-                if(chs[i+j]>='0' && chs[i+j]<='9'){  
-                    b[j] = (chs[i+j]-'0');  
-                }else if(chs[i+j]>='A' && chs[i+j]<='F'){  
-                    b[j] = (chs[i+j]-'A'+10);  
-                }else if(chs[i+j]>='a' && chs[i+j]<='f'){  
-                    b[j] = (chs[i+j]-'a'+10);  
-                }  
-            }   
-              
-            b[0] = (b[0]&0x0f)<<4;  
-            b[1] = (b[1]&0x0f);  
-            res[c] = (byte) (b[0] | b[1]);  
-        }  
-          
-        return res;  
-    } 
+	/**
+	 * 将HEX字符串(大小写均可)转为字节数组
+	 * @param src 长度为奇数时忽略最后一个字符
+	 * @return {@code src}为{@code null}时返回{@code null}
+	 * @throws IllegalArgumentException 包含非HEX字符
+	 */
+	public static byte[] hex2Bytes(String src){
+		if(null == src){
+			return null;
+		}
+		byte[] res = new byte[src.length()/2];
+		hex2Bytes(src, 0, src.length(), res, 0);
+		return res;
+	}
     public static ByteBuffer hex2ByteBuffer(String src){
     	return null == src?null:ByteBuffer.wrap(hex2Bytes(src));
     }
@@ -214,8 +424,13 @@ public class FaceUtilits {
 		Assert.notNull(fin, "fin");
 		FileChannel fc = fin.getChannel();
 		try {
-			ByteBuffer bb = ByteBuffer.allocate((int) fc.size());
-			fc.read(bb);
+			long size = fc.size();
+			if(size > Integer.MAX_VALUE){
+				throw new IOException(String.format("file too large:%d",size));
+			}
+			ByteBuffer bb = ByteBuffer.allocate((int) size);
+			// read可能只读取部分数据,循环读取直到读满
+			while(bb.hasRemaining() && fc.read(bb) >= 0){}
 			bb.flip();
 			return bb.array();
 		} finally {
@@ -225,6 +440,62 @@ public class FaceUtilits {
 			fin.close();
 		}
 	}
+	/**
+	 * 以只读内存映射方式打开文件,返回的{@link MappedByteBuffer}由操作系统按需加载文件内容(page cache),不占用堆内存
+	 * @param file
+	 * @return
+	 * @throws IOException 文件长度超过{@link Integer#MAX_VALUE}或其他IO异常
+	 * @throws IllegalArgumentException {@code file}为{@code null}
+	 */
+	public static MappedByteBuffer mapFile(File file) throws IOException {
+		Assert.notNull(file, "file");
+		FileInputStream fin = new FileInputStream(file);
+		try {
+			FileChannel fc = fin.getChannel();
+			long size = fc.size();
+			if(size > Integer.MAX_VALUE){
+				throw new IOException(String.format("file too large:%d",size));
+			}
+			// 映射建立后关闭文件不影响映射内容的访问
+			return fc.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			fin.close();
+		}
+	}
+	/**
+	 * 读取文件内容为{@link ByteBuffer}<br>
+	 * 文件长度不小于{@link #getMappedThreshold()}时返回只读的{@link MappedByteBuffer}({@link #mapFile(File)}),
+	 * 否则读取到堆内存({@link #readBytes(FileInputStream)})<br>
+	 * 需要可写的堆内存时使用{@link #getByteBuffer(Object)}
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 * @throws IllegalArgumentException {@code file}为{@code null}
+	 */
+	public static ByteBuffer mapOrRead(File file) throws IOException, IllegalArgumentException {
+		Assert.notNull(file, "file");
+		if(file.length() >= mappedThreshold){
+			return mapFile(file);
+		}
+		return ByteBuffer.wrap(readBytes(new FileInputStream(file)));
+	}
+	/**
+	 * @return {@link #mapOrRead(File)}使用内存映射方式读取的文件长度阈值(字节)
+	 */
+	public static long getMappedThreshold() {
+		return mappedThreshold;
+	}
+	/**
+	 * 设置{@link #mapOrRead(File)}使用内存映射方式读取的文件长度阈值(字节),默认4MB
+	 * @param mappedThreshold 为{@link Long#MAX_VALUE}时不使用内存映射
+	 * @throws IllegalArgumentException {@code mappedThreshold}<0
+	 */
+	public static void setMappedThreshold(long mappedThreshold) {
+		if(mappedThreshold < 0){
+			throw new IllegalArgumentException(String.format("INVALID mappedThreshold:%d",mappedThreshold));
+		}
+		FaceUtilits.mappedThreshold = mappedThreshold;
+	}
 	/**
 	 * 将对象转换为InputStream<br>
 	 * 类型可以是byte[],{@link ByteBuffer},{@link InputStream},{@link String}(base64编码),{@link File},{@link URL},{@link URI},否则抛出RuntimeException<br>
@@ -240,7 +511,8 @@ public class FaceUtilits {
 		if (src instanceof InputStream){
 			return (InputStream) src;
 		}else if (src instanceof String) {
-			return new ByteArrayInputStream(Base64Utils.decode(((String) src)));
+			// 边读取边解码,不一次解码全部数据
+			return Base64Codec.MIME.decodingStream((String) src);
 		} else if (src instanceof byte[]) {
 			return new ByteArrayInputStream((byte[]) src);
 		} else if (src instanceof ByteBuffer) {
@@ -345,6 +617,91 @@ public class FaceUtilits {
 		return null == src ? null : ByteBuffer.wrap(getBytes(src));
 	}
 	
+	/**
+	 * 将数据对象src读取到直接内存{@link ByteBuffer},缓冲区从{@code pool}申请,使用结束后调用{@link PooledBuffer#release()}归还<br>
+	 * 当{@code src}为{@link File}或{@link FileInputStream}时,通过{@link FileChannel}直接读取到直接内存,不经过堆内存<br>
+	 * 返回的缓冲区position为0,limit为数据长度
+	 * @param src 获取数据的源对象,类型参见{@link #getBytes(Object)}
+	 * @param pool 缓冲池,为{@code null}时使用{@link DirectBufferPool#getDefault()}
+	 * @return
+	 * @throws IOException
+	 * @throws IllegalArgumentException {@code src}为{@code null}或无法从{@code src}获取{@link InputStream}
+	 * @see #getBytes(Object)
+	 */
+	static public final <T> PooledBuffer getByteBuffer(T src, DirectBufferPool pool) throws IOException, IllegalArgumentException {
+		Assert.notNull(src, "src");
+		if(null == pool){
+			pool = DirectBufferPool.getDefault();
+		}
+		if (src instanceof String) {
+			// 预先计算解码后的长度,直接解码到缓冲区
+			String base64 = (String) src;
+			PooledBuffer pooled = pool.acquire(Base64Codec.MIME.decodedLength(base64, 0, base64.length()));
+			try{
+				Base64Codec.MIME.decode(base64, pooled.buffer()).flip();
+			}catch(RuntimeException e){
+				pooled.release();
+				throw e;
+			}
+			return pooled;
+		}else if (src instanceof byte[] || src instanceof ByteBuffer) {
+			ByteBuffer data = src instanceof ByteBuffer ? ((ByteBuffer)src).duplicate() : ByteBuffer.wrap(getBytes(src));
+			PooledBuffer pooled = pool.acquire(data.remaining());
+			pooled.buffer().put(data).flip();
+			return pooled;
+		}else if (src instanceof File){
+			return readDirect(new FileInputStream((File)src), pool);
+		}else {
+			return readDirect(getInputStream(src), pool);
+		}
+	}
+	/**
+	 * 从{@link InputStream}读取所有数据到缓冲池申请的直接内存{@link ByteBuffer},结束时会关闭{@link InputStream}
+	 * @param in
+	 * @param pool
+	 * @return
+	 * @throws IOException
+	 */
+	private static PooledBuffer readDirect(InputStream in, DirectBufferPool pool) throws IOException {
+		PooledBuffer pooled = null;
+		try {
+			if(in instanceof FileInputStream){
+				FileChannel fc = ((FileInputStream)in).getChannel();
+				long size = fc.size();
+				if(size > Integer.MAX_VALUE){
+					throw new IOException(String.format("file too large:%d",size));
+				}
+				pooled = pool.acquire((int) size);
+				ByteBuffer bb = pooled.buffer();
+				while(bb.hasRemaining() && fc.read(bb) >= 0){}
+				bb.flip();
+			}else{
+				ReadableByteChannel channel = Channels.newChannel(in);
+				pooled = pool.acquire(Math.max(in.available(), 1024*8));
+				ByteBuffer bb = pooled.buffer();
+				while(channel.read(bb) >= 0){
+					if(!bb.hasRemaining()){
+						// 缓冲区满,申请2倍容量的缓冲区
+						PooledBuffer larger = pool.acquire(bb.capacity() << 1);
+						bb.flip();
+						larger.buffer().put(bb);
+						pooled.release();
+						pooled = larger;
+						bb = larger.buffer();
+					}
+				}
+				bb.flip();
+			}
+			PooledBuffer result = pooled;
+			pooled = null;
+			return result;
+		} finally {
+			if(null != pooled){
+				pooled.release();
+			}
+			in.close();
+		}
+	}
 	/**
 	 * 调用 {@link #getByteBuffer(Object)}返回非空{@link ByteBuffer}<br>
 	 * 如果返回{@code null}或空，则抛出{@link IOException}<br>
@@ -389,8 +746,85 @@ public class FaceUtilits {
 	 */
 	public static File saveImage(InputStream img, File folder) throws IOException, IllegalArgumentException {
 		Assert.notNull(img, "img");
-		byte[] imgData = readBytes(img);
-		return Judge.isEmpty(imgData)?null:saveImageAutoName(imgData,folder);
+		try{
+			// 读取文件头判断图像格式
+			byte[] header = new byte[IMAGE_HEADER_SIZE];
+			int headerSize = 0, size;
+			while(headerSize < header.length && (size = img.read(header, headerSize, header.length - headerSize)) != -1){
+				headerSize += size;
+			}
+			if(0 == headerSize){
+				return null;
+			}
+			String suffix = FaceUtilitsX.getFormatName(headerSize == header.length ? header : Arrays.copyOf(header, headerSize)).toLowerCase();
+			// 先写入临时文件,同时计算MD5,完成后改名为MD5文件名
+			checkFolder(folder);
+			File temp = File.createTempFile("img", ".tmp", folder);
+			try{
+				MessageDigest md = getDigest("MD5");
+				md.update(header, 0, headerSize);
+				FileOutputStream out = new FileOutputStream(temp);
+				try{
+					out.write(header, 0, headerSize);
+					copy(img, out, md);
+				}finally{
+					out.close();
+				}
+				File file = new File(folder, toHex(md.digest()) + "." + suffix);
+				if(file.exists() && file.isFile() && file.length() > 0){
+					return file;
+				}
+				if(!temp.renameTo(file)){
+					// 目标文件存在(空文件)时,Windows下改名失败
+					file.delete();
+					if(!temp.renameTo(file)){
+						throw new IOException(String.format("FAIL TO RENAME %s TO %s",temp,file));
+					}
+				}
+				return file;
+			}finally{
+				temp.delete();
+			}
+		}finally{
+			img.close();
+		}
+	}
+	/**
+	 * 将{@code in}中的所有数据写入{@code out},同时更新摘要{@code md},不会关闭{@code in}和{@code out}
+	 * @param in
+	 * @param out
+	 * @param md 为{@code null}时不计算摘要
+	 * @return 复制的字节数
+	 * @throws IOException
+	 */
+	public static long copy(InputStream in, OutputStream out, MessageDigest md) throws IOException{
+		Assert.notNull(in, "in");
+		Assert.notNull(out, "out");
+		byte[] buffer = new byte[8*1024];
+		long count = 0;
+		int size;
+		while ((size = in.read(buffer)) != -1) {
+			out.write(buffer, 0, size);
+			if(null != md){
+				md.update(buffer, 0, size);
+			}
+			count += size;
+		}
+		return count;
+	}
+	/**
+	 * 文件夹不存在时创建文件夹,检查可用磁盘空间
+	 * @param folder
+	 * @throws IOException 可用磁盘空间不足
+	 */
+	private static void checkFolder(File folder) throws IOException{
+		if (!folder.exists()){
+			folder.mkdirs();
+		}
+		long free = folder.getFreeSpace()>>20;//可用磁盘空间(MB)
+		if(free<10){
+			throw new IOException(String.format("DISK ALMOST FULL(磁盘空间不足) FREE %dMB,%s",free,folder.getAbsolutePath()));
+		}
 	}
 	
 	/**
@@ -430,14 +864,7 @@ public class FaceUtilits {
 		FileOutputStream out = null;
 		FileChannel fc = null;
 		try {
-			File folder = file.getParentFile();
-			if (!folder.exists()){
-				folder.mkdirs();
-			}
-			long free = folder.getFreeSpace()>>20;//可用磁盘空间(MB)
-			if(free<10){
-				throw new IOException(String.format("DISK ALMOST FULL(磁盘空间不足) FREE %dMB,%s",free,folder.getAbsolutePath()));
-			}
+			checkFolder(file.getParentFile());
 			if (!file.exists() || !file.isFile() || overwrite) {
 				out = new FileOutputStream(file);
 				fc = out.getChannel();
@@ -454,6 +881,36 @@ public class FaceUtilits {
 			}
 		}
 	}
+	/**
+	 * 将{@code in}中的所有数据保存在{@code file}指定的文件中,同时更新摘要{@code md},结束时关闭{@code in}<br>
+	 * 如果{@code file}所在文件夹不存在，则会自动创建所有的文件夹<br>
+	 * @param in
+	 * @param file 文件保存的位置
+	 * @param overwrite 同名文件存在时是否覆盖,不覆盖时不读取{@code in}
+	 * @param md 为{@code null}时不计算摘要
+	 * @return 返回保存的文件名
+	 * @throws IOException {@code file}存在但不是文件或其他IO异常
+	 * @throws IllegalArgumentException {@code in}为null时
+	 * @see #copy(InputStream, OutputStream, MessageDigest)
+	 */
+	public static File saveBytes(InputStream in, File file, boolean overwrite, MessageDigest md) throws IOException,
+			IllegalArgumentException {
+		Assert.notNull(in, "in");
+		try {
+			checkFolder(file.getParentFile());
+			if (!file.exists() || !file.isFile() || overwrite) {
+				FileOutputStream out = new FileOutputStream(file);
+				try{
+					copy(in, out, md);
+				}finally{
+					out.close();
+				}
+			}
+			return file;
+		} finally {
+			in.close();
+		}
+	}
 	
 	/**
 	 * 如果无法获取泛型参数对象，返回null
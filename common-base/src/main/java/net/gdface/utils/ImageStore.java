@@ -0,0 +1,642 @@
+package net.gdface.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 基于内容寻址(MD5)的图像文件存储<br>
+ * 文件名为图像数据的MD5加格式后缀(与{@link FaceUtilits#saveImageAutoName(byte[], File)}相同),
+ * 按MD5前缀分级保存在子目录中(如 ab/cd/abcd....jpg),避免单个目录文件过多<br>
+ * 同一内容只写入一次:内存索引或目标文件存在时不再写入;写入时先写临时文件再原子改名,不会产生不完整的文件<br>
+ * 内存索引每个文件只保存16字节MD5和共享的格式后缀,文件位置由{@link #fileOf(String, String)}计算<br>
+ * {@link #putAsync(byte[])}将写入请求放入有界队列,由写入线程批量执行
+ * @author guyadong
+ *
+ */
+public class ImageStore implements Closeable {
+	/**
+	 * fsync策略,除{@link #NONE}之外改名后还会fsync文件所在的目录,保证崩溃后改名(文件)不会丢失
+	 * @author guyadong
+	 *
+	 */
+	public static enum SyncPolicy{
+		/** 不执行fsync,由操作系统决定写盘时机 */
+		NONE,
+		/** 每个文件写入后立即fsync,改名后fsync所在目录 */
+		EACH,
+		/**
+		 * 异步写入时先写入一批文件的数据,再逐个fsync(操作系统可以合并之前已经开始的写盘),
+		 * 全部改名后每个目录只fsync一次;同步写入时同{@link #EACH}
+		 */
+		BATCH
+	}
+	/** 临时文件后缀 */
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final Callable<File> NOOP = new Callable<File>(){
+		@Override
+		public File call() {
+			return null;
+		}};
+	private final File root;
+	/** 子目录级数,每级使用MD5的2个字符 */
+	private final int levels;
+	private final SyncPolicy syncPolicy;
+	/** 内存索引,MD5 -> 格式后缀(共享的字符串对象) */
+	private final ConcurrentMap<Key, String> index = new ConcurrentHashMap<Key, String>();
+	/** 正在异步写入的请求,MD5 -> 请求 */
+	private final ConcurrentMap<Key, WriteRequest> inflight = new ConcurrentHashMap<Key, WriteRequest>();
+	/** 格式后缀 -> 共享的后缀字符串,所有索引项共用 */
+	private final ConcurrentMap<String, String> suffixes = new ConcurrentHashMap<String, String>();
+	private final BlockingQueue<WriteRequest> queue;
+	private final int batchSize;
+	private final Thread[] writers;
+	private volatile boolean closed = false;
+	/**
+	 * @param root 存储根目录
+	 * @param levels 子目录级数(0~4),每级使用MD5的2个字符,2级时每级256个子目录
+	 * @param syncPolicy fsync策略,为{@code null}时为{@link SyncPolicy#NONE}
+	 * @param writerThreads 异步写入线程数
+	 * @param queueCapacity 异步写入队列容量
+	 * @param batchSize 每批最多写入的文件数
+	 * @throws IllegalArgumentException 参数无效
+	 */
+	public ImageStore(File root, int levels, SyncPolicy syncPolicy, int writerThreads, int queueCapacity, int batchSize) {
+		Assert.notNull(root, "root");
+		if(levels < 0 || levels > 4 || writerThreads <= 0 || queueCapacity <= 0 || batchSize <= 0){
+			throw new IllegalArgumentException(String.format("INVALID argument:levels=%d,writerThreads=%d,queueCapacity=%d,batchSize=%d",
+					levels,writerThreads,queueCapacity,batchSize));
+		}
+		this.root = root;
+		this.levels = levels;
+		this.syncPolicy = null == syncPolicy ? SyncPolicy.NONE : syncPolicy;
+		this.queue = new ArrayBlockingQueue<WriteRequest>(queueCapacity);
+		this.batchSize = batchSize;
+		this.writers = new Thread[writerThreads];
+		for(int i = 0; i < writers.length; ++i){
+			writers[i] = new Thread(new Runnable(){
+				@Override
+				public void run() {
+					drain();
+				}}, "image-store-writer-" + i);
+			writers[i].setDaemon(true);
+			writers[i].start();
+		}
+	}
+	/**
+	 * 2级子目录,不执行fsync,单个写入线程
+	 * @param root 存储根目录
+	 */
+	public ImageStore(File root) {
+		this(root, 2, SyncPolicy.NONE, 1, 1024, 64);
+	}
+	/**
+	 * 返回MD5对应的文件位置(不检查文件是否存在)
+	 * @param md5 MD5字符串(小写)
+	 * @param suffix 文件后缀(格式名)
+	 * @return
+	 */
+	public File fileOf(String md5, String suffix){
+		File folder = root;
+		for(int i = 0; i < levels; ++i){
+			folder = new File(folder, md5.substring(i * 2, i * 2 + 2));
+		}
+		return new File(folder, md5 + "." + suffix);
+	}
+	/**
+	 * @param suffix
+	 * @return 与{@code suffix}相等的共享字符串
+	 */
+	private String suffixOf(String suffix){
+		String old = suffixes.putIfAbsent(suffix, suffix);
+		return null == old ? suffix : old;
+	}
+	/**
+	 * 扫描存储目录,将已经存在的文件加入内存索引
+	 * @return 索引中的文件数量
+	 */
+	public int loadIndex(){
+		scan(root, 0);
+		return index.size();
+	}
+	private void scan(File folder, int level){
+		File[] files = folder.listFiles();
+		if(null == files){
+			return;
+		}
+		for(File file : files){
+			if(level < levels){
+				if(file.isDirectory()){
+					scan(file, level + 1);
+				}
+			}else if(file.isFile() && !file.getName().endsWith(TEMP_SUFFIX)){
+				String name = file.getName();
+				int dot = name.indexOf('.');
+				Key key;
+				if(dot > 0 && null != (key = Key.parse(name.substring(0, dot)))){
+					index.put(key, suffixOf(name.substring(dot + 1)));
+				}
+			}
+		}
+	}
+	/**
+	 * 返回MD5对应的文件,不存在返回{@code null}<br>
+	 * 只查询内存索引,调用{@link #loadIndex()}之前只包含本对象写入的文件
+	 * @param md5
+	 * @return
+	 */
+	public File get(String md5){
+		Key key = null == md5 ? null : Key.parse(md5);
+		String suffix = null == key ? null : index.get(key);
+		return null == suffix ? null : fileOf(md5.toLowerCase(), suffix);
+	}
+	/**
+	 * @param md5
+	 * @return MD5对应的文件是否存在(只查询内存索引)
+	 * @see #get(String)
+	 */
+	public boolean contains(String md5){
+		Key key = null == md5 ? null : Key.parse(md5);
+		return null != key && index.containsKey(key);
+	}
+	/**
+	 * 同步保存图像数据,已经存在时不写入
+	 * @param img 图像数据
+	 * @return 保存的文件
+	 * @throws IOException 不能识别的图像格式或其他IO异常
+	 * @throws IllegalArgumentException {@code img}为{@code null}或空
+	 */
+	public File put(byte[] img) throws IOException{
+		Assert.notEmpty(img, "img");
+		byte[] digest = FaceUtilits.getMD5(img);
+		String md5 = FaceUtilits.toHex(digest);
+		Key key = new Key(digest);
+		String suffix = index.get(key);
+		if(null != suffix){
+			return fileOf(md5, suffix);
+		}
+		suffix = suffixOf(FaceUtilitsX.getFormatName(img).toLowerCase());
+		File file = fileOf(md5, suffix);
+		if(!file.isFile()){
+			File temp = writeTemp(img, file);
+			try{
+				if(SyncPolicy.NONE != syncPolicy){
+					sync(temp);
+				}
+				commit(temp, file);
+				if(SyncPolicy.NONE != syncPolicy){
+					syncFolder(file.getParentFile());
+				}
+			}finally{
+				temp.delete();
+			}
+		}
+		index.put(key, suffix);
+		return file;
+	}
+	/**
+	 * 异步保存图像数据,已经存在时不写入,相同内容的请求正在写入时共享同一个写入操作<br>
+	 * 每个调用者得到独立的{@link Future},取消只影响调用者自己的{@link Future},
+	 * 共享同一写入操作的所有{@link Future}都取消后,如果还没有写入则不再写入<br>
+	 * 队列满时等待
+	 * @param img 图像数据
+	 * @return 保存的文件
+	 * @throws IOException 不能识别的图像格式
+	 * @throws InterruptedException 等待队列时被中断,返回之前已经放弃等待结果
+	 * @throws RejectedExecutionException 已经关闭
+	 */
+	public Future<File> putAsync(byte[] img) throws IOException, InterruptedException{
+		Assert.notEmpty(img, "img");
+		if(closed){
+			throw new RejectedExecutionException("closed");
+		}
+		byte[] digest = FaceUtilits.getMD5(img);
+		String md5 = FaceUtilits.toHex(digest);
+		Key key = new Key(digest);
+		String suffix = index.get(key);
+		if(null != suffix){
+			WriteRequest done = new WriteRequest(key, suffix, null, fileOf(md5, suffix));
+			done.complete(done.file);
+			return done;
+		}
+		suffix = suffixOf(FaceUtilitsX.getFormatName(img).toLowerCase());
+		WriteRequest request;
+		for(;;){
+			request = new WriteRequest(key, suffix, img, fileOf(md5, suffix));
+			WriteRequest old = inflight.putIfAbsent(key, request);
+			if(null == old){
+				break;
+			}
+			if(old.subscribe()){
+				return new Subscription(old);
+			}
+			// 所有调用者都已经取消的请求,删除后重试
+			inflight.remove(key, old);
+		}
+		Subscription subscription = new Subscription(request);
+		boolean interrupted = false;
+		// 等待队列时检查是否关闭,关闭后写入线程可能已经结束
+		for(;;){
+			try{
+				if(queue.offer(request, 100, TimeUnit.MILLISECONDS)){
+					break;
+				}
+				if(closed){
+					throw reject(request);
+				}
+			}catch(InterruptedException e){
+				// 只放弃当前调用者的结果,还有其他调用者共享时继续加入队列
+				interrupted = true;
+				subscription.cancel(false);
+				if(request.isCancelled()){
+					throw e;
+				}
+			}
+		}
+		// 加入队列之前已经关闭,写入线程可能已经结束,从队列中删除失败说明请求已经被写入线程或close()取出
+		if(closed && queue.remove(request)){
+			throw reject(request);
+		}
+		if(interrupted){
+			throw new InterruptedException();
+		}
+		return subscription;
+	}
+	/**
+	 * 以{@link RejectedExecutionException}结束请求
+	 * @param request
+	 * @return 结束请求的异常
+	 */
+	private static RejectedExecutionException reject(WriteRequest request){
+		RejectedExecutionException error = new RejectedExecutionException("closed");
+		request.fail(error);
+		return error;
+	}
+	/**
+	 * 将数据写入目标文件所在目录的临时文件
+	 * @param img
+	 * @param file 目标文件
+	 * @return 临时文件
+	 * @throws IOException
+	 */
+	private static File writeTemp(byte[] img, File file) throws IOException{
+		File folder = file.getParentFile();
+		if(!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()){
+			throw new IOException(String.format("FAIL TO CREATE FOLDER %s",folder));
+		}
+		File temp = File.createTempFile(file.getName(), TEMP_SUFFIX, folder);
+		FileOutputStream out = new FileOutputStream(temp);
+		try{
+			FileChannel fc = out.getChannel();
+			ByteBuffer buffer = ByteBuffer.wrap(img);
+			while(buffer.hasRemaining()){
+				fc.write(buffer);
+			}
+		}finally{
+			out.close();
+		}
+		return temp;
+	}
+	/**
+	 * 将文件内容写入磁盘
+	 * @param file
+	 * @throws IOException
+	 */
+	private static void sync(File file) throws IOException{
+		FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+		try{
+			fc.force(true);
+		}finally{
+			fc.close();
+		}
+	}
+	/**
+	 * 将目录项写入磁盘,保证目录中已经完成的改名在崩溃后不会丢失<br>
+	 * 不支持打开目录的平台(Windows)忽略
+	 * @param folder
+	 * @throws IOException
+	 */
+	private static void syncFolder(File folder) throws IOException{
+		FileChannel fc;
+		try{
+			fc = FileChannel.open(folder.toPath(), StandardOpenOption.READ);
+		}catch(AccessDeniedException e){
+			return;
+		}
+		try{
+			fc.force(true);
+		}finally{
+			fc.close();
+		}
+	}
+	/**
+	 * 将临时文件原子改名为目标文件,目标文件已经存在时保留原文件
+	 * @param temp
+	 * @param file
+	 * @throws IOException
+	 */
+	private static void commit(File temp, File file) throws IOException{
+		try{
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		}catch(FileAlreadyExistsException e){
+			// 其他线程(进程)已经写入相同内容
+		}catch(AtomicMoveNotSupportedException e){
+			if(!file.exists() && !temp.renameTo(file) && !file.exists()){
+				throw new IOException(String.format("FAIL TO RENAME %s TO %s",temp,file));
+			}
+		}
+	}
+	/**
+	 * 写入线程:每次从队列中取出一批请求写入
+	 */
+	private void drain(){
+		List<WriteRequest> batch = new ArrayList<WriteRequest>(batchSize);
+		List<File> temps = new ArrayList<File>(batchSize);
+		while(!(closed && queue.isEmpty())){
+			try {
+				WriteRequest first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if(null == first){
+					continue;
+				}
+				batch.add(first);
+			} catch (InterruptedException e) {
+				continue;
+			}
+			queue.drainTo(batch, batchSize - 1);
+			try{
+				for(WriteRequest request : batch){
+					File temp = null;
+					try{
+						// 已经取消的请求不写入
+						if(!request.isDone() && !request.file.isFile()){
+							temp = writeTemp(request.img, request.file);
+							if(SyncPolicy.EACH == syncPolicy){
+								sync(temp);
+							}
+						}
+					}catch(Throwable e){
+						finish(request, false, e);
+					}
+					temps.add(temp);
+				}
+				// 改名成功的请求,改名后所在目录fsync之后才结束
+				Map<File, List<WriteRequest>> committed = new LinkedHashMap<File, List<WriteRequest>>();
+				for(int i = 0; i < batch.size(); ++i){
+					WriteRequest request = batch.get(i);
+					File temp = temps.get(i);
+					if(request.isDone()){
+						continue;
+					}
+					try{
+						if(null != temp){
+							if(SyncPolicy.BATCH == syncPolicy){
+								sync(temp);
+							}
+							commit(temp, request.file);
+						}
+						File folder = request.file.getParentFile();
+						List<WriteRequest> list = committed.get(folder);
+						if(null == list){
+							committed.put(folder, list = new ArrayList<WriteRequest>());
+						}
+						list.add(request);
+					}catch(Throwable e){
+						finish(request, false, e);
+					}
+				}
+				// 每个目录只fsync一次
+				for(Map.Entry<File, List<WriteRequest>> entry : committed.entrySet()){
+					Throwable error = null;
+					if(SyncPolicy.NONE != syncPolicy){
+						try{
+							syncFolder(entry.getKey());
+						}catch(Throwable e){
+							error = e;
+						}
+					}
+					for(WriteRequest request : entry.getValue()){
+						finish(request, null == error, error);
+					}
+				}
+			}finally{
+				for(File temp : temps){
+					if(null != temp){
+						temp.delete();
+					}
+				}
+				batch.clear();
+				temps.clear();
+			}
+		}
+	}
+	/**
+	 * 结束请求
+	 * @param request
+	 * @param saved 是否保存成功
+	 * @param error 失败原因
+	 */
+	private void finish(WriteRequest request, boolean saved, Throwable error){
+		if(saved){
+			index.put(request.key, request.suffix);
+			request.complete(request.file);
+		}else{
+			request.fail(error);
+		}
+	}
+	/**
+	 * @return 异步写入队列中等待的请求数量
+	 */
+	public int pending(){
+		return queue.size();
+	}
+	/**
+	 * 停止接收异步写入请求,等待队列中的请求写入完成,
+	 * 写入线程结束后才加入队列的请求以{@link RejectedExecutionException}结束
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		boolean interrupted = false;
+		for(Thread writer : writers){
+			while(writer.isAlive()){
+				try {
+					writer.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		List<WriteRequest> left = new ArrayList<WriteRequest>();
+		queue.drainTo(left);
+		for(WriteRequest request : left){
+			reject(request);
+		}
+		if(interrupted){
+			Thread.currentThread().interrupt();
+		}
+	}
+	/**
+	 * 内存索引的键,16字节MD5
+	 */
+	private static final class Key{
+		private final long high;
+		private final long low;
+		Key(byte[] digest) {
+			long h = 0, l = 0;
+			for(int i = 0; i < 8; ++i){
+				h = h << 8 | (digest[i] & 0xff);
+				l = l << 8 | (digest[i + 8] & 0xff);
+			}
+			this.high = h;
+			this.low = l;
+		}
+		/**
+		 * 解析MD5字符串
+		 * @param md5
+		 * @return 不是有效的MD5字符串返回{@code null}
+		 */
+		static Key parse(String md5){
+			if(md5.length() != 32){
+				return null;
+			}
+			try{
+				return new Key(FaceUtilits.hex2Bytes(md5));
+			}catch(IllegalArgumentException e){
+				return null;
+			}
+		}
+		@Override
+		public int hashCode() {
+			return (int) (high ^ (high >>> 32));
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj){
+				return true;
+			}
+			if(!(obj instanceof Key)){
+				return false;
+			}
+			Key other = (Key) obj;
+			return high == other.high && low == other.low;
+		}
+	}
+	/**
+	 * 异步写入请求,由写入线程设置结果,结束(包括取消)时从{@link ImageStore#inflight}中删除<br>
+	 * 相同内容的多个调用者共享同一个请求,每个调用者通过{@link Subscription}观察结果,
+	 * 所有调用者都取消后才取消请求
+	 */
+	private class WriteRequest extends FutureTask<File>{
+		final Key key;
+		/** 格式后缀(共享的字符串对象) */
+		final String suffix;
+		final byte[] img;
+		final File file;
+		/** 共享请求的调用者数量 */
+		private int subscribers = 1;
+		WriteRequest(Key key, String suffix, byte[] img, File file) {
+			super(NOOP);
+			this.key = key;
+			this.suffix = suffix;
+			this.img = img;
+			this.file = file;
+		}
+		void complete(File file){
+			set(file);
+		}
+		void fail(Throwable error){
+			setException(error);
+		}
+		/**
+		 * 增加一个调用者
+		 * @return 请求已经取消时返回{@code false}
+		 */
+		synchronized boolean subscribe(){
+			if(isCancelled()){
+				return false;
+			}
+			++subscribers;
+			return true;
+		}
+		/**
+		 * 减少一个调用者,没有调用者时取消请求
+		 */
+		synchronized void unsubscribe(){
+			if(--subscribers == 0){
+				cancel(false);
+			}
+		}
+		@Override
+		protected void done() {
+			inflight.remove(key, this);
+		}
+	}
+	/**
+	 * 一个调用者对共享写入请求的观察,取消时只影响当前调用者
+	 */
+	private static class Subscription implements Future<File>{
+		private final WriteRequest request;
+		private volatile boolean cancelled = false;
+		Subscription(WriteRequest request) {
+			this.request = request;
+		}
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			synchronized(this){
+				if(cancelled || request.isDone()){
+					return false;
+				}
+				cancelled = true;
+			}
+			request.unsubscribe();
+			return true;
+		}
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+		@Override
+		public boolean isDone() {
+			return cancelled || request.isDone();
+		}
+		@Override
+		public File get() throws InterruptedException, ExecutionException {
+			if(cancelled){
+				throw new CancellationException();
+			}
+			return request.get();
+		}
+		@Override
+		public File get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			if(cancelled){
+				throw new CancellationException();
+			}
+			return request.get(timeout, unit);
+		}
+	}
+}
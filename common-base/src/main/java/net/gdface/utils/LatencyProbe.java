@@ -0,0 +1,364 @@
+package net.gdface.utils;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 高精度耗时统计对象<br>
+ * 基于{@link System#nanoTime()}计时,耗时记录在对数线性(log-linear)直方图中,
+ * 每个2的幂区间等分为16个子区间,相对误差不超过1/16,可以统计p50/p99/p999等百分位数,最小值和最大值<br>
+ * 每个线程记录到自己的直方图(单线程写入,无锁,记录时不分配内存),读取时合并所有线程的数据,
+ * 已经结束的线程的直方图合并到一个汇总直方图后删除<br>
+ * example:
+ * <pre>
+ * long start = probe.begin();
+ * ....
+ * probe.end(start);
+ * probe.print();
+ * </pre>
+ * @author guyadong
+ *
+ */
+public class LatencyProbe {
+	/** 每个2的幂区间的子区间数量(2<sup>SUB_BITS</sup>) */
+	private static final int SUB_BITS = 4;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	/** 直方图区间数量,覆盖[0,Long.MAX_VALUE] */
+	static final int BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+	/** 统计名称 */
+	private final String name;
+	/** 所有存活线程的直方图 */
+	private final ConcurrentLinkedQueue<Recorder> recorders = new ConcurrentLinkedQueue<Recorder>();
+	/** 已经结束的线程的数据合并到此直方图,同时作为合并的锁 */
+	private final Recorder retired = new Recorder(null);
+	/** 当前线程的直方图 */
+	private final ThreadLocal<Recorder> localRecorder = new ThreadLocal<Recorder>(){
+		@Override
+		protected Recorder initialValue() {
+			// 有新线程时清理已经结束的线程,线程频繁创建销毁时直方图数量不会无限增长
+			reap();
+			Recorder recorder = new Recorder(Thread.currentThread());
+			recorders.add(recorder);
+			return recorder;
+		}};
+	/**
+	 * 默认输出的时间单位
+	 */
+	private TimeUnit outTimeUnit = TimeUnit.MICROSECONDS;
+	/**
+	 * @param name 统计名称
+	 */
+	public LatencyProbe(String name) {
+		this.name = name;
+	}
+	public LatencyProbe() {
+		this(null);
+	}
+	/**
+	 * 返回{@code value}所在的直方图区间索引
+	 * @param value
+	 * @return
+	 */
+	static int bucketIndex(long value){
+		if(value < SUB_COUNT){
+			return value < 0 ? 0 : (int) value;
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(value);
+		return ((exp - SUB_BITS + 1) << SUB_BITS) + (int) ((value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1));
+	}
+	/**
+	 * 返回直方图区间的下限值
+	 * @param index
+	 * @return
+	 */
+	static long bucketLowerBound(int index){
+		if(index < SUB_COUNT){
+			return index;
+		}
+		int group = index >>> SUB_BITS;
+		return (long) (SUB_COUNT + (index & (SUB_COUNT - 1))) << (group - 1);
+	}
+	/**
+	 * 返回直方图区间的中间值
+	 * @param index
+	 * @return
+	 */
+	static long bucketMidpoint(int index){
+		if(index < SUB_COUNT){
+			return index;
+		}
+		return bucketLowerBound(index) + ((1L << ((index >>> SUB_BITS) - 1)) >>> 1);
+	}
+	/**
+	 * 计时开始
+	 * @return 开始时间(纳秒),作为{@link #end(long)}的参数
+	 */
+	public long begin(){
+		return System.nanoTime();
+	}
+	/**
+	 * 计时结束,记录从{@code start}开始的耗时
+	 * @param start {@link #begin()}返回的开始时间
+	 * @return 耗时(纳秒)
+	 */
+	public long end(long start){
+		long nanos = System.nanoTime() - start;
+		record(nanos);
+		return nanos;
+	}
+	/**
+	 * 记录一次耗时
+	 * @param nanos 耗时(纳秒)
+	 * @return 当前对象
+	 */
+	public LatencyProbe record(long nanos){
+		localRecorder.get().record(nanos);
+		return this;
+	}
+	/**
+	 * 记录一次耗时
+	 * @param duration
+	 * @param unit {@code duration}的时间单位
+	 * @return 当前对象
+	 */
+	public LatencyProbe record(long duration,TimeUnit unit){
+		return record(unit.toNanos(duration));
+	}
+	/**
+	 * 合并所有线程的数据,返回统计数据快照
+	 * @return
+	 */
+	public Snapshot snapshot(){
+		Recorder total = new Recorder(null);
+		synchronized(retired){
+			reap();
+			total.merge(retired);
+			for(Recorder recorder:recorders){
+				total.merge(recorder);
+			}
+		}
+		long[] counts = new long[BUCKETS];
+		for(int i = 0; i < BUCKETS; ++i){
+			counts[i] = total.counts.get(i);
+		}
+		return new Snapshot(counts, total.sum.get(), total.min.get(), total.max.get());
+	}
+	/**
+	 * 将已经结束的线程的直方图合并到{@link #retired}并删除
+	 */
+	private void reap(){
+		synchronized(retired){
+			for(Iterator<Recorder> it = recorders.iterator(); it.hasNext();){
+				Recorder recorder = it.next();
+				Thread owner = recorder.owner.get();
+				// 检测到线程结束之后,该线程的写入对当前线程可见
+				if(null == owner || !owner.isAlive()){
+					retired.merge(recorder);
+					it.remove();
+				}
+			}
+		}
+	}
+	/**
+	 * 向输出设备打印耗时统计信息
+	 * @see #log(String)
+	 */
+	public void print(){
+		System.out.print(log());
+	}
+	/**
+	 * 输出耗时统计信息
+	 * @param name
+	 * @return
+	 */
+	public String log(String name){
+		return log(name,outTimeUnit);
+	}
+	/**
+	 * 以unit为时间单位输出统计信息
+	 * @param name
+	 * @param unit
+	 * @return
+	 */
+	public String log(String name,TimeUnit unit){
+		return String.format("%s: %s\n", name, snapshot().toString(unit));
+	}
+	public String log(){
+		return log(name);
+	}
+	/**
+	 * @return 统计名称
+	 */
+	public String getName() {
+		return name;
+	}
+	public TimeUnit getOutTimeUnit() {
+		return outTimeUnit;
+	}
+	/**
+	 * 设置输出时间单位
+	 * @param outTimeUnit
+	 * @return
+	 */
+	public LatencyProbe setOutTimeUnit(TimeUnit outTimeUnit) {
+		if(null != outTimeUnit){
+			this.outTimeUnit = outTimeUnit;
+		}
+		return this;
+	}
+	/**
+	 * 单个线程的直方图,只有所属线程写入(lazySet),其他线程读取
+	 * @author guyadong
+	 *
+	 */
+	private static class Recorder{
+		/** 所属线程,弱引用不阻止线程对象被回收 */
+		private final WeakReference<Thread> owner;
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		private final AtomicLong sum = new AtomicLong(0);
+		private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+		private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+		Recorder(Thread owner) {
+			this.owner = new WeakReference<Thread>(owner);
+		}
+		void record(long nanos){
+			int index = bucketIndex(nanos);
+			counts.lazySet(index, counts.get(index) + 1);
+			sum.lazySet(sum.get() + nanos);
+			if(nanos < min.get()){
+				min.lazySet(nanos);
+			}
+			if(nanos > max.get()){
+				max.lazySet(nanos);
+			}
+		}
+		/**
+		 * 将{@code other}的数据累加到当前对象,只在持有{@link LatencyProbe#retired}锁时调用
+		 * @param other
+		 */
+		void merge(Recorder other){
+			for(int i = 0; i < BUCKETS; ++i){
+				long c = other.counts.get(i);
+				if(0 != c){
+					counts.lazySet(i, counts.get(i) + c);
+				}
+			}
+			sum.lazySet(sum.get() + other.sum.get());
+			min.lazySet(Math.min(min.get(), other.min.get()));
+			max.lazySet(Math.max(max.get(), other.max.get()));
+		}
+	}
+	/**
+	 * 耗时统计数据快照(时间单位为纳秒)
+	 * @author guyadong
+	 *
+	 */
+	public static class Snapshot{
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long min;
+		private final long max;
+		Snapshot(long[] counts, long sum, long min, long max) {
+			long count = 0;
+			for(long c:counts){
+				count += c;
+			}
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.min = min;
+			this.max = max;
+		}
+		/** @return 样本数量 */
+		public long getCount() {
+			return count;
+		}
+		/** @return 累计耗时 */
+		public long getSum() {
+			return sum;
+		}
+		/** @return 最小值,没有样本时返回0 */
+		public long getMin() {
+			return 0 == count ? 0 : min;
+		}
+		/** @return 最大值,没有样本时返回0 */
+		public long getMax() {
+			return 0 == count ? 0 : max;
+		}
+		/** @return 平均值,没有样本时返回0 */
+		public double getMean() {
+			return 0 == count ? 0.0 : (double) sum / count;
+		}
+		/**
+		 * 返回百分位数
+		 * @param quantile 分位(0.0~1.0),如0.99
+		 * @return 没有样本时返回0
+		 */
+		public long getPercentile(double quantile){
+			if(0 == count){
+				return 0;
+			}
+			long target = Math.max(1L, (long) Math.ceil(quantile * count));
+			long cumulative = 0;
+			for(int i = 0; i < counts.length; ++i){
+				if((cumulative += counts[i]) >= target){
+					return Math.max(getMin(), Math.min(getMax(), bucketMidpoint(i)));
+				}
+			}
+			return getMax();
+		}
+		/**
+		 * 返回当前快照与之前快照{@code previous}的差值(区间统计)<br>
+		 * 最小值和最大值为区间内样本所在直方图区间的估计值
+		 * @param previous 之前的快照,为{@code null}返回当前对象
+		 * @return
+		 */
+		public Snapshot minus(Snapshot previous){
+			if(null == previous){
+				return this;
+			}
+			long[] delta = new long[counts.length];
+			int first = -1, last = -1;
+			for(int i = 0; i < counts.length; ++i){
+				if((delta[i] = counts[i] - previous.counts[i]) > 0){
+					if(first < 0){
+						first = i;
+					}
+					last = i;
+				}
+			}
+			if(first < 0){
+				return new Snapshot(delta, 0, Long.MAX_VALUE, Long.MIN_VALUE);
+			}
+			return new Snapshot(delta, sum - previous.sum,
+					Math.max(min, bucketLowerBound(first)),
+					last + 1 < counts.length ? Math.min(max, bucketLowerBound(last + 1) - 1) : max);
+		}
+		/**
+		 * 以unit为时间单位输出统计信息
+		 * @param unit
+		 * @return
+		 */
+		public String toString(TimeUnit unit){
+			double scale = (double) unit.toNanos(1);
+			return String.format("count=%d,mean=%.3f,min=%.3f,p50=%.3f,p99=%.3f,p999=%.3f,max=%.3f %s",
+					count,
+					getMean() / scale,
+					getMin() / scale,
+					getPercentile(0.5) / scale,
+					getPercentile(0.99) / scale,
+					getPercentile(0.999) / scale,
+					getMax() / scale,
+					unit.name().toLowerCase());
+		}
+		@Override
+		public String toString() {
+			return toString(TimeUnit.NANOSECONDS);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package net.gdface.utils;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁资源池<br>
+ * 用法与{@link ResourcePool}相同,区别在于空闲资源不保存在阻塞队列中,而是保存在固定容量的槽位数组中,
+ * 申请/释放资源时通过CAS操作认领/归还槽位,不同线程从不同的起始槽位开始扫描以减少冲突,
+ * 适用于大量线程竞争少量资源的场景<br>
+ * 没有空闲资源时申请线程先自旋重试,然后挂起等待其他线程释放资源<br>
+ * 资源总数不能超过槽位容量,{@link #getMaxSize()}不大于槽位容量
+ * @author guyadong
+ *
+ * @param <R> 资源类型
+ */
+public class LockFreeResourcePool<R> extends ResourcePool<R> {
+	/** 挂起等待前的自旋重试次数 */
+	private static final int SPIN_TRIES = 32;
+	/** 空闲资源槽位,{@code null}为空槽位 */
+	private final AtomicReferenceArray<R> slots;
+	/** 等待资源的线程队列 */
+	private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+	/**
+	 * 构造方法<br>
+	 * 创建空的资源池,资源由{@link #newResource()}创建
+	 * @param capacity 槽位容量(资源总数上限)
+	 * @throws IllegalArgumentException {@code capacity}<=0
+	 */
+	protected LockFreeResourcePool(int capacity) {
+		if(capacity <= 0){
+			throw new IllegalArgumentException(String.format("INVALID capacity:%d",capacity));
+		}
+		this.slots = new AtomicReferenceArray<R>(capacity);
+	}
+	/**
+	 * 构造方法<br>
+	 * {@link #getMinSize()}为资源数量,空闲资源回收时不会回收这些资源
+	 * @param capacity 槽位容量(资源总数上限)
+	 * @param resources 资源对象集合
+	 * @throws IllegalArgumentException 包含{@code null}元素或资源数量超过{@code capacity}
+	 */
+	public LockFreeResourcePool(int capacity, Collection<R> resources) {
+		this(capacity);
+		if(resources.size() > capacity){
+			throw new IllegalArgumentException(String.format("too many resources:%d > capacity %d",resources.size(),capacity));
+		}
+		int index = 0;
+		for(R r:resources){
+			if(null == r){
+				throw new IllegalArgumentException("resources contains null element");
+			}
+			slots.set(index++, r);
+		}
+		size.set(index);
+		setMinSize(index);
+	}
+	/**
+	 * 构造方法,槽位容量为资源数量
+	 * @param resources 资源对象集合
+	 * @throws IllegalArgumentException 包含{@code null}元素或为空
+	 */
+	public LockFreeResourcePool(Collection<R> resources) {
+		this(resources.size(), resources);
+	}
+	/**
+	 * 返回当前线程扫描槽位的起始位置,不同线程尽量分散到不同的槽位
+	 * @param length 槽位数量
+	 * @return
+	 */
+	private static int stripe(int length){
+		long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+		return (int) ((h >>> 33) % length);
+	}
+	@Override
+	protected R pollIdle() {
+		int length = slots.length();
+		for(int i = 0, index = stripe(length); i < length; ++i){
+			R r = slots.get(index);
+			if(null != r && slots.compareAndSet(index, r, null)){
+				return r;
+			}
+			if(++index == length){
+				index = 0;
+			}
+		}
+		return null;
+	}
+	@Override
+	protected R takeIdle(long nanos) throws InterruptedException {
+		if(0 == nanos){
+			return pollIdle();
+		}
+		R r;
+		for(int i = 0; i < SPIN_TRIES; ++i){
+			if(null != (r = pollIdle())){
+				return r;
+			}
+			Thread.yield();
+		}
+		final Thread current = Thread.currentThread();
+		final long deadline = nanos < 0 ? 0L : System.nanoTime() + nanos;
+		for(;;){
+			waiters.offer(current);
+			// 加入等待队列之后再检查一次,避免错过入队之前释放的资源
+			if(null != (r = pollIdle())){
+				waiters.remove(current);
+				return r;
+			}
+			if(nanos < 0){
+				LockSupport.park(this);
+			}else{
+				long remaining = deadline - System.nanoTime();
+				if(remaining <= 0){
+					cancelWait(current);
+					return null;
+				}
+				LockSupport.parkNanos(this, remaining);
+			}
+			if(Thread.interrupted()){
+				cancelWait(current);
+				throw new InterruptedException();
+			}
+			// 被唤醒(或超时,虚假唤醒),从等待队列中删除后重新尝试
+			waiters.remove(current);
+		}
+	}
+	/**
+	 * 放弃等待,如果已经被唤醒(不在等待队列中)则将唤醒信号传递给下一个等待线程
+	 * @param current
+	 */
+	private void cancelWait(Thread current){
+		if(!waiters.remove(current)){
+			signalWaiter();
+		}
+	}
+	/**
+	 * 唤醒一个等待资源的线程
+	 */
+	private void signalWaiter(){
+		if(!waiters.isEmpty()){
+			Thread waiter = waiters.poll();
+			if(null != waiter){
+				LockSupport.unpark(waiter);
+			}
+		}
+	}
+	@Override
+	protected void offerIdle(R resource) {
+		int length = slots.length();
+		for(int i = 0, index = stripe(length); i < length; ++i){
+			if(null == slots.get(index) && slots.compareAndSet(index, null, resource)){
+				signalWaiter();
+				return;
+			}
+			if(++index == length){
+				index = 0;
+			}
+		}
+		// 资源总数不超过槽位容量,不应该发生
+		throw new IllegalStateException("NOT FOUND empty slot");
+	}
+	@Override
+	protected boolean removeIdle(R resource) {
+		int length = slots.length();
+		for(int i = 0, index = stripe(length); i < length; ++i){
+			if(resource == slots.get(index)){
+				return slots.compareAndSet(index, resource, null);
+			}
+			if(++index == length){
+				index = 0;
+			}
+		}
+		return false;
+	}
+	@Override
+	protected int idleCount() {
+		int count = 0;
+		for(int i = 0, length = slots.length(); i < length; ++i){
+			if(null != slots.get(i)){
+				++count;
+			}
+		}
+		return count;
+	}
+	/**
+	 * @return 最大资源数量,不大于槽位容量
+	 */
+	@Override
+	public int getMaxSize() {
+		return Math.min(super.getMaxSize(), slots.length());
+	}
+	/**
+	 * @return 槽位容量(资源总数上限)
+	 */
+	public int getCapacity() {
+		return slots.length();
+	}
+}
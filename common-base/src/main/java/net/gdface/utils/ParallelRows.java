@@ -0,0 +1,84 @@
+package net.gdface.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 按行分段并行处理<br>
+ * 将{@code [0,rows)}行递归二分为不少于{@code minRows}行的分段,在{@link ForkJoinPool}中并行执行{@link #process(int, int)};
+ * 行数不足两个分段或线程池并行度为1时在调用线程中直接执行<br>
+ * example:
+ * <pre>
+ * new ParallelRows(){
+ *     protected void process(int start, int end){
+ *         for(int y = start; y &lt; end; ++y){
+ *             ....
+ *         }
+ *     }
+ * }.run(height, Math.max(1, 65536 / width));
+ * </pre>
+ * @author guyadong
+ *
+ */
+public abstract class ParallelRows {
+	private static final ForkJoinPool DEFAULT_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	/**
+	 * @return 默认线程池,并行度为CPU核数
+	 */
+	public static ForkJoinPool getDefaultPool(){
+		return DEFAULT_POOL;
+	}
+	/**
+	 * 处理{@code [start,end)}行,不同分段可能在不同线程中同时执行
+	 * @param start 起始行(包含)
+	 * @param end 结束行(不包含)
+	 */
+	protected abstract void process(int start, int end);
+	/**
+	 * 在默认线程池中执行
+	 * @see #run(int, int, ForkJoinPool)
+	 */
+	public void run(int rows, int minRows){
+		run(rows, minRows, DEFAULT_POOL);
+	}
+	/**
+	 * 分段处理{@code [0,rows)}行,所有分段执行结束后返回
+	 * @param rows 总行数
+	 * @param minRows 每个分段的最小行数
+	 * @param pool 线程池,为{@code null}时在调用线程中执行
+	 * @throws IllegalArgumentException {@code rows}<0或{@code minRows}<=0
+	 */
+	public void run(int rows, int minRows, ForkJoinPool pool){
+		if(rows < 0 || minRows <= 0){
+			throw new IllegalArgumentException(String.format("INVALID rows=%d,minRows=%d",rows,minRows));
+		}
+		if(0 == rows){
+			return;
+		}
+		if(null == pool || pool.getParallelism() <= 1 || rows < minRows * 2){
+			process(0, rows);
+		}else{
+			pool.invoke(new Band(0, rows, minRows));
+		}
+	}
+	private class Band extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+		private final int start;
+		private final int end;
+		private final int minRows;
+		Band(int start, int end, int minRows) {
+			this.start = start;
+			this.end = end;
+			this.minRows = minRows;
+		}
+		@Override
+		protected void compute() {
+			if(end - start < minRows * 2){
+				process(start, end);
+			}else{
+				int mid = (start + end) >>> 1;
+				invokeAll(new Band(start, mid, minRows), new Band(mid, end, minRows));
+			}
+		}
+	}
+}
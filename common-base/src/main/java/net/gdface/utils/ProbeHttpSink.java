@@ -0,0 +1,70 @@
+package net.gdface.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import net.gdface.utils.ProbeRegistry.Report;
+import net.gdface.utils.ProbeRegistry.Sink;
+
+/**
+ * 基于JDK内置HTTP服务({@link HttpServer})的{@link Sink}实现,只监听本机回环地址,
+ * 以文本格式提供最近一次的统计数据,访问 http://127.0.0.1:{port}{path} 获取<br>
+ * 依赖{@code com.sun.net.httpserver},没有放在{@link ProbeSinks}中,不使用时不会被加载(如Android平台)
+ * @author guyadong
+ *
+ */
+public class ProbeHttpSink implements Sink{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private final HttpServer server;
+	private final TimeUnit unit;
+	private volatile byte[] content = "no report yet\n".getBytes(UTF8);
+	/**
+	 * 启动HTTP服务
+	 * @param port 端口号,为0时自动分配,参见{@link #getPort()}
+	 * @param path 访问路径,如 "/probes"
+	 * @param unit 耗时输出的时间单位
+	 * @throws IOException
+	 */
+	public ProbeHttpSink(int port, String path, TimeUnit unit) throws IOException {
+		Assert.notEmpty(path, "path");
+		Assert.notNull(unit, "unit");
+		this.unit = unit;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(null), port), 0);
+		server.createContext(path, new HttpHandler(){
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] body = content;
+				exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				OutputStream out = exchange.getResponseBody();
+				try{
+					out.write(body);
+				}finally{
+					out.close();
+				}
+			}});
+		server.start();
+	}
+	/**
+	 * @return HTTP服务的端口号
+	 */
+	public int getPort(){
+		return server.getAddress().getPort();
+	}
+	@Override
+	public void report(Report report) {
+		content = report.toString(unit).getBytes(UTF8);
+	}
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+}
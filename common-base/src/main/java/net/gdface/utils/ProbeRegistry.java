@@ -0,0 +1,271 @@
+package net.gdface.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 命名的耗时统计({@link LatencyProbe})和计数器注册表<br>
+ * 通过名字(方法名或自定义标签)获取全局共享的统计对象,
+ * {@link #startReporter(long, TimeUnit, Sink)}启动定时任务,周期性地将区间统计数据(与上一周期的差值)输出到{@link Sink},
+ * 参见{@link ProbeSinks}<br>
+ * example:
+ * <pre>
+ * private static final LatencyProbe PROBE = ProbeRegistry.global().probeOfCaller();
+ * ....
+ * long start = PROBE.begin();
+ * ....
+ * PROBE.end(start);
+ * </pre>
+ * @author guyadong
+ *
+ */
+public class ProbeRegistry {
+	private static final Logger logger = Logger.getLogger(ProbeRegistry.class.getSimpleName());
+	private static final ProbeRegistry GLOBAL = new ProbeRegistry();
+	private final ConcurrentMap<String, LatencyProbe> probes = new ConcurrentHashMap<String, LatencyProbe>();
+	private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+	public ProbeRegistry() {
+	}
+	/**
+	 * @return 全局注册表
+	 */
+	public static ProbeRegistry global(){
+		return GLOBAL;
+	}
+	/**
+	 * 返回名为{@code name}的耗时统计对象,不存在则创建
+	 * @param name
+	 * @return
+	 * @throws IllegalArgumentException {@code name}为{@code null}或空
+	 */
+	public LatencyProbe probe(String name){
+		Assert.notEmpty(name, "name");
+		LatencyProbe probe = probes.get(name);
+		if(null == probe){
+			LatencyProbe old = probes.putIfAbsent(name, probe = new LatencyProbe(name));
+			if(null != old){
+				probe = old;
+			}
+		}
+		return probe;
+	}
+	/**
+	 * 返回以调用者方法名(类名.方法名)命名的耗时统计对象<br>
+	 * 该方法调用{@link Throwable#getStackTrace()}获取方法名,应该保存返回值而不要每次计时都调用
+	 * @return
+	 * @see #probe(String)
+	 */
+	public LatencyProbe probeOfCaller(){
+		StackTraceElement stack = new Throwable().getStackTrace()[1];
+		return probe(stack.getClassName() + "." + stack.getMethodName());
+	}
+	/**
+	 * 返回名为{@code name}的计数器,不存在则创建
+	 * @param name
+	 * @return
+	 * @throws IllegalArgumentException {@code name}为{@code null}或空
+	 */
+	public AtomicLong counter(String name){
+		Assert.notEmpty(name, "name");
+		AtomicLong counter = counters.get(name);
+		if(null == counter){
+			AtomicLong old = counters.putIfAbsent(name, counter = new AtomicLong(0));
+			if(null != old){
+				counter = old;
+			}
+		}
+		return counter;
+	}
+	/**
+	 * @return 所有耗时统计的快照(以名字排序)
+	 */
+	public Map<String, LatencyProbe.Snapshot> snapshotProbes(){
+		TreeMap<String, LatencyProbe.Snapshot> map = new TreeMap<String, LatencyProbe.Snapshot>();
+		for(Entry<String, LatencyProbe> entry:probes.entrySet()){
+			map.put(entry.getKey(), entry.getValue().snapshot());
+		}
+		return map;
+	}
+	/**
+	 * @return 所有计数器的当前值(以名字排序)
+	 */
+	public Map<String, Long> snapshotCounters(){
+		TreeMap<String, Long> map = new TreeMap<String, Long>();
+		for(Entry<String, AtomicLong> entry:counters.entrySet()){
+			map.put(entry.getKey(), entry.getValue().get());
+		}
+		return map;
+	}
+	/**
+	 * 启动定时任务(daemon线程),每隔{@code period}将区间统计数据输出到{@code sink}
+	 * @param period 输出周期
+	 * @param unit {@code period}的时间单位
+	 * @param sink
+	 * @return 定时任务对象,调用{@link Reporter#close()}停止
+	 * @throws IllegalArgumentException {@code period}<=0或{@code sink}为{@code null}
+	 */
+	public Reporter startReporter(long period,TimeUnit unit,Sink sink){
+		if(period <= 0){
+			throw new IllegalArgumentException(String.format("INVALID period:%d",period));
+		}
+		Assert.notNull(unit, "unit");
+		Assert.notNull(sink, "sink");
+		Reporter reporter = new Reporter(this, sink);
+		reporter.timer.scheduleAtFixedRate(reporter, period, period, unit);
+		return reporter;
+	}
+	/**
+	 * 统计数据输出接口
+	 * @author guyadong
+	 *
+	 */
+	public static interface Sink extends Closeable{
+		/**
+		 * 输出一个周期的统计数据
+		 * @param report
+		 * @throws IOException
+		 */
+		void report(Report report) throws IOException;
+	}
+	/**
+	 * 一个输出周期的统计数据
+	 * @author guyadong
+	 *
+	 */
+	public static class Report{
+		private final long timestamp;
+		private final long intervalMillis;
+		private final Map<String, LatencyProbe.Snapshot> probes;
+		private final Map<String, Long> counters;
+		private final Map<String, Long> totals;
+		Report(long timestamp, long intervalMillis, Map<String, LatencyProbe.Snapshot> probes,
+				Map<String, Long> counters, Map<String, Long> totals) {
+			this.timestamp = timestamp;
+			this.intervalMillis = intervalMillis;
+			this.probes = Collections.unmodifiableMap(probes);
+			this.counters = Collections.unmodifiableMap(counters);
+			this.totals = Collections.unmodifiableMap(totals);
+		}
+		/** @return 统计时间(毫秒) */
+		public long getTimestamp() {
+			return timestamp;
+		}
+		/** @return 统计区间长度(毫秒) */
+		public long getIntervalMillis() {
+			return intervalMillis;
+		}
+		/** @return 区间内的耗时统计(以名字排序) */
+		public Map<String, LatencyProbe.Snapshot> getProbes() {
+			return probes;
+		}
+		/** @return 区间内的计数器增量(以名字排序) */
+		public Map<String, Long> getCounters() {
+			return counters;
+		}
+		/** @return 计数器当前值(以名字排序) */
+		public Map<String, Long> getTotals() {
+			return totals;
+		}
+		/**
+		 * 以unit为时间单位输出统计信息,每个统计项一行
+		 * @param unit
+		 * @return
+		 */
+		public String toString(TimeUnit unit){
+			StringBuilder builder = new StringBuilder(256);
+			builder.append(String.format("interval %d ms\n", intervalMillis));
+			for(Entry<String, LatencyProbe.Snapshot> entry:probes.entrySet()){
+				builder.append(entry.getKey()).append(": ").append(entry.getValue().toString(unit)).append('\n');
+			}
+			for(Entry<String, Long> entry:counters.entrySet()){
+				builder.append(entry.getKey()).append(": +").append(entry.getValue())
+					.append(" (").append(totals.get(entry.getKey())).append(")\n");
+			}
+			return builder.toString();
+		}
+		@Override
+		public String toString() {
+			return toString(TimeUnit.MICROSECONDS);
+		}
+	}
+	/**
+	 * 定时输出统计数据的任务
+	 * @author guyadong
+	 *
+	 */
+	public static class Reporter implements Runnable, Closeable{
+		private final ProbeRegistry registry;
+		private final Sink sink;
+		private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "probe-reporter");
+				thread.setDaemon(true);
+				return thread;
+			}});
+		private Map<String, LatencyProbe.Snapshot> lastProbes = Collections.emptyMap();
+		private Map<String, Long> lastCounters = Collections.emptyMap();
+		private long lastTime = System.currentTimeMillis();
+		private boolean closed = false;
+		private Reporter(ProbeRegistry registry, Sink sink) {
+			this.registry = registry;
+			this.sink = sink;
+		}
+		@Override
+		public synchronized void run() {
+			if(closed){
+				return;
+			}
+			long now = System.currentTimeMillis();
+			Map<String, LatencyProbe.Snapshot> probes = registry.snapshotProbes();
+			Map<String, Long> counters = registry.snapshotCounters();
+			TreeMap<String, LatencyProbe.Snapshot> probeDeltas = new TreeMap<String, LatencyProbe.Snapshot>();
+			for(Entry<String, LatencyProbe.Snapshot> entry:probes.entrySet()){
+				probeDeltas.put(entry.getKey(), entry.getValue().minus(lastProbes.get(entry.getKey())));
+			}
+			TreeMap<String, Long> counterDeltas = new TreeMap<String, Long>();
+			for(Entry<String, Long> entry:counters.entrySet()){
+				Long last = lastCounters.get(entry.getKey());
+				counterDeltas.put(entry.getKey(), entry.getValue() - (null == last ? 0L : last));
+			}
+			Report report = new Report(now, now - lastTime, probeDeltas, counterDeltas, counters);
+			lastProbes = probes;
+			lastCounters = counters;
+			lastTime = now;
+			try {
+				sink.report(report);
+			} catch (Exception e) {
+				// 输出失败不中止定时任务
+				logger.log(Level.WARNING, "fail to report probes", e);
+			}
+		}
+		/**
+		 * 停止定时任务,等待正在执行的输出结束后关闭{@link Sink}
+		 */
+		@Override
+		public void close() throws IOException {
+			timer.shutdown();
+			// run()同步执行,获得锁时没有正在执行的输出,之后的run()不再输出
+			synchronized(this){
+				if(closed){
+					return;
+				}
+				closed = true;
+				sink.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package net.gdface.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.gdface.utils.ProbeRegistry.Report;
+import net.gdface.utils.ProbeRegistry.Sink;
+
+/**
+ * {@link ProbeRegistry.Sink}的常用实现<br>
+ * 基于JDK内置HTTP服务的实现参见{@link ProbeHttpSink},单独成类,Android等没有{@code com.sun.net.httpserver}的平台不会加载
+ * @author guyadong
+ *
+ */
+public class ProbeSinks {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private ProbeSinks() {
+	}
+	/**
+	 * 输出到{@link PrintStream}
+	 * @param printStream
+	 * @param unit 耗时输出的时间单位
+	 * @return
+	 */
+	public static Sink printStream(final PrintStream printStream, final TimeUnit unit){
+		Assert.notNull(printStream, "printStream");
+		Assert.notNull(unit, "unit");
+		return new Sink(){
+			@Override
+			public void report(Report report) {
+				printStream.print(report.toString(unit));
+			}
+			@Override
+			public void close() {
+			}};
+	}
+	/**
+	 * 输出到{@link Logger}(java.util.logging),
+	 * 使用SLF4J时可以通过jul-to-slf4j桥接输出
+	 * @param logger
+	 * @param level 日志级别
+	 * @param unit 耗时输出的时间单位
+	 * @return
+	 */
+	public static Sink logger(final Logger logger, final Level level, final TimeUnit unit){
+		Assert.notNull(logger, "logger");
+		Assert.notNull(level, "level");
+		Assert.notNull(unit, "unit");
+		return new Sink(){
+			@Override
+			public void report(Report report) {
+				if(logger.isLoggable(level)){
+					logger.log(level, report.toString(unit));
+				}
+			}
+			@Override
+			public void close() {
+			}};
+	}
+	/**
+	 * 以CSV格式追加输出到文件,每个统计项一行,耗时单位为纳秒<br>
+	 * 列: timestamp,name,interval_ms,count,mean,min,p50,p99,p999,max<br>
+	 * 计数器行只有count列(区间增量)
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static Sink csv(File file) throws IOException{
+		Assert.notNull(file, "file");
+		boolean exists = file.exists() && file.length() > 0;
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF8);
+		if(!exists){
+			writer.write("timestamp,name,interval_ms,count,mean,min,p50,p99,p999,max\n");
+			writer.flush();
+		}
+		return new Sink(){
+			@Override
+			public void report(Report report) throws IOException {
+				StringBuilder builder = new StringBuilder(256);
+				for(Entry<String, LatencyProbe.Snapshot> entry:report.getProbes().entrySet()){
+					LatencyProbe.Snapshot s = entry.getValue();
+					builder.append(String.format("%d,%s,%d,%d,%.1f,%d,%d,%d,%d,%d\n",
+							report.getTimestamp(),
+							csvField(entry.getKey()),
+							report.getIntervalMillis(),
+							s.getCount(),
+							s.getMean(),
+							s.getMin(),
+							s.getPercentile(0.5),
+							s.getPercentile(0.99),
+							s.getPercentile(0.999),
+							s.getMax()));
+				}
+				for(Entry<String, Long> entry:report.getCounters().entrySet()){
+					builder.append(String.format("%d,%s,%d,%d,,,,,,\n",
+							report.getTimestamp(),
+							csvField(entry.getKey()),
+							report.getIntervalMillis(),
+							entry.getValue()));
+				}
+				writer.write(builder.toString());
+				writer.flush();
+			}
+			@Override
+			public void close() throws IOException {
+				writer.close();
+			}};
+	}
+	private static String csvField(String value){
+		if(value.indexOf(',') < 0 && value.indexOf('"') < 0){
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+	/**
+	 * 输出到{@link Logger}的默认实现,日志级别为{@link Level#INFO},耗时单位为微秒
+	 * @param name logger名字
+	 * @return
+	 * @see #logger(Logger, Level, TimeUnit)
+	 */
+	public static Sink logger(String name){
+		return logger(Logger.getLogger(name), Level.INFO, TimeUnit.MICROSECONDS);
+	}
+}
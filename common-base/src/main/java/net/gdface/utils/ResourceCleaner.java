@@ -0,0 +1,85 @@
+package net.gdface.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于{@link PhantomReference}的资源清理工具(Java 7下{@code java.lang.ref.Cleaner}的替代)<br>
+ * 对象被GC回收后由后台线程执行注册的清理动作,用于代替{@code finalize()}:
+ * 对象不进入finalizer队列,不影响年轻代回收<br>
+ * 清理动作不能引用被注册的对象(包括非静态内部类和匿名类),否则对象永远不会被回收<br>
+ * 正常情况下应该由调用者显式调用{@link Cleanable#clean()}(通常在{@code close()}中),GC清理只是兜底
+ * @author guyadong
+ *
+ */
+public class ResourceCleaner {
+	private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<Object>();
+	/** 保持{@link Cleanable}强引用,否则{@link PhantomReference}自身会先被回收 */
+	private static final Set<Cleanable> LIVE = Collections.newSetFromMap(new ConcurrentHashMap<Cleanable, Boolean>());
+	static{
+		Thread thread = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				for(;;){
+					try {
+						((Cleanable)QUEUE.remove()).clean();
+					} catch (InterruptedException e) {
+						// 守护线程,忽略中断
+					} catch (Throwable e) {
+						// 清理动作的异常不能终止清理线程
+					}
+				}
+			}}, "resource-cleaner");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	private ResourceCleaner() {
+	}
+	/**
+	 * 注册清理动作,{@code obj}被GC回收后执行{@code action}
+	 * @param obj 被监视的对象
+	 * @param action 清理动作,不能引用{@code obj}
+	 * @return 用于显式执行清理动作的{@link Cleanable}对象
+	 * @throws IllegalArgumentException 参数为{@code null}
+	 */
+	public static Cleanable register(Object obj, Closeable action){
+		Assert.notNull(obj, "obj");
+		Assert.notNull(action, "action");
+		Cleanable cleanable = new Cleanable(obj, action);
+		LIVE.add(cleanable);
+		return cleanable;
+	}
+	/**
+	 * @return 已经注册还没有执行清理的对象数量
+	 */
+	public static int pending(){
+		return LIVE.size();
+	}
+	/**
+	 * 已注册的清理动作
+	 * @author guyadong
+	 *
+	 */
+	public static final class Cleanable extends PhantomReference<Object>{
+		private final Closeable action;
+		private Cleanable(Object referent, Closeable action) {
+			super(referent, QUEUE);
+			this.action = action;
+		}
+		/**
+		 * 注销并执行清理动作,多次调用只执行一次
+		 * @throws IOException 清理动作抛出的异常
+		 */
+		public void clean() throws IOException{
+			if(LIVE.remove(this)){
+				clear();
+				action.close();
+			}
+		}
+	}
+}
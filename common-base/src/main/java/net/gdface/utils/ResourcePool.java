@@ -1,32 +1,108 @@
 package net.gdface.utils;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 资源池管理对象<br>
  * {@link #apply()},{@link #free()}用于申请/释放资源,申请的资源对象不可跨线程调用,<br>
- * 通过重写{@link #isNestable()}方法决定是否允许嵌套调用
+ * 通过重写{@link #isNestable()}方法决定是否允许嵌套调用<br>
+ * 空闲资源的存取通过{@link #pollIdle()},{@link #takeIdle(long)},{@link #offerIdle(Object)}实现,
+ * 默认保存在阻塞队列{@link #queue}中,子类可重写这些方法改变空闲资源的存储方式,参见{@link LockFreeResourcePool}<br>
+ * {@link #tryApply(long, TimeUnit)}限时申请资源,{@link #applyAsync()}异步申请资源,
+ * {@link #getStatistics()}返回等待线程数,等待时间分布,资源使用率等统计数据,用于根据实际负载调整资源数量<br>
+ * 弹性容量:{@link #setMaxSize(int)}限制{@link #newResource()}创建的资源总数,
+ * {@link #setIdleTimeout(long, TimeUnit)}启动后台线程回收长时间空闲的资源(不少于{@link #setMinSize(int)}),
+ * {@link #prewarm()}并行创建资源直到最小资源数量<br>
+ * {@link #setAffinity(boolean)}设置亲和模式,线程优先申请它上次释放的资源
  * @author guyadong
  *
  * @param <R> 资源类型
  */
 public class ResourcePool<R>{
+	/** 等待时间直方图的区间数量 */
+	private static final int WAIT_BUCKETS = 32;
+	/** 执行空闲资源回收任务的全局定时器(daemon线程) */
+	private static final ILazyInitVariable<ScheduledExecutorService> SWEEP_TIMER = new BaseVolatile<ScheduledExecutorService>(){
+		@Override
+		protected ScheduledExecutorService doGet() {
+			return Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "resource-pool-sweeper");
+					thread.setDaemon(true);
+					return thread;
+				}});
+		}};
 	/** 资源队列 */
 	protected final LinkedBlockingQueue<R> queue = new LinkedBlockingQueue<R>();
-	/** 当前线程申请的资源对象 */
-	private final ThreadLocal<R> tlsResource = new ThreadLocal<R>();
-	/** 线程嵌套计数 */
-	private final ThreadLocal<AtomicInteger> threadNestCount= new ThreadLocal<AtomicInteger>();
+	/** 当前线程的资源申请状态,合并为一个TLS变量,每次申请/释放只需要一次TLS查找 */
+	private final ThreadLocal<ThreadState<R>> threadState = new ThreadLocal<ThreadState<R>>(){
+		@Override
+		protected ThreadState<R> initialValue() {
+			return new ThreadState<R>();
+		}};
 	private final boolean nestable = isNestable();
+	/** 等待中的异步申请 */
+	private final ConcurrentLinkedQueue<ResourceFuture<R>> asyncWaiters = new ConcurrentLinkedQueue<ResourceFuture<R>>();
+	/** 等待中的异步申请数量 */
+	private final AtomicInteger pendingAsync = new AtomicInteger(0);
+	/** 阻塞等待资源的线程数量 */
+	private final AtomicInteger waiters = new AtomicInteger(0);
+	/** 当前持有资源的数量,分散计数避免无竞争申请/释放时争用同一个缓存行 */
+	private final StripedCounter holders = new StripedCounter();
+	/** 没有等待就申请到空闲资源的次数,即等待时间直方图第0个区间的计数 */
+	private final StripedCounter fastAcquires = new StripedCounter();
+	/**
+	 * 最大同时持有资源的数量(近似值),为避免在无竞争申请时争用同一个缓存行,
+	 * 只在空闲资源用完(需要等待或创建资源)时按资源总数更新,以及在{@link #getStatistics()}时按当前持有数更新
+	 */
+	private final AtomicInteger peakHolders = new AtomicInteger(0);
+	/** 申请超时次数 */
+	private final AtomicLong timeouts = new AtomicLong(0);
+	/** 申请资源的累计等待时间(纳秒) */
+	private final AtomicLong waitNanos = new AtomicLong(0);
+	/** 申请资源等待时间直方图,参见{@link Statistics#getWaitHistogram()} */
+	private final AtomicLongArray waitHistogram = new AtomicLongArray(WAIT_BUCKETS);
+	/** 资源总数(持有+空闲) */
+	final AtomicInteger size = new AtomicInteger(0);
+	/** 最小资源数量,空闲资源回收时保留的资源数量,用资源对象集合构造时为集合的资源数量 */
+	private volatile int minSize = 0;
+	/** 最大资源数量,{@link #newResource()}创建资源的上限 */
+	private volatile int maxSize = Integer.MAX_VALUE;
+	/** 空闲资源回收时间(纳秒),为0不回收 */
+	private volatile long idleTimeoutNanos = 0L;
+	/** 上次回收以来空闲资源数量的最小值,即整个回收周期内都处于空闲状态的资源数量 */
+	private final AtomicInteger lowIdle = new AtomicInteger(0);
+	/** 空闲资源回收任务 */
+	private Sweeper sweeper;
+	/** 是否优先申请当前线程上次释放的资源 */
+	private volatile boolean affinity = false;
 	protected ResourcePool() {
 	}
 	/**
-	 * 构造方法
+	 * 构造方法<br>
+	 * {@link #getMinSize()}为资源数量,空闲资源回收时不会回收这些({@link #newResource()}不能重新创建的)资源
 	 * @param resources 资源对象集合
 	 * @throws IllegalArgumentException 包含{@code null}元素
 	 */
@@ -37,68 +113,191 @@ public class ResourcePool<R>{
 			}
 			queue.add(r);
 		}
+		size.set(queue.size());
+		minSize = queue.size();
 	}
 	@SafeVarargs
 	public ResourcePool( R ...resources ){
 		this(Arrays.asList(resources));
 	}
 	/**
-	 * 从资源队列{@link #queue}中取出一个对象,保存到{@link #tlsResource}
-	 * @return
+	 * 从空闲资源中取出一个对象,保存到线程状态{@code state}
+	 * @param state
+	 * @param nanos 最长等待时间(纳秒),小于0时一直等待
+	 * @return 超时返回{@code null}
 	 * @throws InterruptedException
 	 */
-	private R getResource() throws InterruptedException{
-		if(null != tlsResource.get()){
+	private R getResource(ThreadState<R> state, long nanos) throws InterruptedException{
+		if(null != state.resource){
 			// 资源状态异常
 			throw new IllegalStateException("INVALID tlsResource state");
 		}
-		R r;
-		if(queue.isEmpty() && null != (r = newResource())){
-			queue.offer(r);
-		}
-		r = open(queue.take());
-		tlsResource.set(r);
+		R r = acquire(affinity && null != state.last ? state.last.get() : null, nanos);
+		state.resource = r;
 		return r;
 	}
 	/**
-	 * 将{@link #tlsResource}中的资源对象重新加入资源队列{@link #queue},并清除TLS变量{@link #tlsResource}
+	 * 从空闲资源中取出一个资源(不与线程绑定),没有空闲资源时尝试创建新资源,否则等待其他线程释放资源
+	 * @param preferred 优先申请的资源,为{@code null}或不在空闲资源中时申请任意空闲资源
+	 * @param nanos 最长等待时间(纳秒),小于0时一直等待
+	 * @return 超时返回{@code null}
+	 * @throws InterruptedException
 	 */
-	private void recycleResource(){
-		R r = tlsResource.get();
+	private R acquire(R preferred, long nanos) throws InterruptedException{
+		R r = null != preferred && removeIdle(preferred) ? preferred : pollIdle();
+		boolean fast = null != r;
+		if(!fast && null == (r = grow())){
+			long start = System.nanoTime();
+			waiters.incrementAndGet();
+			try{
+				r = takeIdle(nanos);
+			}finally{
+				waiters.decrementAndGet();
+			}
+			if(null == r){
+				timeouts.incrementAndGet();
+				return null;
+			}
+			recordWait(System.nanoTime() - start);
+		}else if(fast){
+			fastAcquires.add(1);
+		}else{
+			recordWait(0L);
+		}
+		if(idleTimeoutNanos > 0){
+			updateLowIdle();
+		}
+		onHold(fast);
+		return open(r);
+	}
+	/**
+	 * 将线程状态{@code state}中的资源对象重新放回空闲资源,并清除之
+	 * @param state
+	 */
+	private void recycleResource(ThreadState<R> state){
+		R r = state.resource;
 		if(null == r){
 			// 资源状态异常
 			throw new IllegalStateException("INVALID tlsResource while recycle");
 		}
-		// 放回队例
-		queue.offer(close(r));
-		tlsResource.remove();
+		state.resource = null;
+		r = release(r);
+		if(affinity){
+			if(null == state.last || state.last.get() != r){
+				state.last = new WeakReference<R>(r);
+			}
+		}else{
+			// 不再持有资源,删除线程状态,避免资源池被丢弃后仍然被线程引用
+			threadState.remove();
+		}
 	}
 	/**
-	 * (阻塞式)申请当前线程使用的资源对象,不可跨线程使用
-	 * @return
-	 * @throws InterruptedException
+	 * 释放资源,优先交给等待中的异步申请({@link #applyAsync()}),否则放回空闲资源
+	 * @param resource
+	 * @return {@link #close(Object)}返回的空闲资源
 	 */
-	public final R applyChecked() throws InterruptedException{
+	private R release(R resource){
+		holders.add(-1);
+		R r = close(resource);
+		handoff(r);
+		return r;
+	}
+	/**
+	 * 将空闲资源交给等待中的异步申请,没有异步申请时放回空闲资源
+	 * @param resource
+	 */
+	private void handoff(R resource){
+		for(;;){
+			for(ResourceFuture<R> future; null != (future = asyncWaiters.poll());){
+				pendingAsync.decrementAndGet();
+				if(completeAsync(future, resource)){
+					return;
+				}
+			}
+			offerIdle(resource);
+			// 放回之后再检查一次,避免错过放回之前加入等待队列的异步申请,
+			// 与applyAsync中入队之后检查空闲资源对应,两者至少有一个能看到对方
+			if(asyncWaiters.isEmpty() || null == (resource = pollIdle())){
+				return;
+			}
+		}
+	}
+	/**
+	 * 用{@code resource}完成异步申请
+	 * @param future
+	 * @param resource 空闲资源
+	 * @return 异步申请已经被取消则返回{@code false}
+	 */
+	private boolean completeAsync(ResourceFuture<R> future,R resource){
+		if(future.isDone()){
+			return false;
+		}
+		R r = open(resource);
+		if(future.complete(r)){
+			recordWait(System.nanoTime() - future.createTime);
+			onHold(false);
+			return true;
+		}
+		close(r);
+		return false;
+	}
+	/**
+	 * 资源持有数加1,空闲资源用完时更新最大持有数
+	 * @param fast 为{@code true}时是直接从空闲资源中申请到的,不更新最大持有数
+	 */
+	private void onHold(boolean fast){
+		holders.add(1);
+		if(!fast){
+			// 空闲资源已经用完,所有资源都被持有
+			updatePeak(size.get());
+		}
+	}
+	private void updatePeak(int count){
+		for(int peak; count > (peak = peakHolders.get()) && !peakHolders.compareAndSet(peak, count);){}
+	}
+	/**
+	 * 记录申请资源的等待时间
+	 * @param nanos
+	 */
+	private void recordWait(long nanos){
+		long micros = nanos / 1000;
+		int index = 0 == micros ? 0 : Math.min(64 - Long.numberOfLeadingZeros(micros), WAIT_BUCKETS - 1);
+		waitHistogram.incrementAndGet(index);
+		if(nanos > 0){
+			waitNanos.addAndGet(nanos);
+		}
+	}
+	private R apply(long nanos) throws InterruptedException{
+		ThreadState<R> state = threadState.get();
 		if(nestable){
-			AtomicInteger count = threadNestCount.get();
-			if(null == count){
+			if(0 == state.nestCount){
 				// 当前线程第一次申请资源
-				count = new AtomicInteger(1);
-				threadNestCount.set(count);
-				return getResource();
+				R r = getResource(state, nanos);
+				if(null != r){
+					state.nestCount = 1;
+				}
+				return r;
 			}else{
 				// 嵌套调用时直接返回TLS变量
-				if(null == this.tlsResource.get()){
+				if(null == state.resource){
 					// 资源状态异常
 					throw new IllegalStateException("INVALID tlsResource");
 				}
-				count.incrementAndGet();
-				return this.tlsResource.get();
+				++state.nestCount;
+				return state.resource;
 			}			
 		}else{
-			return getResource();
+			return getResource(state, nanos);
 		}
 	}
+	/**
+	 * (阻塞式)申请当前线程使用的资源对象,不可跨线程使用
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public final R applyChecked() throws InterruptedException{
+		return apply(-1L);
+	}
 	/**
 	 * (阻塞式)申请当前线程使用的资源对象,不可跨线程使用<br>
 	 * {@link InterruptedException}封装到{@link RuntimeException}抛出
@@ -112,23 +311,324 @@ public class ResourcePool<R>{
 			throw new RuntimeException(e);
 		}
 	}
+	/**
+	 * 在指定的时间内申请当前线程使用的资源对象,不可跨线程使用<br>
+	 * 申请成功后与{@link #apply()}一样用{@link #free()}释放
+	 * @param timeout 最长等待时间,为0时不等待
+	 * @param unit {@code timeout}的时间单位
+	 * @return 超时返回{@code null}
+	 * @throws InterruptedException
+	 */
+	public final R tryApply(long timeout, TimeUnit unit) throws InterruptedException{
+		Assert.notNull(unit, "unit");
+		return apply(Math.max(0L, unit.toNanos(timeout)));
+	}
+	/**
+	 * 异步申请资源对象,没有空闲资源时不阻塞,返回的{@link ResourceFuture}在其他线程释放资源时完成<br>
+	 * 异步申请的资源不与线程绑定,可以跨线程使用,使用结束必须调用{@link #free(Object)}释放,<br>
+	 * 取消申请调用{@link ResourceFuture#cancel(boolean)}
+	 * @return
+	 */
+	public final ResourceFuture<R> applyAsync(){
+		ResourceFuture<R> future = new ResourceFuture<R>(this);
+		R r = pollIdle();
+		if(null == r){
+			r = grow();
+		}
+		if(null != r){
+			completeAsync(future, r);
+			return future;
+		}
+		pendingAsync.incrementAndGet();
+		asyncWaiters.offer(future);
+		// 加入等待队列之后再检查一次,避免错过入队之前释放的资源
+		if(null != (r = pollIdle())){
+			handoff(r);
+		}
+		return future;
+	}
 	/**
 	 * 释放当前线程占用的资源对象，放回资源队列
 	 */
 	public final void free(){
+		ThreadState<R> state = threadState.get();
 		if(nestable){
-			AtomicInteger count = threadNestCount.get();
-			if(null == count){
+			if(state.nestCount <= 0){
 				// 申请/释放没有成对调用
 				throw new IllegalStateException("INVALID nestCount");
 			}
-			if( 0 == count.decrementAndGet()){
-				threadNestCount.remove();
-				recycleResource();
+			if( 0 == --state.nestCount){
+				recycleResource(state);
 			}			
 		}else{
-			recycleResource();
+			recycleResource(state);
+		}
+	}
+	/**
+	 * 释放{@link #applyAsync()}异步申请的资源对象,放回资源队列
+	 * @param resource
+	 * @throws IllegalArgumentException {@code resource}为{@code null}
+	 */
+	public final void free(R resource){
+		Assert.notNull(resource, "resource");
+		release(resource);
+	}
+	/**
+	 * 取消异步申请
+	 * @param future
+	 * @return
+	 */
+	private boolean cancelAsync(ResourceFuture<R> future){
+		if(asyncWaiters.remove(future)){
+			pendingAsync.decrementAndGet();
+			return true;
+		}
+		return false;
+	}
+	/**
+	 * 返回资源池当前的统计数据快照
+	 * @return
+	 */
+	public Statistics getStatistics(){
+		long[] histogram = new long[WAIT_BUCKETS];
+		for(int i = 0; i < histogram.length; ++i){
+			histogram[i] = waitHistogram.get(i);
 		}
+		histogram[0] += fastAcquires.sum();
+		int holding = (int) holders.sum();
+		updatePeak(holding);
+		return new Statistics(waiters.get() + pendingAsync.get(), 
+				holding, 
+				peakHolders.get(), 
+				idleCount(), 
+				timeouts.get(), 
+				waitNanos.get(), 
+				histogram);
+	}
+	/**
+	 * 从空闲资源中取出一个资源,没有空闲资源时立即返回{@code null},子类可重写此方法
+	 * @return
+	 */
+	protected R pollIdle(){
+		return queue.poll();
+	}
+	/**
+	 * (阻塞式)从空闲资源中取出一个资源,子类可重写此方法
+	 * @param nanos 最长等待时间(纳秒),小于0时一直等待
+	 * @return 超时返回{@code null}
+	 * @throws InterruptedException
+	 */
+	protected R takeIdle(long nanos) throws InterruptedException{
+		return nanos < 0 ? queue.take() : queue.poll(nanos, TimeUnit.NANOSECONDS);
+	}
+	/**
+	 * 将资源放回空闲资源,子类可重写此方法
+	 * @param resource
+	 */
+	protected void offerIdle(R resource){
+		queue.offer(resource);
+	}
+	/**
+	 * 从空闲资源中删除指定的资源,子类可重写此方法
+	 * @param resource
+	 * @return {@code resource}不在空闲资源中返回{@code false}
+	 */
+	protected boolean removeIdle(R resource){
+		return queue.remove(resource);
+	}
+	/**
+	 * 返回空闲资源数量,子类可重写此方法
+	 * @return
+	 */
+	protected int idleCount(){
+		return queue.size();
+	}
+	/**
+	 * 资源总数小于{@link #getMaxSize()}时调用{@link #newResource()}创建新的资源对象
+	 * @return 新的资源对象,返回{@code null}则等待其他线程释放资源
+	 */
+	private R grow(){
+		for(int count;;){
+			if((count = size.get()) >= getMaxSize()){
+				return null;
+			}
+			if(size.compareAndSet(count, count + 1)){
+				break;
+			}
+		}
+		R r = null;
+		try{
+			r = newResource();
+		}finally{
+			if(null == r){
+				size.decrementAndGet();
+			}
+		}
+		return r;
+	}
+	/** 更新{@link #lowIdle} */
+	private void updateLowIdle(){
+		int idle = idleCount();
+		for(int low; idle < (low = lowIdle.get()) && !lowIdle.compareAndSet(low, idle);){}
+	}
+	/**
+	 * 回收在整个回收周期内都处于空闲状态的资源,保留不少于{@link #getMinSize()}个资源
+	 */
+	private void evictIdle(){
+		int evictable = Math.min(lowIdle.get(), size.get() - minSize);
+		for(int i = 0; i < evictable; ++i){
+			R r = pollIdle();
+			if(null == r){
+				break;
+			}
+			size.decrementAndGet();
+			try{
+				destroyResource(r);
+			}catch(RuntimeException e){
+				// 忽略资源销毁异常
+			}
+		}
+		lowIdle.set(idleCount());
+	}
+	/**
+	 * 并行调用{@link #newResource()}创建资源,直到资源总数达到{@link #getMinSize()},并行线程数不超过CPU核数<br>
+	 * 子类可以在构造方法最后调用此方法预热资源池
+	 * @return 当前对象
+	 * @throws RuntimeException 创建资源时抛出异常
+	 */
+	public ResourcePool<R> prewarm(){
+		int count = minSize - size.get();
+		if(count <= 0){
+			return this;
+		}
+		final AtomicInteger remaining = new AtomicInteger(count);
+		final AtomicReference<RuntimeException> error = new AtomicReference<RuntimeException>();
+		Runnable task = new Runnable(){
+			@Override
+			public void run() {
+				try{
+					while(null == error.get() && remaining.getAndDecrement() > 0){
+						R r = grow();
+						if(null != r){
+							handoff(r);
+						}
+					}
+				}catch(RuntimeException e){
+					error.compareAndSet(null, e);
+				}
+			}};
+		// 线程数不超过CPU核数,当前线程也参与创建
+		int workers = Math.min(count, Runtime.getRuntime().availableProcessors());
+		Thread[] threads = new Thread[workers - 1];
+		for(int i = 0; i < threads.length; ++i){
+			threads[i] = new Thread(task, "resource-pool-prewarm-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		task.run();
+		try {
+			for(Thread thread : threads){
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		if(null != error.get()){
+			throw error.get();
+		}
+		return this;
+	}
+	/**
+	 * @return 是否为亲和模式
+	 */
+	public boolean isAffinity() {
+		return affinity;
+	}
+	/**
+	 * 设置亲和模式<br>
+	 * 亲和模式下线程优先申请它上次释放的资源(如果该资源仍然空闲),否则申请任意空闲资源,
+	 * 让同一个线程尽量重复使用同一个资源,以提高资源内部缓存的命中率。
+	 * 释放的资源仍然优先交给正在等待的申请者,不影响公平性
+	 * @param affinity
+	 * @return 当前对象
+	 */
+	public ResourcePool<R> setAffinity(boolean affinity) {
+		this.affinity = affinity;
+		return this;
+	}
+	/**
+	 * @return 最小资源数量
+	 */
+	public int getMinSize() {
+		return minSize;
+	}
+	/**
+	 * 设置最小资源数量,空闲资源回收时保留的资源数量,也是{@link #prewarm()}创建的资源数量<br>
+	 * 默认为0,用资源对象集合构造时为集合的资源数量
+	 * @param minSize
+	 * @return 当前对象
+	 * @throws IllegalArgumentException {@code minSize}小于0或大于{@link #getMaxSize()}
+	 */
+	public ResourcePool<R> setMinSize(int minSize) {
+		if(minSize < 0 || minSize > getMaxSize()){
+			throw new IllegalArgumentException(String.format("INVALID minSize:%d",minSize));
+		}
+		this.minSize = minSize;
+		return this;
+	}
+	/**
+	 * @return 最大资源数量,默认不限制
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+	/**
+	 * 设置最大资源数量,资源总数达到此值后不再调用{@link #newResource()}创建资源
+	 * @param maxSize
+	 * @return 当前对象
+	 * @throws IllegalArgumentException {@code maxSize}小于等于0或小于{@link #getMinSize()}
+	 */
+	public ResourcePool<R> setMaxSize(int maxSize) {
+		if(maxSize <= 0 || maxSize < minSize){
+			throw new IllegalArgumentException(String.format("INVALID maxSize:%d",maxSize));
+		}
+		this.maxSize = maxSize;
+		return this;
+	}
+	/**
+	 * @param unit 时间单位
+	 * @return 空闲资源回收时间,为0不回收
+	 */
+	public long getIdleTimeout(TimeUnit unit) {
+		return unit.convert(idleTimeoutNanos, TimeUnit.NANOSECONDS);
+	}
+	/**
+	 * 设置空闲资源回收时间<br>
+	 * 大于0时由后台线程以{@code idleTimeout}为周期,回收整个周期内都没有被使用的空闲资源
+	 * (实际空闲时间在{@code idleTimeout}到2倍{@code idleTimeout}之间),
+	 * 回收的资源调用{@link #destroyResource(Object)}销毁,资源总数不少于{@link #getMinSize()}
+	 * @param idleTimeout 为0时不回收
+	 * @param unit 时间单位
+	 * @return 当前对象
+	 * @throws IllegalArgumentException {@code idleTimeout}小于0
+	 */
+	public synchronized ResourcePool<R> setIdleTimeout(long idleTimeout, TimeUnit unit) {
+		Assert.notNull(unit, "unit");
+		if(idleTimeout < 0){
+			throw new IllegalArgumentException(String.format("INVALID idleTimeout:%d",idleTimeout));
+		}
+		if(null != sweeper){
+			sweeper.cancel();
+			sweeper = null;
+		}
+		this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+		if(idleTimeoutNanos > 0){
+			lowIdle.set(idleCount());
+			sweeper = new Sweeper(this);
+			sweeper.future = SWEEP_TIMER.get().scheduleAtFixedRate(sweeper, idleTimeoutNanos, idleTimeoutNanos, TimeUnit.NANOSECONDS);
+		}
+		return this;
 	}
 	/** 是否允许嵌套 */
 	protected boolean isNestable() {
@@ -141,6 +641,12 @@ public class ResourcePool<R>{
 	protected R newResource(){
 		return null;
 	}
+	/**
+	 * 销毁被回收的空闲资源,参见{@link #setIdleTimeout(long, TimeUnit)},子类可重写此方法
+	 * @param resource
+	 */
+	protected void destroyResource(R resource){
+	}
 	/**
 	 * 资源从队形从取出时调用,子类可重写此方法
 	 * @param resource
@@ -208,4 +714,251 @@ public class ResourcePool<R>{
 			return list;
 		}
 	}	
+	/**
+	 * 空闲资源回收任务,只保存资源池的弱引用,资源池被回收后自动取消
+	 * @author guyadong
+	 *
+	 */
+	private static class Sweeper implements Runnable{
+		private final WeakReference<ResourcePool<?>> pool;
+		private volatile ScheduledFuture<?> future;
+		Sweeper(ResourcePool<?> pool) {
+			this.pool = new WeakReference<ResourcePool<?>>(pool);
+		}
+		@Override
+		public void run() {
+			ResourcePool<?> p = pool.get();
+			if(null == p){
+				cancel();
+			}else{
+				p.evictIdle();
+			}
+		}
+		void cancel(){
+			if(null != future){
+				future.cancel(false);
+			}
+		}
+	}
+	/**
+	 * 分散到多个缓存行的计数器,不同线程累加到不同的单元,读取时求和
+	 */
+	private static final class StripedCounter{
+		/** 每个单元占用的long数量,按64字节缓存行对齐 */
+		private static final int PAD = 8;
+		private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) << 1;
+		private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PAD);
+		void add(long x){
+			long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+			cells.addAndGet(((int) (h >>> 40) & (STRIPES - 1)) * PAD, x);
+		}
+		long sum(){
+			long sum = 0;
+			for(int i = 0; i < STRIPES; ++i){
+				sum += cells.get(i * PAD);
+			}
+			return sum;
+		}
+	}
+	/**
+	 * 线程资源申请状态,只在所属线程内访问
+	 * @author guyadong
+	 *
+	 * @param <R> 资源类型
+	 */
+	private static class ThreadState<R>{
+		/** 当前线程申请的资源对象 */
+		R resource;
+		/** 线程嵌套计数 */
+		int nestCount;
+		/** 当前线程上次释放的资源对象,用于亲和模式,弱引用不阻止资源被回收 */
+		WeakReference<R> last;
+	}
+	/**
+	 * 异步申请资源的结果<br>
+	 * 提供与guava {@code ListenableFuture}相同的{@link #addListener(Runnable, Executor)}方法,
+	 * 可以直接用{@code ListenableFuture}封装
+	 * @author guyadong
+	 *
+	 * @param <R> 资源类型
+	 */
+	public static final class ResourceFuture<R> implements Future<R>{
+		private final ResourcePool<R> pool;
+		private final long createTime = System.nanoTime();
+		private final CountDownLatch latch = new CountDownLatch(1);
+		/** 0:等待,1:完成,2:取消 */
+		private final AtomicInteger state = new AtomicInteger(0);
+		private volatile R resource;
+		/** 完成时执行的监听器,完成之后为{@code null} */
+		private List<Runnable> listeners = new ArrayList<Runnable>();
+		private ResourceFuture(ResourcePool<R> pool) {
+			this.pool = pool;
+		}
+		private boolean complete(R resource){
+			if(state.compareAndSet(0, 1)){
+				this.resource = resource;
+				latch.countDown();
+				runListeners();
+				return true;
+			}
+			return false;
+		}
+		private void runListeners(){
+			List<Runnable> list;
+			synchronized (this) {
+				list = listeners;
+				listeners = null;
+			}
+			for(Runnable listener:list){
+				listener.run();
+			}
+		}
+		/**
+		 * 添加异步申请完成(或取消)时执行的监听器,已经完成则立即执行
+		 * @param listener
+		 * @param executor 执行监听器的{@link Executor}
+		 */
+		public void addListener(final Runnable listener,final Executor executor){
+			Assert.notNull(listener, "listener");
+			Assert.notNull(executor, "executor");
+			Runnable task = new Runnable(){
+				@Override
+				public void run() {
+					try{
+						executor.execute(listener);
+					}catch(RuntimeException e){
+						// 忽略监听器执行异常,不影响其他监听器
+					}
+				}};
+			synchronized (this) {
+				if(null != listeners){
+					listeners.add(task);
+					return;
+				}
+			}
+			task.run();
+		}
+		/**
+		 * 取消异步申请,已经得到的资源不会被释放,需要调用{@link ResourcePool#free(Object)}释放
+		 */
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if(state.compareAndSet(0, 2)){
+				pool.cancelAsync(this);
+				latch.countDown();
+				runListeners();
+				return true;
+			}
+			return false;
+		}
+		@Override
+		public boolean isCancelled() {
+			return 2 == state.get();
+		}
+		@Override
+		public boolean isDone() {
+			return 0 != state.get();
+		}
+		@Override
+		public R get() throws InterruptedException, ExecutionException {
+			latch.await();
+			return report();
+		}
+		@Override
+		public R get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			if(!latch.await(timeout, unit)){
+				throw new TimeoutException();
+			}
+			return report();
+		}
+		private R report(){
+			if(isCancelled()){
+				throw new CancellationException();
+			}
+			return resource;
+		}
+	}
+	/**
+	 * 资源池统计数据快照
+	 * @author guyadong
+	 *
+	 */
+	public static class Statistics{
+		private final int waiters;
+		private final int holders;
+		private final int peakHolders;
+		private final int idle;
+		private final long timeouts;
+		private final long waitNanos;
+		private final long[] waitHistogram;
+		Statistics(int waiters, int holders, int peakHolders, int idle, long timeouts, long waitNanos,
+				long[] waitHistogram) {
+			this.waiters = waiters;
+			this.holders = holders;
+			this.peakHolders = peakHolders;
+			this.idle = idle;
+			this.timeouts = timeouts;
+			this.waitNanos = waitNanos;
+			this.waitHistogram = waitHistogram;
+		}
+		/** @return 正在等待资源的申请数量(阻塞线程和异步申请) */
+		public int getWaiters() {
+			return waiters;
+		}
+		/** @return 当前持有资源的数量 */
+		public int getHolders() {
+			return holders;
+		}
+		/**
+		 * @return 最大同时持有资源的数量,为采样得到的近似值:
+		 * 空闲资源用完时记为当时的资源总数,其他情况只在获取统计数据时记录当前持有数,
+		 * 可能高于或低于实际的峰值
+		 */
+		public int getPeakHolders() {
+			return peakHolders;
+		}
+		/** @return 空闲资源数量 */
+		public int getIdle() {
+			return idle;
+		}
+		/** @return 资源总数(持有+空闲) */
+		public int getSize() {
+			return holders + idle;
+		}
+		/** @return 资源使用率(0.0~1.0) */
+		public double getUtilization() {
+			int size = getSize();
+			return 0 == size ? 0.0 : (double)holders / size;
+		}
+		/** @return 申请超时次数 */
+		public long getTimeouts() {
+			return timeouts;
+		}
+		/** @return 成功申请资源的次数 */
+		public long getAcquires() {
+			long count = 0;
+			for(long c:waitHistogram){
+				count += c;
+			}
+			return count;
+		}
+		/** @return 申请资源的累计等待时间(纳秒) */
+		public long getWaitNanos() {
+			return waitNanos;
+		}
+		/**
+		 * 申请资源的等待时间直方图<br>
+		 * 第0个区间为没有等待(小于1微秒)的申请次数,第i(i>0)个区间为等待时间在[2<sup>i-1</sup>,2<sup>i</sup>)微秒的申请次数,
+		 * 最后一个区间包含所有更长的等待
+		 * @return
+		 */
+		public long[] getWaitHistogram() {
+			return waitHistogram.clone();
+		}
+		@Override
+		public String toString() {
+			return String.format("waiters=%d,holders=%d,peakHolders=%d,idle=%d,utilization=%.2f,acquires=%d,timeouts=%d,waitNanos=%d",
+					waiters,holders,peakHolders,idle,getUtilization(),getAcquires(),timeouts,waitNanos);
+		}
+	}
 }
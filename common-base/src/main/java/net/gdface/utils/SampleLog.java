@@ -1,9 +1,13 @@
 package net.gdface.utils;
 
 import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * 简单日志输出工具类
+ * 简单日志输出工具类<br>
+ * 默认在调用线程中格式化并输出日志,调用{@link #startAsync(int, OverflowPolicy)}切换到异步模式:
+ * 调用线程只将参数写入有界环形缓冲区,由单独的输出线程格式化并输出,不在调用线程中执行格式化和I/O
  * @author guyadong
  *
  */
@@ -11,7 +15,24 @@ public class SampleLog {
 	/** 占位符 */
 	private static final String DELIM_STR = "{}";
 	private static final Object[] EMPTY_ARGS = new Object[0];
-	
+	/**
+	 * 异步模式下缓冲区满时的处理策略
+	 * @author guyadong
+	 *
+	 */
+	public static enum OverflowPolicy{
+		/** 丢弃日志,参见{@link SampleLog#getDropped()} */
+		DROP,
+		/** 调用线程等待缓冲区有空位 */
+		BLOCK
+	}
+	/** 异步输出对象,为{@code null}时同步输出 */
+	private static volatile AsyncWriter asyncWriter;
+	/** 异步模式下累计丢弃的日志数量 */
+	private static final AtomicLong dropped = new AtomicLong(0);
+	/** 是否输出调用位置(文件名:行号),获取调用位置需要创建调用栈,开销较大 */
+	private static volatile boolean callerLocation = true;
+
 	private static void log(PrintStream printStream,int level, String format, Object ... args){
 		if(null == printStream || null == format){
 			return;
@@ -19,6 +40,22 @@ public class SampleLog {
 		if(null == args){
 			args = EMPTY_ARGS;
 		}
+		boolean location = callerLocation;
+		AsyncWriter writer = asyncWriter;
+		// 异步模式下只记录调用栈,在输出线程中解析调用位置(Throwable创建时位于调用栈第0层,比getStackTrace少一层)
+		if(null != writer && writer.publish(printStream, Thread.currentThread().getName(), location ? new Throwable() : null, level - 1, format, args)){
+			return;
+		}
+		Thread currentThread = Thread.currentThread();
+		write(printStream, currentThread.getName(), location ? currentThread.getStackTrace()[level] : null, format, args);
+	}
+	/**
+	 * 用{@code args}填充{@code format}中的占位符
+	 * @param format
+	 * @param args
+	 * @return
+	 */
+	private static String format(String format, Object[] args){
 		StringBuilder buffer = new StringBuilder(format.length() + 64);
 		int beginIndex = 0,endIndex = 0,count = 0;
 		while((endIndex = format.indexOf(DELIM_STR, beginIndex))>=0){
@@ -32,13 +69,18 @@ public class SampleLog {
 			beginIndex = endIndex + DELIM_STR.length();
 		}
 		buffer.append(format.substring(beginIndex,format.length()));
-		Thread currentThread = Thread.currentThread();
-		StackTraceElement stackTrace = currentThread.getStackTrace()[level];
+		return buffer.toString();
+	}
+	private static void write(PrintStream printStream, String threadName, StackTraceElement stackTrace, String format, Object[] args){
+		if(null == stackTrace){
+			printStream.printf("[%s] %s\n", threadName, format(format, args));
+			return;
+		}
 		printStream.printf("[%s] (%s:%d) %s\n",
-				currentThread.getName(),
+				threadName,
 				stackTrace.getFileName(),
 				stackTrace.getLineNumber(),
-				buffer.toString());
+				format(format, args));
 	}
 	/**
 	 * 向{@code printStream}输出日志信息<br>
@@ -51,7 +93,7 @@ public class SampleLog {
 	 * @param args 填充占位符的参数列表,如果数量小于占位符个数则多出的占位符填充"null"
 	 */
 	public static void log(PrintStream printStream,String format, Object ... args){
-		log(printStream,3,format,args);	
+		log(printStream,3,format,args);
 	}
 	/**
 	 * 向控制台输出日志信息<br>
@@ -62,4 +104,194 @@ public class SampleLog {
 	public static void log(String format, Object ... args){
 		log(System.out,3,format,args);
 	}
+	/**
+	 * 切换到异步输出模式,已经是异步模式时先停止原有的输出线程<br>
+	 * 异步模式下{@code args}在输出线程中才转为字符串,调用者不应该在日志调用之后修改参数对象
+	 * @param capacity 环形缓冲区容量(日志条数),向上取整为2的幂
+	 * @param policy 缓冲区满时的处理策略,为{@code null}时使用{@link OverflowPolicy#DROP}
+	 * @throws IllegalArgumentException {@code capacity}<=0
+	 */
+	public static synchronized void startAsync(int capacity, OverflowPolicy policy){
+		if(capacity <= 0 || capacity > (1 << 30)){
+			throw new IllegalArgumentException(String.format("INVALID capacity:%d",capacity));
+		}
+		stopAsync();
+		AsyncWriter writer = new AsyncWriter(capacity, null == policy ? OverflowPolicy.DROP : policy);
+		writer.drainThread.start();
+		asyncWriter = writer;
+	}
+	/**
+	 * 停止异步输出,输出缓冲区中所有日志后返回,之后恢复同步输出
+	 */
+	public static synchronized void stopAsync(){
+		AsyncWriter writer = asyncWriter;
+		if(null != writer){
+			asyncWriter = null;
+			writer.stop();
+		}
+	}
+	/**
+	 * 设置是否输出调用位置(文件名:行号),默认{@code true}<br>
+	 * 获取调用位置需要在每次日志调用时创建调用栈,日志频繁时可以关闭以减少开销
+	 * @param enable
+	 */
+	public static void setCallerLocation(boolean enable){
+		callerLocation = enable;
+	}
+	/**
+	 * @return 是否输出调用位置
+	 */
+	public static boolean isCallerLocation(){
+		return callerLocation;
+	}
+	/**
+	 * @return 是否为异步输出模式
+	 */
+	public static boolean isAsync(){
+		return null != asyncWriter;
+	}
+	/**
+	 * @return 异步模式下因缓冲区满累计丢弃的日志数量
+	 */
+	public static long getDropped(){
+		return dropped.get();
+	}
+	/**
+	 * 环形缓冲区中的一条日志,字段在发布({@link #sequence})之前写入
+	 */
+	private static class Event{
+		PrintStream printStream;
+		String threadName;
+		Throwable location;
+		int level;
+		String format;
+		Object[] args;
+		/** 已发布的序号,等于读取序号时可读 */
+		volatile long sequence = -1;
+		void write(){
+			StackTraceElement[] stack = null == location ? null : location.getStackTrace();
+			SampleLog.write(printStream, threadName, null != stack && level < stack.length ? stack[level] : null, format, args);
+		}
+		void clear(){
+			printStream = null;
+			threadName = null;
+			location = null;
+			format = null;
+			args = null;
+		}
+	}
+	/**
+	 * 多生产者单消费者的环形缓冲区及输出线程<br>
+	 * 写入线程CAS申请序号后写入预分配的{@link Event},输出线程按序号顺序读取
+	 */
+	private static class AsyncWriter implements Runnable{
+		/** 输出线程空闲时的最长挂起时间(纳秒) */
+		private static final long IDLE_PARK_NANOS = 1000000L;
+		private final Event[] ring;
+		private final int mask;
+		private final OverflowPolicy policy;
+		/** 输出线程退出后{@link #head}的值,之后不能再申请序号 */
+		private static final long CLOSED = -1L;
+		/** 下一个写入序号,为{@link #CLOSED}时输出线程已经退出 */
+		private final AtomicLong head = new AtomicLong(0);
+		/** 下一个读取序号,只有输出线程修改 */
+		private volatile long tail = 0;
+		private volatile boolean running = true;
+		/** 输出线程是否处于(或即将)挂起状态 */
+		private volatile boolean idle = false;
+		private final Thread drainThread;
+		AsyncWriter(int capacity, OverflowPolicy policy) {
+			int size = Integer.highestOneBit(capacity);
+			if(size < capacity){
+				size <<= 1;
+			}
+			this.ring = new Event[size];
+			for(int i = 0; i < size; ++i){
+				ring[i] = new Event();
+			}
+			this.mask = size - 1;
+			this.policy = policy;
+			this.drainThread = new Thread(this, "samplelog-writer");
+			this.drainThread.setDaemon(true);
+		}
+		/**
+		 * 将日志写入缓冲区
+		 * @return 输出线程已经停止时返回{@code false},由调用线程同步输出
+		 */
+		boolean publish(PrintStream printStream, String threadName, Throwable location, int level, String format, Object[] args){
+			long seq;
+			for(;;){
+				// 申请到序号时输出线程还没有退出(head不为CLOSED),保证会输出这条日志
+				if(!running || (seq = head.get()) == CLOSED){
+					return false;
+				}
+				if(seq - tail >= ring.length){
+					if(OverflowPolicy.DROP == policy){
+						dropped.incrementAndGet();
+						return true;
+					}
+					LockSupport.unpark(drainThread);
+					Thread.yield();
+					continue;
+				}
+				if(head.compareAndSet(seq, seq + 1)){
+					break;
+				}
+			}
+			Event event = ring[(int) seq & mask];
+			event.printStream = printStream;
+			event.threadName = threadName;
+			event.location = location;
+			event.level = level;
+			event.format = format;
+			event.args = args;
+			event.sequence = seq;
+			if(idle){
+				LockSupport.unpark(drainThread);
+			}
+			return true;
+		}
+		@Override
+		public void run() {
+			long next = tail;
+			for(;;){
+				Event event = ring[(int) next & mask];
+				if(event.sequence == next){
+					try{
+						event.write();
+					}catch(RuntimeException e){
+						// 忽略输出异常,不中止输出线程
+					}
+					event.clear();
+					tail = ++next;
+					continue;
+				}
+				// 停止后输出所有已申请序号的日志再退出,退出前将head置为CLOSED,之后的写入线程转为同步输出,
+				// CAS失败说明有写入线程刚申请到序号,继续等待输出
+				if(!running && head.compareAndSet(next, CLOSED)){
+					break;
+				}
+				idle = true;
+				if(event.sequence != next){
+					LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+				}
+				idle = false;
+			}
+		}
+		void stop(){
+			running = false;
+			LockSupport.unpark(drainThread);
+			boolean interrupted = false;
+			while(drainThread.isAlive()){
+				try {
+					drainThread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 }
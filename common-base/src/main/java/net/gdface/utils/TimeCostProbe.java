@@ -7,8 +7,10 @@ import java.util.concurrent.atomic.AtomicLong;
  *  耗时统计对象<br>
  *  用于程序执行耗时统计
  * @author guyadong
- *
+ * @deprecated 毫秒精度,每次计时都调用{@link Thread#getStackTrace()},不适合统计高频调用的耗时,
+ * instead use {@link LatencyProbe}
  */
+@Deprecated
 public class TimeCostProbe{
 	/**
 	 * 统计时间(毫秒)
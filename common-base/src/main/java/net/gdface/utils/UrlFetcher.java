@@ -0,0 +1,283 @@
+package net.gdface.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步URL数据获取工具<br>
+ * 请求在固定数量的工作线程中执行,返回{@link Future};同一主机(host:port)同时执行的请求数不超过{@link #getMaxPerHost()},
+ * 超出的请求在该主机的队列中等待,不占用工作线程<br>
+ * HTTP连接由JDK的keep-alive机制复用(每个主机保留的空闲连接数由系统属性 http.maxConnections 指定,默认为5),
+ * 每次请求结束时读取剩余的响应数据(最多64KB,超过时不复用该连接)并关闭响应流以便连接被复用<br>
+ * {@link #fetch(URL, StreamHandler)}将响应流直接交给调用者处理(如直接输入图像解码器),不需要先读取全部数据
+ * @author guyadong
+ *
+ */
+public class UrlFetcher implements Closeable {
+	/**
+	 * 响应数据流处理接口
+	 * @author guyadong
+	 *
+	 * @param <T> 处理结果类型
+	 */
+	public static interface StreamHandler<T>{
+		/**
+		 * 处理响应数据流,不需要关闭{@code in}
+		 * @param in 响应数据流
+		 * @param contentLength 数据长度,未知时为-1
+		 * @return 处理结果
+		 * @throws IOException
+		 */
+		T handle(InputStream in, long contentLength) throws IOException;
+	}
+	/** 读取全部响应数据为byte[] */
+	public static final StreamHandler<byte[]> BYTES = new StreamHandler<byte[]>(){
+		@Override
+		public byte[] handle(InputStream in, long contentLength) throws IOException {
+			int size = contentLength > 0 && contentLength < Integer.MAX_VALUE ? (int) contentLength : 8*1024;
+			ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+			byte[] buffer = new byte[8*1024];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		}};
+	/** 为复用连接读取丢弃的剩余响应数据的最大长度,超过时直接关闭连接 */
+	private static final int MAX_DRAIN_BYTES = 64*1024;
+	private static final AtomicInteger POOL_SEQ = new AtomicInteger(0);
+	private final ExecutorService executor;
+	private final int maxPerHost;
+	private final int connectTimeout;
+	private final int readTimeout;
+	/** 每个主机的执行状态 */
+	private final Map<String, Host> hosts = new HashMap<String, Host>();
+	/**
+	 * @param concurrency 工作线程数量(最大并发请求数)
+	 * @param maxPerHost 每个主机的最大并发请求数
+	 * @param connectTimeout 连接超时(毫秒),为0不超时
+	 * @param readTimeout 读取超时(毫秒),为0不超时
+	 * @throws IllegalArgumentException 参数无效
+	 */
+	public UrlFetcher(int concurrency, int maxPerHost, int connectTimeout, int readTimeout) {
+		if(concurrency <= 0 || maxPerHost <= 0 || connectTimeout < 0 || readTimeout < 0){
+			throw new IllegalArgumentException(String.format("INVALID argument:concurrency=%d,maxPerHost=%d,connectTimeout=%d,readTimeout=%d",
+					concurrency,maxPerHost,connectTimeout,readTimeout));
+		}
+		this.maxPerHost = maxPerHost;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		final String prefix = "url-fetcher-" + POOL_SEQ.incrementAndGet() + "-";
+		this.executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory(){
+			private final AtomicInteger threadSeq = new AtomicInteger(0);
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, prefix + threadSeq.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}});
+	}
+	/**
+	 * 异步获取{@code url}的响应数据
+	 * @param url
+	 * @return
+	 * @see #fetch(URL, StreamHandler)
+	 */
+	public Future<byte[]> fetch(URL url){
+		return fetch(url, BYTES);
+	}
+	/**
+	 * 异步获取{@code uri}的响应数据
+	 * @param uri
+	 * @return
+	 * @throws IllegalArgumentException {@code uri}不能转为{@link URL}
+	 */
+	public Future<byte[]> fetch(URI uri){
+		Assert.notNull(uri, "uri");
+		try {
+			return fetch(uri.toURL());
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+	/**
+	 * 异步获取{@code url}的响应数据流,交给{@code handler}处理<br>
+	 * HTTP响应码不是2xx时{@link Future#get()}抛出的{@link java.util.concurrent.ExecutionException}中包含{@link IOException}
+	 * @param url
+	 * @param handler
+	 * @return 处理结果
+	 * @throws IllegalArgumentException 参数为{@code null}
+	 * @throws RejectedExecutionException 已经关闭
+	 */
+	public <T> Future<T> fetch(final URL url, final StreamHandler<T> handler){
+		Assert.notNull(url, "url");
+		Assert.notNull(handler, "handler");
+		if(executor.isShutdown()){
+			throw new RejectedExecutionException("closed");
+		}
+		FutureTask<T> task = new FutureTask<T>(new Callable<T>(){
+			@Override
+			public T call() throws Exception {
+				return load(url, handler);
+			}});
+		// 主机对象空闲时会被删除,提交失败时重新获取
+		while(!hostOf(url).submit(task)){}
+		return task;
+	}
+	/**
+	 * 同步获取{@code url}的响应数据流,交给{@code handler}处理
+	 * @param url
+	 * @param handler
+	 * @return
+	 * @throws IOException
+	 */
+	private <T> T load(URL url, StreamHandler<T> handler) throws IOException{
+		URLConnection connection = url.openConnection();
+		connection.setConnectTimeout(connectTimeout);
+		connection.setReadTimeout(readTimeout);
+		if(connection instanceof HttpURLConnection){
+			HttpURLConnection http = (HttpURLConnection) connection;
+			int code = http.getResponseCode();
+			if(code < 200 || code >= 300){
+				// 读取并关闭错误响应以便连接被复用
+				InputStream error = http.getErrorStream();
+				if(null != error){
+					try{
+						drain(error);
+					}finally{
+						error.close();
+					}
+				}
+				throw new IOException(String.format("HTTP %d %s:%s",code,http.getResponseMessage(),url));
+			}
+		}
+		InputStream in = connection.getInputStream();
+		try{
+			T result = handler.handle(in, connection.getContentLengthLong());
+			// 读完剩余数据,连接才能被复用
+			drain(in);
+			return result;
+		}finally{
+			in.close();
+		}
+	}
+	/**
+	 * 读取并丢弃{@code in}中的剩余数据,最多读取{@link #MAX_DRAIN_BYTES}字节
+	 * @param in
+	 * @throws IOException
+	 */
+	private static void drain(InputStream in) throws IOException{
+		byte[] skip = new byte[1024];
+		int n;
+		for(int count = 0; count < MAX_DRAIN_BYTES && (n = in.read(skip)) != -1; count += n){}
+	}
+	private Host hostOf(URL url){
+		String key = url.getProtocol() + "://" + url.getHost() + ":" + (url.getPort() < 0 ? url.getDefaultPort() : url.getPort());
+		synchronized (hosts) {
+			Host host = hosts.get(key);
+			if(null == host){
+				hosts.put(key, host = new Host(key));
+			}
+			return host;
+		}
+	}
+	/**
+	 * @return 每个主机的最大并发请求数
+	 */
+	public int getMaxPerHost() {
+		return maxPerHost;
+	}
+	/**
+	 * 关闭工作线程,正在执行的请求继续执行,在主机队列中等待的请求被取消
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+	/**
+	 * 单个主机的请求队列
+	 */
+	private class Host{
+		private final String key;
+		/** 正在执行的请求数 */
+		private int active = 0;
+		private final LinkedList<FutureTask<?>> pending = new LinkedList<FutureTask<?>>();
+		/** 为{@code true}时已经从{@link UrlFetcher#hosts}中删除,不再接受请求 */
+		private boolean removed = false;
+		Host(String key) {
+			this.key = key;
+		}
+		/**
+		 * 在工作线程中执行{@code task},结束后(包括已经取消的请求)执行队列中的下一个请求
+		 * @param task
+		 */
+		private void execute(final FutureTask<?> task){
+			executor.execute(new Runnable(){
+				@Override
+				public void run() {
+					try{
+						task.run();
+					}finally{
+						finish();
+					}
+				}});
+		}
+		/**
+		 * 提交请求
+		 * @param task
+		 * @return 已经删除时返回{@code false}
+		 */
+		synchronized boolean submit(FutureTask<?> task){
+			if(removed){
+				return false;
+			}
+			if(active < maxPerHost){
+				execute(task);
+				++active;
+			}else{
+				pending.add(task);
+			}
+			return true;
+		}
+		/**
+		 * 请求结束,执行队列中的下一个请求,已经关闭时取消队列中的请求,
+		 * 没有请求时从{@link UrlFetcher#hosts}中删除
+		 */
+		synchronized void finish(){
+			FutureTask<?> next;
+			while(null != (next = pending.poll())){
+				try{
+					execute(next);
+					return;
+				}catch(RejectedExecutionException e){
+					next.cancel(false);
+				}
+			}
+			if(--active == 0){
+				removed = true;
+				synchronized (hosts) {
+					if(hosts.get(key) == this){
+						hosts.remove(key);
+					}
+				}
+			}
+		}
+	}
+}
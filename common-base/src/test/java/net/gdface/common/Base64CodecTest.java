@@ -0,0 +1,146 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.gdface.utils.Base64Codec;
+import net.gdface.utils.Base64Utils;
+import net.gdface.utils.FaceUtilits;
+import net.gdface.utils.DirectBufferPool.PooledBuffer;
+
+public class Base64CodecTest {
+	/**
+	 * 通过反射调用 java.util.Base64(Java 8以上)的编码/解码器,不存在时返回{@code null}
+	 */
+	private static Object jdkCodec(String factory){
+		try {
+			return Class.forName("java.util.Base64").getMethod(factory).invoke(null);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+	private static byte[] jdkCall(Object codec, byte[] src) throws Exception{
+		Method method = codec.getClass().getMethod(codec.getClass().getSimpleName().equals("Encoder") ? "encode" : "decode", byte[].class);
+		return (byte[]) method.invoke(codec, src);
+	}
+	@Test
+	public void testRoundTrip() throws Exception {
+		Random random = new Random(0);
+		Base64Codec[] codecs = {Base64Codec.STANDARD, Base64Codec.URL_SAFE, Base64Codec.MIME};
+		String[] jdkEncoders = {"getEncoder", "getUrlEncoder", "getMimeEncoder"};
+		for(int length = 0; length < 300; ++length){
+			byte[] data = new byte[length];
+			random.nextBytes(data);
+			for(int i = 0; i < codecs.length; ++i){
+				byte[] encoded = codecs[i].encode(data);
+				assertEquals(codecs[i].encodedLength(length), encoded.length);
+				Object jdk = jdkCodec(jdkEncoders[i]);
+				if(null != jdk){
+					assertArrayEquals(jdkCall(jdk, data), encoded);
+				}
+				assertArrayEquals(data, codecs[i].decode(encoded));
+				assertArrayEquals(data, codecs[i].decode(new String(encoded, "US-ASCII")));
+				ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length);
+				direct.put(encoded).flip();
+				ByteBuffer decoded = codecs[i].decode(direct);
+				assertEquals(ByteBuffer.wrap(data), decoded);
+				direct.clear();
+				codecs[i].encode(ByteBuffer.wrap(data), direct);
+				direct.flip();
+				assertEquals(ByteBuffer.wrap(encoded), direct);
+			}
+			assertArrayEquals(data, Base64Utils.decode(Base64Utils.encode(data)));
+		}
+		// 省略填充字符
+		assertArrayEquals(new byte[]{'a'}, Base64Codec.URL_SAFE.decode("YQ"));
+		try{
+			Base64Codec.STANDARD.decode("YW\nJj");
+			fail("IllegalArgumentException expected");
+		}catch(IllegalArgumentException e){
+		}
+		assertArrayEquals("abc".getBytes(), Base64Codec.MIME.decode("YW\r\nJj"));
+	}
+	@Test
+	public void testBenchmark() throws Exception {
+		byte[] data = new byte[1 << 20];
+		new Random(1).nextBytes(data);
+		Object jdkEncoder = jdkCodec("getEncoder");
+		Object jdkDecoder = jdkCodec("getDecoder");
+		byte[] encoded = Base64Codec.STANDARD.encode(data);
+		byte[] decoded = new byte[data.length];
+		int loops = 50;
+		for(int round = 0; round < 2; ++round){
+			long start = System.nanoTime();
+			for(int i = 0; i < loops; ++i){
+				Base64Codec.STANDARD.encode(data, 0, data.length, encoded, 0);
+				Base64Codec.STANDARD.decode(encoded, 0, encoded.length, decoded, 0);
+			}
+			long codec = System.nanoTime() - start;
+			start = System.nanoTime();
+			for(int i = 0; i < loops; ++i){
+				Base64Utils.decode(Base64Utils.encode(data));
+			}
+			long utils = System.nanoTime() - start;
+			String jdk = "n/a";
+			if(null != jdkEncoder){
+				start = System.nanoTime();
+				for(int i = 0; i < loops; ++i){
+					jdkCall(jdkDecoder, jdkCall(jdkEncoder, data));
+				}
+				jdk = String.valueOf((System.nanoTime() - start) / loops / 1000);
+			}
+			System.out.printf("base64 1MB round %d: Base64Codec(into buffers) %d us, Base64Utils(String) %d us, java.util.Base64 %s us\n",
+					round, codec / loops / 1000, utils / loops / 1000, jdk);
+		}
+		assertArrayEquals(data, decoded);
+	}
+	@Test
+	public void testStream() throws Exception {
+		byte[] data = new byte[100000];
+		new Random(2).nextBytes(data);
+		String base64 = Base64Codec.MIME.encodeToString(data);
+		InputStream in = FaceUtilits.getInputStream(base64);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1000];
+		int size;
+		while((size = in.read(buffer)) != -1){
+			out.write(buffer, 0, size);
+		}
+		assertArrayEquals(data, out.toByteArray());
+		PooledBuffer pooled = FaceUtilits.getByteBuffer(base64, null);
+		try{
+			assertEquals(ByteBuffer.wrap(data), pooled.buffer());
+			assertEquals(data.length, pooled.buffer().capacity());
+		}finally{
+			pooled.release();
+		}
+		// 分段输出到OutputStream,与一次编码/解码的结果相同
+		for(Base64Codec codec : new Base64Codec[]{Base64Codec.STANDARD, Base64Codec.MIME}){
+			byte[] encoded = codec.encode(data);
+			out.reset();
+			codec.encode(data, 0, data.length, out);
+			assertArrayEquals(encoded, out.toByteArray());
+			out.reset();
+			codec.decode(new String(encoded, "US-ASCII"), out);
+			assertArrayEquals(data, out.toByteArray());
+			// 堆内存输入,直接内存输出
+			ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+			codec.decode(ByteBuffer.wrap(encoded), direct);
+			direct.flip();
+			assertEquals(ByteBuffer.wrap(data), direct);
+		}
+		out.reset();
+		Base64Utils.encode(data, 0, data.length, out);
+		assertEquals(Base64Utils.encode(data), out.toString("US-ASCII"));
+		out.reset();
+		Base64Utils.decode(base64, out);
+		assertArrayEquals(data, out.toByteArray());
+	}
+}
@@ -2,6 +2,10 @@ package net.gdface.common;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
 import org.junit.Test;
 
 import net.gdface.utils.BufferUtils;
@@ -17,5 +21,30 @@ public class BufferUtilsTest {
 		double[] output2 = BufferUtils.asDoubleArray(output);
 		for(double e:output2)System.out.printf("%f,", e);
 	}
+	@Test
+	public void testView() {
+		float[] feature = new float[512];
+		for(int i = 0; i < feature.length; ++i){
+			feature[i] = i * 0.5f;
+		}
+		byte[] bytes = new byte[feature.length * 4];
+		assertSame(bytes, BufferUtils.asByteArray(feature, ByteOrder.LITTLE_ENDIAN, bytes));
+		FloatBuffer view = BufferUtils.asFloatBuffer(bytes, ByteOrder.LITTLE_ENDIAN);
+		assertEquals(feature.length, view.remaining());
+		assertEquals(feature[3], view.get(3), 0f);
+		float[] copy = BufferUtils.asFloatArray(bytes, ByteOrder.LITTLE_ENDIAN, new float[feature.length]);
+		assertArrayEquals(feature, copy, 0f);
+		// 与原有的复制方式(BIG_ENDIAN)兼容
+		assertArrayEquals(feature, BufferUtils.asFloatArray(BufferUtils.asByteArray(feature, null, new byte[bytes.length])), 0f);
 
+		ByteBuffer buffer = ByteBuffer.allocate(4 + bytes.length);
+		buffer.putInt(feature.length);
+		BufferUtils.put(buffer, feature);
+		assertFalse(buffer.hasRemaining());
+		buffer.flip();
+		float[] read = new float[buffer.getInt()];
+		BufferUtils.get(buffer, read);
+		assertFalse(buffer.hasRemaining());
+		assertArrayEquals(feature, read, 0f);
+	}
 }
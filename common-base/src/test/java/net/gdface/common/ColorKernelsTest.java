@@ -0,0 +1,91 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.gdface.image.ColorKernels;
+import net.gdface.image.ColorKernels.Kernel;
+
+public class ColorKernelsTest {
+	private static int clamp(double v){
+		return (int) Math.max(0, Math.min(255, Math.round(v)));
+	}
+	@Test
+	public void testKernels() {
+		Random random = new Random(7);
+		int pixels = 1001;
+		int[] argb = new int[pixels];
+		for(int i = 0; i < pixels; ++i){
+			argb[i] = random.nextInt();
+		}
+		byte[] bgr = new byte[pixels * 3];
+		byte[] rgb = new byte[pixels * 3];
+		byte[] rgba = new byte[pixels * 4];
+		byte[] gray = new byte[pixels];
+		ColorKernels.argbToBGR(argb, 0, bgr, 0, pixels);
+		ColorKernels.argbToRGBA(argb, 0, rgba, 0, pixels);
+		ColorKernels.bgrToRGB(bgr, 0, rgb, 0, pixels);
+		ColorKernels.rgbToGray(rgb, 0, gray, 0, pixels);
+		byte[] bgr2 = new byte[pixels * 3];
+		ColorKernels.rgbaToBGR(rgba, 0, bgr2, 0, pixels);
+		assertArrayEquals(bgr, bgr2);
+		byte[] gray2 = new byte[pixels];
+		ColorKernels.bgrToGray(bgr, 0, gray2, 0, pixels);
+		assertArrayEquals(gray, gray2);
+		for(int i = 0; i < pixels; ++i){
+			int r = (argb[i] >>> 16) & 0xff, g = (argb[i] >>> 8) & 0xff, b = argb[i] & 0xff;
+			assertEquals(r, rgb[i * 3] & 0xff);
+			assertEquals(b, rgb[i * 3 + 2] & 0xff);
+			assertEquals(argb[i] >>> 24, rgba[i * 4 + 3] & 0xff);
+			assertEquals(0.299 * r + 0.587 * g + 0.114 * b, gray[i] & 0xff, 1.0);
+		}
+		// 原地转换
+		ColorKernels.bgrToRGB(bgr, 0, bgr, 0, pixels);
+		assertArrayEquals(rgb, bgr);
+	}
+	@Test
+	public void testYCbCr() {
+		byte[] ycc = new byte[256 * 3 * 3];
+		Random random = new Random(3);
+		random.nextBytes(ycc);
+		int pixels = ycc.length / 3;
+		byte[] bgr = new byte[ycc.length];
+		ColorKernels.yCbCrToBGR(ycc, 0, bgr, 0, pixels);
+		for(int i = 0; i < pixels; ++i){
+			int y = ycc[i * 3] & 0xff, cb = (ycc[i * 3 + 1] & 0xff) - 128, cr = (ycc[i * 3 + 2] & 0xff) - 128;
+			assertEquals(clamp(y + 1.772 * cb), bgr[i * 3] & 0xff, 1);
+			assertEquals(clamp(y - 0.344136 * cb - 0.714136 * cr), bgr[i * 3 + 1] & 0xff, 1);
+			assertEquals(clamp(y + 1.402 * cr), bgr[i * 3 + 2] & 0xff, 1);
+		}
+	}
+	@Test
+	public void testParallel() {
+		int width = 1920, height = 1080;
+		int[] argb = new int[width * height];
+		Random random = new Random(1);
+		for(int i = 0; i < argb.length; ++i){
+			argb[i] = random.nextInt();
+		}
+		byte[] serial = new byte[argb.length * 3];
+		byte[] parallel = new byte[argb.length * 3];
+		int loop = 20;
+		for(int i = 0; i < loop; ++i){
+			ColorKernels.convert(Kernel.ARGB_TO_BGR, argb, 0, serial, 0, width, height, null);
+			ColorKernels.convert(Kernel.ARGB_TO_BGR, argb, 0, parallel, 0, width, height);
+		}
+		long t0 = System.nanoTime();
+		for(int i = 0; i < loop; ++i){
+			ColorKernels.convert(Kernel.ARGB_TO_BGR, argb, 0, serial, 0, width, height, null);
+		}
+		long t1 = System.nanoTime();
+		for(int i = 0; i < loop; ++i){
+			ColorKernels.convert(Kernel.ARGB_TO_BGR, argb, 0, parallel, 0, width, height);
+		}
+		long t2 = System.nanoTime();
+		assertArrayEquals(serial, parallel);
+		System.out.printf("ARGB_TO_BGR 1080p serial %.2f ms, parallel %.2f ms\n", (t1 - t0) / 1e6 / loop, (t2 - t1) / 1e6 / loop);
+	}
+}
@@ -0,0 +1,60 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import net.gdface.utils.BufferUtils;
+import net.gdface.utils.DirectBufferPool;
+import net.gdface.utils.DirectBufferPool.PooledBuffer;
+import net.gdface.utils.FaceUtilits;
+
+public class DirectBufferPoolTest {
+
+	@Test
+	public void testRecycle() {
+		DirectBufferPool pool = new DirectBufferPool(1 << 20);
+		PooledBuffer pooled = pool.acquire(5000);
+		assertTrue(pooled.buffer().isDirect());
+		assertEquals(5000, pooled.buffer().capacity());
+		pooled.retain();
+		assertFalse(pooled.release());
+		assertTrue(pooled.release());
+		assertEquals(8192, pool.getPooledBytes());
+		try{
+			pooled.release();
+			fail("IllegalStateException expected");
+		}catch(IllegalStateException e){
+		}
+		// 同一容量等级复用缓冲区
+		pooled = pool.acquire(8000);
+		assertEquals(0, pool.getPooledBytes());
+		pooled.release();
+	}
+	@Test
+	public void testRead() throws IOException {
+		byte[] data = new byte[100000];
+		for(int i = 0; i < data.length; ++i){
+			data[i] = (byte) i;
+		}
+		PooledBuffer pooled = FaceUtilits.getByteBuffer(new ByteArrayInputStream(data), null);
+		try{
+			assertEquals(data.length, pooled.buffer().remaining());
+			assertEquals(data[99999], pooled.buffer().get(99999));
+		}finally{
+			pooled.release();
+		}
+		float[] feature = {1f, 2f, 3f};
+		pooled = BufferUtils.asDirectBuffer(feature, ByteOrder.nativeOrder(), null);
+		try{
+			assertEquals(12, pooled.buffer().remaining());
+			assertEquals(3f, pooled.buffer().order(ByteOrder.nativeOrder()).getFloat(8), 0f);
+		}finally{
+			pooled.release();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.security.MessageDigest;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import net.gdface.utils.FaceUtilits;
+
+public class FaceUtilitsTest {
+
+	@Test
+	public void testMappedRead() throws IOException {
+		byte[] data = new byte[1 << 16];
+		for(int i = 0; i < data.length; ++i){
+			data[i] = (byte) i;
+		}
+		File file = File.createTempFile("mapped", ".bin");
+		file.deleteOnExit();
+		FaceUtilits.saveBytes(data, file, true);
+		long threshold = FaceUtilits.getMappedThreshold();
+		try{
+			ByteBuffer heap = FaceUtilits.mapOrRead(file);
+			assertFalse(heap instanceof MappedByteBuffer);
+			FaceUtilits.setMappedThreshold(1024);
+			ByteBuffer mapped = FaceUtilits.mapOrRead(file);
+			assertTrue(mapped instanceof MappedByteBuffer);
+			assertTrue(mapped.isReadOnly());
+			assertEquals(heap, mapped);
+			// 泛型方法不受阈值影响,仍然返回可写的堆内存
+			ByteBuffer generic = FaceUtilits.getByteBuffer(file);
+			assertTrue(generic.hasArray());
+			assertEquals(heap, generic);
+		}finally{
+			FaceUtilits.setMappedThreshold(threshold);
+		}
+	}
+	@Test
+	public void testDigest() throws IOException {
+		BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(3, 4, 0xff0000);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		byte[] png = out.toByteArray();
+		String md5 = FaceUtilits.getMD5String(png);
+		assertEquals(md5, FaceUtilits.getMD5String(new ByteArrayInputStream(png)));
+		MessageDigest md = FaceUtilits.newDigest("MD5");
+		md.update(png, 0, 10);
+		md.update(png, 10, png.length - 10);
+		assertEquals(md5, FaceUtilits.toHex(md.digest()));
+
+		File folder = new File(System.getProperty("java.io.tmpdir"), "digest_test");
+		folder.deleteOnExit();
+		File file = FaceUtilits.saveImage(new ByteArrayInputStream(png), folder);
+		file.deleteOnExit();
+		assertEquals(md5 + ".png", file.getName());
+		assertEquals(png.length, file.length());
+		assertEquals(1, folder.list().length);
+	}
+	/**
+	 * 原有的HEX编码实现(Character.forDigit),用于性能对比
+	 */
+	private static String legacyToHex(byte[] buffer) {
+		StringBuffer sb = new StringBuffer(buffer.length * 2);
+		for (int i = 0; i < buffer.length; i++) {
+			sb.append(Character.forDigit((buffer[i] & 240) >> 4, 16));
+			sb.append(Character.forDigit(buffer[i] & 15, 16));
+		}
+		return sb.toString();
+	}
+	/**
+	 * 原有的HEX解码实现,用于性能对比
+	 */
+	private static byte[] legacyHex2Bytes(String src){
+		byte[] res = new byte[src.length()/2];
+		char[] chs = src.toCharArray();
+		int[] b = new int[2];
+		for(int i=0,c=0; i<chs.length; i+=2,c++){
+			for(int j=0; j<2; j++){
+				if(chs[i+j]>='0' && chs[i+j]<='9'){
+					b[j] = (chs[i+j]-'0');
+				}else if(chs[i+j]>='A' && chs[i+j]<='F'){
+					b[j] = (chs[i+j]-'A'+10);
+				}else if(chs[i+j]>='a' && chs[i+j]<='f'){
+					b[j] = (chs[i+j]-'a'+10);
+				}
+			}
+			res[c] = (byte) (((b[0]&0x0f)<<4) | (b[1]&0x0f));
+		}
+		return res;
+	}
+	@Test
+	public void testHex() {
+		byte[] md5 = FaceUtilits.getMD5("hello".getBytes());
+		String hex = legacyToHex(md5);
+		assertEquals(hex, FaceUtilits.toHex(md5));
+		assertArrayEquals(md5, FaceUtilits.hex2Bytes(hex));
+		assertArrayEquals(md5, FaceUtilits.hex2Bytes(hex.toUpperCase()));
+		ByteBuffer buffer = FaceUtilits.hex2Bytes(hex, ByteBuffer.allocate(16));
+		assertFalse(buffer.hasRemaining());
+		buffer.flip();
+		assertEquals(hex, FaceUtilits.toHex(buffer, new StringBuilder()).toString());
+		try{
+			FaceUtilits.hex2Bytes("0g");
+			fail("IllegalArgumentException expected");
+		}catch(IllegalArgumentException e){
+		}
+		assertArrayEquals(md5, legacyHex2Bytes(hex));
+		// 简单性能对比(预热后计时),编码与解码分别计时
+		char[] chars = new char[32];
+		byte[] bytes = new byte[16];
+		int loops = 1000000;
+		long sink = 0;
+		for(int round = 0; round < 2; ++round){
+			long start = System.nanoTime();
+			for(int i = 0; i < loops; ++i){
+				sink += legacyToHex(md5).length();
+			}
+			long legacyEncode = System.nanoTime() - start;
+			start = System.nanoTime();
+			for(int i = 0; i < loops; ++i){
+				sink += FaceUtilits.toHex(md5, 0, md5.length, chars, 0);
+			}
+			long tableEncode = System.nanoTime() - start;
+			start = System.nanoTime();
+			for(int i = 0; i < loops; ++i){
+				sink += legacyHex2Bytes(hex).length;
+			}
+			long legacyDecode = System.nanoTime() - start;
+			start = System.nanoTime();
+			for(int i = 0; i < loops; ++i){
+				sink += FaceUtilits.hex2Bytes(hex, 0, 32, bytes, 0);
+			}
+			long tableDecode = System.nanoTime() - start;
+			System.out.printf("hex round %d: toHex legacy %d ns/op, table %d ns/op; hex2Bytes legacy %d ns/op, table %d ns/op\n",
+					round, legacyEncode / loops, tableEncode / loops, legacyDecode / loops, tableDecode / loops);
+		}
+		assertTrue(sink > 0);
+	}
+}
@@ -0,0 +1,97 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.junit.Test;
+
+import net.gdface.image.ImageHeader;
+
+public class ImageHeaderTest {
+	private static byte[] encode(String format, int width, int height, int type) throws IOException{
+		BufferedImage image = new BufferedImage(width, height, type);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertTrue(ImageIO.write(image, format, out));
+		return out.toByteArray();
+	}
+	@Test
+	public void testParse() throws IOException {
+		String[] formats = {"jpeg","png","bmp","gif"};
+		for(String format : formats){
+			byte[] data = encode(format, 123, 45, BufferedImage.TYPE_3BYTE_BGR);
+			ImageHeader header = ImageHeader.parse(data);
+			assertNotNull(format, header);
+			assertEquals(format, header.getFormatName());
+			assertEquals(123, header.getWidth());
+			assertEquals(45, header.getHeight());
+			// 截断的数据
+			assertNull(ImageHeader.parse(data, 0, 10));
+		}
+		assertNull(ImageHeader.parse(new byte[100]));
+	}
+	@Test
+	public void testWebp() {
+		// VP8X: 画布 1000x600
+		byte[] vp8x = new byte[30];
+		System.arraycopy("RIFF\0\0\0\0WEBPVP8X".getBytes(), 0, vp8x, 0, 16);
+		vp8x[24] = (byte) (999 & 0xff);
+		vp8x[25] = (byte) (999 >> 8);
+		vp8x[27] = (byte) (599 & 0xff);
+		vp8x[28] = (byte) (599 >> 8);
+		ImageHeader header = ImageHeader.parse(vp8x);
+		assertEquals("webp 1000x600", header.toString());
+		// VP8L: 17x9
+		byte[] vp8l = new byte[30];
+		System.arraycopy("RIFF\0\0\0\0WEBPVP8L".getBytes(), 0, vp8l, 0, 16);
+		vp8l[20] = 0x2f;
+		int bits = 16 | (8 << 14);
+		vp8l[21] = (byte) bits;
+		vp8l[22] = (byte) (bits >> 8);
+		vp8l[23] = (byte) (bits >> 16);
+		vp8l[24] = (byte) (bits >> 24);
+		assertEquals("webp 17x9", ImageHeader.parse(vp8l).toString());
+	}
+	@Test
+	public void testSpeed() throws IOException {
+		byte[] data = encode("jpeg", 640, 480, BufferedImage.TYPE_3BYTE_BGR);
+		int loop = 2000;
+		for(int i = 0; i < loop; ++i){
+			ImageHeader.parse(data);
+			readerSize(data);
+		}
+		long t0 = System.nanoTime();
+		for(int i = 0; i < loop; ++i){
+			ImageHeader.parse(data);
+		}
+		long t1 = System.nanoTime();
+		for(int i = 0; i < loop; ++i){
+			readerSize(data);
+		}
+		long t2 = System.nanoTime();
+		System.out.printf("header %.2f us/op, ImageReader %.2f us/op\n", (t1 - t0) / 1e3 / loop, (t2 - t1) / 1e3 / loop);
+	}
+	private static int readerSize(byte[] data) throws IOException{
+		ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data));
+		try{
+			Iterator<ImageReader> it = ImageIO.getImageReaders(in);
+			ImageReader reader = it.next();
+			try{
+				reader.setInput(in, true, true);
+				return reader.getWidth(0);
+			}finally{
+				reader.dispose();
+			}
+		}finally{
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import net.gdface.utils.FaceUtilits;
+import net.gdface.utils.ImageStore;
+
+public class ImageStoreTest {
+	private static byte[] png(int rgb) throws IOException{
+		BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, rgb);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+	@Test
+	public void testStore() throws Exception {
+		File root = Files.createTempDirectory("imagestore").toFile();
+		ImageStore store = new ImageStore(root, 2, ImageStore.SyncPolicy.BATCH, 2, 16, 8);
+		try{
+			byte[] img = png(0x123456);
+			String md5 = FaceUtilits.getMD5String(img);
+			File file = store.put(img);
+			assertEquals(new File(new File(new File(root, md5.substring(0, 2)), md5.substring(2, 4)), md5 + ".png"), file);
+			assertEquals(file, store.put(img));
+			assertTrue(store.contains(md5));
+
+			List<Future<File>> futures = new ArrayList<Future<File>>();
+			for(int i = 0; i < 200; ++i){
+				futures.add(store.putAsync(png(i % 50)));
+			}
+			for(Future<File> future : futures){
+				assertTrue(future.get().isFile());
+			}
+		}finally{
+			store.close();
+		}
+		ImageStore reopened = new ImageStore(root);
+		try{
+			assertEquals(51, reopened.loadIndex());
+		}finally{
+			reopened.close();
+		}
+	}
+	/**
+	 * 取消的请求不影响相同内容的后续请求,关闭后拒绝请求
+	 */
+	@Test
+	public void testCancelAndClose() throws Exception {
+		File root = Files.createTempDirectory("imagestore").toFile();
+		ImageStore store = new ImageStore(root, 1, ImageStore.SyncPolicy.NONE, 1, 16, 4);
+		try{
+			for(int i = 0; i < 20; ++i){
+				byte[] img = png(0x10000 + i);
+				store.putAsync(img).cancel(false);
+				Future<File> future = store.putAsync(img);
+				assertFalse(future.isCancelled());
+				assertTrue(future.get().isFile());
+			}
+			// 相同内容共享写入时,一个调用者取消不影响其他调用者
+			List<Future<File>> busy = new ArrayList<Future<File>>();
+			for(int i = 0; i < 12; ++i){
+				busy.add(store.putAsync(png(0x20000 + i)));
+			}
+			byte[] img = png(0x30000);
+			Future<File> first = store.putAsync(img);
+			Future<File> second = store.putAsync(img);
+			assertNotSame(first, second);
+			assertTrue(first.cancel(false));
+			assertTrue(first.isCancelled());
+			assertFalse(second.isCancelled());
+			assertTrue(second.get().isFile());
+			for(Future<File> future : busy){
+				future.get();
+			}
+		}finally{
+			store.close();
+		}
+		try{
+			store.putAsync(png(0x654321));
+			fail("RejectedExecutionException expected");
+		}catch(RejectedExecutionException e){
+		}
+	}
+}
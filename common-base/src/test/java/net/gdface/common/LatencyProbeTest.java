@@ -0,0 +1,81 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import net.gdface.utils.LatencyProbe;
+
+public class LatencyProbeTest {
+
+	@Test
+	public void testPercentile() throws InterruptedException {
+		final LatencyProbe probe = new LatencyProbe("test");
+		final CountDownLatch latch = new CountDownLatch(4);
+		for(int t = 0; t < 4; ++t){
+			new Thread(){
+				@Override
+				public void run() {
+					// 每个线程记录 1~10000 微秒
+					for(int i = 1; i <= 10000; ++i){
+						probe.record(i, TimeUnit.MICROSECONDS);
+					}
+					latch.countDown();
+				}
+			}.start();
+		}
+		latch.await();
+		LatencyProbe.Snapshot snapshot = probe.snapshot();
+		assertEquals(40000, snapshot.getCount());
+		assertEquals(1000, snapshot.getMin());
+		assertEquals(10000000, snapshot.getMax());
+		// 相对误差不超过1/16
+		assertEquals(5000000, snapshot.getPercentile(0.5), 5000000/16.0);
+		assertEquals(9900000, snapshot.getPercentile(0.99), 9900000/16.0);
+		System.out.print(probe.log());
+		probe.record(20, TimeUnit.MILLISECONDS);
+		LatencyProbe.Snapshot delta = probe.snapshot().minus(snapshot);
+		assertEquals(1, delta.getCount());
+		assertEquals(20000000, delta.getPercentile(0.5), 20000000/16.0);
+	}
+	@Test
+	public void testTiming() {
+		LatencyProbe probe = new LatencyProbe("timing").setOutTimeUnit(TimeUnit.NANOSECONDS);
+		for(int i = 0; i < 100000; ++i){
+			assertTrue(probe.end(probe.begin()) >= 0);
+		}
+		probe.print();
+		LatencyProbe.Snapshot snapshot = probe.snapshot();
+		assertEquals(100000, snapshot.getCount());
+		assertTrue(snapshot.getMin() >= 0);
+		assertTrue(snapshot.getMin() <= snapshot.getPercentile(0.5));
+		assertTrue(snapshot.getPercentile(0.5) <= snapshot.getMax());
+		assertTrue(snapshot.getSum() >= snapshot.getMax());
+	}
+	/**
+	 * 线程结束后数据合并保留
+	 */
+	@Test
+	public void testThreadChurn() throws InterruptedException {
+		final LatencyProbe probe = new LatencyProbe("churn");
+		for(int t = 0; t < 200; ++t){
+			Thread thread = new Thread(){
+				@Override
+				public void run() {
+					probe.record(1, TimeUnit.MILLISECONDS);
+				}
+			};
+			thread.start();
+			thread.join();
+		}
+		probe.record(2, TimeUnit.MILLISECONDS);
+		LatencyProbe.Snapshot snapshot = probe.snapshot();
+		assertEquals(201, snapshot.getCount());
+		assertEquals(1000000, snapshot.getMin());
+		assertEquals(2000000, snapshot.getMax());
+		assertEquals(202000000, snapshot.getSum());
+	}
+}
@@ -0,0 +1,46 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import net.gdface.utils.LatencyProbe;
+import net.gdface.utils.ProbeRegistry;
+import net.gdface.utils.ProbeHttpSink;
+
+public class ProbeRegistryTest {
+
+	@Test
+	public void testReport() throws IOException, InterruptedException {
+		ProbeRegistry registry = new ProbeRegistry();
+		LatencyProbe probe = registry.probe("decode");
+		assertSame(probe, registry.probe("decode"));
+		for(int i = 1; i <= 100; ++i){
+			probe.record(i, TimeUnit.MICROSECONDS);
+		}
+		registry.counter("frames").addAndGet(100);
+		ProbeHttpSink sink = new ProbeHttpSink(0, "/probes", TimeUnit.MICROSECONDS);
+		ProbeRegistry.Reporter reporter = registry.startReporter(50, TimeUnit.MILLISECONDS, sink);
+		try{
+			Thread.sleep(200);
+			InputStream in = new URL("http://127.0.0.1:" + sink.getPort() + "/probes").openStream();
+			try{
+				String text = new Scanner(in, "UTF-8").useDelimiter("\\A").next();
+				System.out.print(text);
+				// 之后的周期没有新数据,区间统计为0
+				assertTrue(text.contains("decode: count=0"));
+				assertTrue(text.contains("frames: +0 (100)"));
+			}finally{
+				in.close();
+			}
+		}finally{
+			reporter.close();
+		}
+	}
+}
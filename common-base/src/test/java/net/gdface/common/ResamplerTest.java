@@ -0,0 +1,72 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.gdface.image.Resampler;
+import net.gdface.image.Resampler.Filter;
+import net.gdface.utils.ParallelRows;
+
+public class ResamplerTest {
+	@Test
+	public void testConstant() {
+		byte[] src = new byte[123 * 77 * 3];
+		for(int i = 0; i < src.length; i += 3){
+			src[i] = 10;
+			src[i + 1] = (byte) 128;
+			src[i + 2] = (byte) 250;
+		}
+		int[][] sizes = {{40, 30}, {123, 20}, {20, 77}, {300, 200}, {1, 1}};
+		for(Filter filter : Filter.values()){
+			for(int[] size : sizes){
+				byte[] dst = Resampler.resize(src, 123, 77, 3, size[0], size[1], filter);
+				assertEquals(size[0] * size[1] * 3, dst.length);
+				for(int i = 0; i < dst.length; i += 3){
+					assertArrayEquals(filter + " " + size[0] + "x" + size[1],
+							new byte[]{10, (byte) 128, (byte) 250}, Arrays.copyOfRange(dst, i, i + 3));
+				}
+			}
+		}
+	}
+	@Test
+	public void testArea() {
+		// 整数倍缩小时AREA等于块平均
+		byte[] src = new byte[8 * 4];
+		for(int i = 0; i < src.length; ++i){
+			src[i] = (byte) (i * 7);
+		}
+		byte[] dst = Resampler.resize(src, 8, 4, 1, 4, 2, Filter.AREA);
+		for(int y = 0; y < 2; ++y){
+			for(int x = 0; x < 4; ++x){
+				int sum = 0;
+				for(int k = 0; k < 4; ++k){
+					sum += src[(y * 2 + k / 2) * 8 + x * 2 + k % 2] & 0xff;
+				}
+				assertEquals((sum + 2) / 4, dst[y * 4 + x] & 0xff, 1);
+			}
+		}
+	}
+	@Test
+	public void testSpeed() {
+		int width = 4000, height = 3000;
+		byte[] src = new byte[width * height * 3];
+		new Random(1).nextBytes(src);
+		int loop = 3;
+		for(Filter filter : Filter.values()){
+			byte[] serial = new byte[640 * 480 * 3];
+			byte[] parallel = new byte[640 * 480 * 3];
+			Resampler.resize(src, width, height, 3, serial, 640, 480, filter, null);
+			long t0 = System.nanoTime();
+			for(int i = 0; i < loop; ++i){
+				Resampler.resize(src, width, height, 3, parallel, 640, 480, filter, ParallelRows.getDefaultPool());
+			}
+			long t1 = System.nanoTime();
+			assertArrayEquals(serial, parallel);
+			System.out.printf("%s 4000x3000->640x480 %.2f ms\n", filter, (t1 - t0) / 1e6 / loop);
+		}
+	}
+}
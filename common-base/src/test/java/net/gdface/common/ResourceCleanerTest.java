@@ -0,0 +1,41 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.gdface.utils.ResourceCleaner;
+
+public class ResourceCleanerTest {
+	private static Closeable counter(final AtomicInteger closed){
+		return new Closeable(){
+			@Override
+			public void close() throws IOException {
+				closed.incrementAndGet();
+			}};
+	}
+	@Test
+	public void testClean() throws Exception {
+		AtomicInteger closed = new AtomicInteger();
+		ResourceCleaner.Cleanable cleanable = ResourceCleaner.register(new Object(), counter(closed));
+		cleanable.clean();
+		cleanable.clean();
+		assertEquals(1, closed.get());
+	}
+	@Test
+	public void testGc() throws Exception {
+		AtomicInteger closed = new AtomicInteger();
+		for(int i = 0; i < 100; ++i){
+			ResourceCleaner.register(new Object(), counter(closed));
+		}
+		for(int i = 0; i < 100 && closed.get() < 100; ++i){
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertEquals(100, closed.get());
+	}
+}
@@ -0,0 +1,243 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import net.gdface.utils.LockFreeResourcePool;
+import net.gdface.utils.ResourcePool;
+import net.gdface.utils.ResourcePool.IntResourcePool;
+
+public class ResourcePoolTest {
+
+	/**
+	 * 多线程竞争申请/释放资源,检查同一资源不会同时被两个线程持有
+	 * @param pool
+	 * @throws InterruptedException
+	 */
+	private static void contend(final ResourcePool<Integer> pool, int threads, final int loops) throws InterruptedException{
+		final ConcurrentHashMap<Integer, Thread> holders = new ConcurrentHashMap<Integer, Thread>();
+		final AtomicInteger errors = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(threads);
+		long start = System.nanoTime();
+		for(int t = 0; t < threads; ++t){
+			new Thread(){
+				@Override
+				public void run() {
+					try{
+						for(int i = 0; i < loops; ++i){
+							Integer r = pool.apply();
+							try{
+								if(null != holders.putIfAbsent(r, Thread.currentThread())){
+									errors.incrementAndGet();
+								}
+								holders.remove(r);
+							}finally{
+								pool.free();
+							}
+						}
+					}finally{
+						latch.countDown();
+					}
+				}
+			}.start();
+		}
+		latch.await();
+		System.out.printf("%s: %d threads x %d loops cost %d ms\n",
+				pool.getClass().getSimpleName(),threads,loops,(System.nanoTime() - start)/1000000);
+		assertEquals(0, errors.get());
+	}
+	@Test
+	public void testContention() throws InterruptedException {
+		contend(new IntResourcePool(4), 64, 20000);
+		contend(new LockFreeResourcePool<Integer>(Arrays.asList(0, 1, 2, 3)), 64, 20000);
+	}
+	@Test
+	public void testNest() {
+		ResourcePool<Integer> pool = new LockFreeResourcePool<Integer>(Arrays.asList(0, 1)){
+			@Override
+			protected boolean isNestable() {
+				return true;
+			}
+		};
+		Integer r = pool.apply();
+		assertSame(r, pool.apply());
+		pool.free();
+		pool.free();
+		try{
+			pool.free();
+			fail("IllegalStateException expected");
+		}catch(IllegalStateException e){
+		}
+	}
+	@Test
+	public void testGrow() {
+		final AtomicInteger created = new AtomicInteger();
+		ResourcePool<Integer> pool = new LockFreeResourcePool<Integer>(2, java.util.Collections.<Integer>emptyList()){
+			@Override
+			protected Integer newResource() {
+				return created.getAndIncrement();
+			}
+		};
+		pool.apply();
+		pool.free();
+		pool.apply();
+		pool.free();
+		assertEquals(1, created.get());
+	}
+	@Test
+	public void testTryApplyAndAsync() throws Exception {
+		for(final ResourcePool<Integer> pool : Arrays.<ResourcePool<Integer>>asList(new IntResourcePool(1),new LockFreeResourcePool<Integer>(Arrays.asList(0)))){
+			final Integer r = pool.apply();
+			final ResourcePool.ResourceFuture<Integer> future = pool.applyAsync();
+			assertFalse(future.isDone());
+			// 在其他线程中申请,结果在测试线程中检查
+			final AtomicReference<Object> applied = new AtomicReference<Object>();
+			Thread other = new Thread(){
+				@Override
+				public void run() {
+					try {
+						applied.set(pool.tryApply(10, TimeUnit.MILLISECONDS));
+					} catch (InterruptedException e) {
+						applied.set(e);
+					}
+				}
+			};
+			other.start();
+			other.join();
+			assertNull(applied.get());
+			final CountDownLatch listened = new CountDownLatch(1);
+			future.addListener(new Runnable(){
+				@Override
+				public void run() {
+					listened.countDown();
+				}}, new Executor(){
+					@Override
+					public void execute(Runnable command) {
+						command.run();
+					}});
+			pool.free();
+			assertTrue(listened.await(1, TimeUnit.SECONDS));
+			assertEquals(r, future.get(1, TimeUnit.SECONDS));
+			ResourcePool.Statistics statistics = pool.getStatistics();
+			System.out.println(statistics);
+			assertEquals(1, statistics.getHolders());
+			assertEquals(1, statistics.getTimeouts());
+			assertEquals(2, statistics.getAcquires());
+			pool.free(future.get());
+			assertEquals(1, pool.getStatistics().getIdle());
+		}
+	}
+	/**
+	 * 多线程同时异步申请和释放资源,每个异步申请都必须完成
+	 */
+	@Test
+	public void testAsyncRace() throws Exception {
+		for(final ResourcePool<Integer> pool : Arrays.<ResourcePool<Integer>>asList(new IntResourcePool(1),new LockFreeResourcePool<Integer>(Arrays.asList(0)))){
+			int threads = 4;
+			final int loops = 20000;
+			final AtomicInteger lost = new AtomicInteger();
+			final CountDownLatch latch = new CountDownLatch(threads);
+			for(int t = 0; t < threads; ++t){
+				new Thread(){
+					@Override
+					public void run() {
+						try{
+							for(int i = 0; i < loops && 0 == lost.get(); ++i){
+								ResourcePool.ResourceFuture<Integer> future = pool.applyAsync();
+								try{
+									pool.free(future.get(5, TimeUnit.SECONDS));
+								}catch(Exception e){
+									lost.incrementAndGet();
+								}
+							}
+						}finally{
+							latch.countDown();
+						}
+					}
+				}.start();
+			}
+			assertTrue(latch.await(60, TimeUnit.SECONDS));
+			assertEquals(0, lost.get());
+			ResourcePool.Statistics statistics = pool.getStatistics();
+			assertEquals(0, statistics.getHolders());
+			assertEquals(1, statistics.getIdle());
+			assertEquals(threads * loops, statistics.getAcquires());
+		}
+	}
+	@Test
+	public void testElastic() throws Exception {
+		final AtomicInteger created = new AtomicInteger();
+		final AtomicInteger destroyed = new AtomicInteger();
+		ResourcePool<Integer> pool = new ResourcePool<Integer>(){
+			@Override
+			protected Integer newResource() {
+				return created.getAndIncrement();
+			}
+			@Override
+			protected void destroyResource(Integer resource) {
+				destroyed.incrementAndGet();
+			}
+		}.setMaxSize(4).setMinSize(2).prewarm();
+		assertEquals(2, created.get());
+		assertEquals(2, pool.getStatistics().getIdle());
+		Integer[] held = new Integer[4];
+		for(int i = 0; i < held.length; ++i){
+			held[i] = pool.applyAsync().get();
+		}
+		assertEquals(4, created.get());
+		assertNull(pool.tryApply(0, TimeUnit.MILLISECONDS));
+		for(Integer r:held){
+			pool.free(r);
+		}
+		pool.setIdleTimeout(50, TimeUnit.MILLISECONDS);
+		// 等待回收任务执行,不依赖回收任务的执行时间
+		for(long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+				destroyed.get() < 2 && System.nanoTime() < deadline;){
+			Thread.sleep(10);
+		}
+		assertEquals(2, destroyed.get());
+		assertEquals(2, pool.getStatistics().getSize());
+	}
+	/**
+	 * 用资源集合构造的资源池回收空闲资源时保留所有资源
+	 */
+	@Test
+	public void testFixedIdleTimeout() throws Exception {
+		for(ResourcePool<Integer> pool : Arrays.<ResourcePool<Integer>>asList(new IntResourcePool(2),new LockFreeResourcePool<Integer>(Arrays.asList(0, 1)))){
+			assertEquals(2, pool.getMinSize());
+			pool.setIdleTimeout(20, TimeUnit.MILLISECONDS);
+			Thread.sleep(200);
+			assertEquals(2, pool.getStatistics().getSize());
+			Integer r = pool.tryApply(1, TimeUnit.SECONDS);
+			assertNotNull(r);
+			pool.free(r);
+		}
+	}
+	@Test
+	public void testAffinity() {
+		for(ResourcePool<Integer> pool : Arrays.<ResourcePool<Integer>>asList(new IntResourcePool(4),new LockFreeResourcePool<Integer>(Arrays.asList(0, 1, 2, 3)))){
+			pool.setAffinity(true);
+			Integer first = pool.apply();
+			pool.free();
+			for(int i = 0; i < 10; ++i){
+				assertEquals(first, pool.apply());
+				pool.free();
+			}
+		}
+		// 非亲和模式下按FIFO顺序轮流使用资源
+		ResourcePool<Integer> pool = new IntResourcePool(4);
+		Integer first = pool.apply();
+		pool.free();
+		assertNotEquals(first, pool.apply());
+		pool.free();
+	}
+}
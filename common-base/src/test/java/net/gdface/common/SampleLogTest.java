@@ -2,7 +2,10 @@ package net.gdface.common;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.Date;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Test;
 
@@ -17,5 +20,61 @@ public class SampleLogTest {
 		SampleLog.log("name {},age:{} ww", "tom");
 		SampleLog.log("name {},age:{},date:{},time:{}", "tom",23,new Date());
 	}
+	@Test
+	public void testAsync() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(bytes);
+		SampleLog.startAsync(16, SampleLog.OverflowPolicy.BLOCK);
+		try{
+			for(int i = 0; i < 1000; ++i){
+				SampleLog.log(out, "index {}", i);
+			}
+		}finally{
+			SampleLog.stopAsync();
+		}
+		String[] lines = bytes.toString().split("\\n");
+		assertEquals(1000, lines.length);
+		assertTrue(lines[999].endsWith("index 999"));
+		assertTrue(lines[0].contains("SampleLogTest.java"));
+		System.out.println(lines[0]);
+	}
+	/**
+	 * 写入线程与{@link SampleLog#stopAsync()}竞争,日志不能丢失
+	 */
+	@Test
+	public void testStopRace() throws InterruptedException {
+		SampleLog.setCallerLocation(false);
+		try{
+			for(int round = 0; round < 50; ++round){
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				final PrintStream out = new PrintStream(bytes);
+				final int threads = 4, loops = 200;
+				final CountDownLatch latch = new CountDownLatch(threads);
+				SampleLog.startAsync(64, SampleLog.OverflowPolicy.BLOCK);
+				for(int t = 0; t < threads; ++t){
+					new Thread(){
+						@Override
+						public void run() {
+							try{
+								for(int i = 0; i < loops; ++i){
+									SampleLog.log(out, "index {}", i);
+								}
+							}finally{
+								latch.countDown();
+							}
+						}
+					}.start();
+				}
+				Thread.yield();
+				SampleLog.stopAsync();
+				latch.await();
+				String[] lines = bytes.toString().split("\\n");
+				assertEquals(threads * loops, lines.length);
+				assertFalse(lines[0].contains(".java:"));
+			}
+		}finally{
+			SampleLog.setCallerLocation(true);
+		}
+	}
 
 }
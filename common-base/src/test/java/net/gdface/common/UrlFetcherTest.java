@@ -0,0 +1,95 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import net.gdface.utils.UrlFetcher;
+
+public class UrlFetcherTest {
+
+	@Test
+	public void testFetch() throws Exception {
+		final byte[] body = new byte[50000];
+		for(int i = 0; i < body.length; ++i){
+			body[i] = (byte) i;
+		}
+		final AtomicInteger concurrent = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+		server.createContext("/img", new HttpHandler(){
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				int current = concurrent.incrementAndGet();
+				synchronized (peak) {
+					peak.set(Math.max(peak.get(), current));
+				}
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+				}
+				concurrent.decrementAndGet();
+				exchange.sendResponseHeaders(200, body.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}});
+		server.createContext("/missing", new HttpHandler(){
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(404, -1);
+				exchange.close();
+			}});
+		server.start();
+		UrlFetcher fetcher = new UrlFetcher(8, 2, 1000, 1000);
+		try{
+			String base = "http://127.0.0.1:" + server.getAddress().getPort();
+			List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+			for(int i = 0; i < 10; ++i){
+				futures.add(fetcher.fetch(new URL(base + "/img")));
+			}
+			for(Future<byte[]> future : futures){
+				assertArrayEquals(body, future.get(5, TimeUnit.SECONDS));
+			}
+			assertTrue(peak.get() <= 2);
+			// 流式处理
+			Future<Long> count = fetcher.fetch(new URL(base + "/img"), new UrlFetcher.StreamHandler<Long>(){
+				@Override
+				public Long handle(InputStream in, long contentLength) throws IOException {
+					assertEquals(body.length, contentLength);
+					long n = 0;
+					while(in.read() != -1){
+						++n;
+					}
+					return n;
+				}});
+			assertEquals(Long.valueOf(body.length), count.get(5, TimeUnit.SECONDS));
+			try{
+				fetcher.fetch(new URL(base + "/missing")).get(5, TimeUnit.SECONDS);
+				fail("ExecutionException expected");
+			}catch(ExecutionException e){
+				assertTrue(e.getCause() instanceof IOException);
+			}
+		}finally{
+			fetcher.close();
+			server.stop(0);
+		}
+	}
+}
@@ -5,12 +5,15 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
 import net.gdface.utils.Assert;
 import net.gdface.utils.FaceUtilits;
 
 /**
  * 图像数据处理对象<br>
- * {@link #open()}可以在不将图像全部解码加载到内存而获取图像的基本信息<br>
+ * {@link #open()}可以在不将图像全部解码加载到内存而获取图像的基本信息,
+ * JPEG/PNG/BMP/GIF/WEBP格式直接解析文件头({@link ImageHeader}),本地文件不需要读取全部数据<br>
  * @author guyadong
  *
  */
@@ -27,6 +30,13 @@ public class LazyImage extends BaseLazyImage implements ImageMatrix{
 	public LazyImage open() throws UnsupportedFormatException, NotImageException {
 		try {
 			if(bitmap == null){
+				ImageHeader header = null == imgBytes ? ImageHeader.parse(localFile) : ImageHeader.parse(imgBytes);
+				if(null != header){
+					this.suffix = header.getFormatName();
+					this.width = header.getWidth();
+					this.height = header.getHeight();
+					return this;
+				}
 				BitmapFactory.Options options = new BitmapFactory.Options();
 				// 只获取宽高基本信息，不对图像解码
 				options.inJustDecodeBounds = true;
@@ -90,6 +100,102 @@ public class LazyImage extends BaseLazyImage implements ImageMatrix{
 				}
 		}
 	}
+	/**
+	 * 对图像指定区域按采样间隔解码<br>
+	 * 解码时通过{@link BitmapFactory.Options#inSampleSize}按不超过{@code subsampling}的2的幂缩小(JPEG在DCT阶段缩小),
+	 * 区域解码使用{@link BitmapRegionDecoder},最后缩放到精确的采样尺寸;已经解码的图像直接从内存中截取
+	 * @param x 区域左上角x坐标
+	 * @param y 区域左上角y坐标
+	 * @param width 区域宽度
+	 * @param height 区域高度
+	 * @param subsampling 采样间隔(>=1)
+	 * @return
+	 * @throws UnsupportedFormatException
+	 * @throws IllegalArgumentException 区域超出图像范围或{@code subsampling}<1
+	 * @see ImageMatrix#getMatrixRGB(int, int, int, int, int)
+	 */
+	public Bitmap read(int x, int y, int width, int height, int subsampling) throws UnsupportedFormatException {
+		boolean full = checkRegion(x, y, width, height, subsampling);
+		if(full && 1 == subsampling){
+			return read();
+		}
+		int dstWidth = subsampledSize(width, subsampling);
+		int dstHeight = subsampledSize(height, subsampling);
+		try {
+			Bitmap decoded;
+			if(null != bitmap){
+				decoded = Bitmap.createBitmap(bitmap, x, y, width, height);
+			}else{
+				BitmapFactory.Options options = new BitmapFactory.Options();
+				options.inSampleSize = Integer.highestOneBit(subsampling);
+				byte[] data = getImgBytes();
+				decoded = null;
+				if(!full){
+					try{
+						BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(data, 0, data.length, false);
+						try{
+							decoded = decoder.decodeRegion(new Rect(x, y, x + width, y + height), options);
+						}finally{
+							decoder.recycle();
+						}
+					}catch(IOException e){
+						// 不支持区域解码的格式(如BMP,GIF),全图解码后截取
+					}
+				}
+				if(null == decoded){
+					decoded = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+					if(null == decoded){
+						throw new UnsupportedFormatException("decode image error");
+					}
+					if(!full){
+						double scale = (double)decoded.getWidth() / this.width;
+						int left = Math.min((int)(x * scale), decoded.getWidth() - 1);
+						int top = Math.min((int)(y * scale), decoded.getHeight() - 1);
+						int w = Math.max(1, Math.min((int)Math.ceil(width * scale), decoded.getWidth() - left));
+						int h = Math.max(1, Math.min((int)Math.ceil(height * scale), decoded.getHeight() - top));
+						Bitmap region = Bitmap.createBitmap(decoded, left, top, w, h);
+						if(region != decoded){
+							decoded.recycle();
+						}
+						decoded = region;
+					}
+				}
+			}
+			if(decoded.getWidth() != dstWidth || decoded.getHeight() != dstHeight){
+				Bitmap scaled = Bitmap.createScaledBitmap(decoded, dstWidth, dstHeight, false);
+				if(scaled != decoded && decoded != bitmap){
+					decoded.recycle();
+				}
+				decoded = scaled;
+			}
+			return decoded;
+		} catch (UnsupportedFormatException e) {
+			throw e;
+		}catch (Exception e) {
+			throw new UnsupportedFormatException(e);
+		}
+	}
+	@Override
+	public byte[] getMatrixRGB(int x, int y, int width, int height, int subsampling) throws UnsupportedFormatException {
+		if(checkRegion(x, y, width, height, subsampling) && 1 == subsampling){
+			return getMatrixRGB();
+		}
+		return ImageUtil.getMatrixRGB(read(x, y, width, height, subsampling));
+	}
+	@Override
+	public byte[] getMatrixBGR(int x, int y, int width, int height, int subsampling) throws UnsupportedFormatException {
+		if(checkRegion(x, y, width, height, subsampling) && 1 == subsampling){
+			return getMatrixBGR();
+		}
+		return ImageUtil.getMatrixBGR(read(x, y, width, height, subsampling));
+	}
+	@Override
+	public byte[] getMatrixGray(int x, int y, int width, int height, int subsampling) throws UnsupportedFormatException {
+		if(checkRegion(x, y, width, height, subsampling) && 1 == subsampling){
+			return getMatrixGray();
+		}
+		return ImageUtil.getMatrixGRAY(read(x, y, width, height, subsampling));
+	}
 	@Override
 	public byte[] getMatrixRGBA() throws UnsupportedFormatException {
 		if (matrixRGBA==null){
@@ -252,10 +358,4 @@ public class LazyImage extends BaseLazyImage implements ImageMatrix{
 	public <T>LazyImage(T src) throws IOException {
 		this(FaceUtilits.getBytesNotEmpty(src));		
 	}
-
-	@Override
-	public void finalize() throws Throwable {
-		this.bitmap=null;
-		super.finalize();
-	}
 }
@@ -0,0 +1,171 @@
+package net.gdface.image;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+
+import net.gdface.utils.Assert;
+
+/**
+ * {@link ImageReader}/{@link ImageWriter}对象池<br>
+ * 按格式名(不区分大小写)保存空闲的编解码器对象,避免每次都通过SPI查找和创建;
+ * 归还时调用{@code reset()}清除输入/输出和监听器,每种格式保留的空闲对象数量不超过{@link #getMaxIdle()},超出的调用{@code dispose()}释放<br>
+ * 借出的对象只能由一个线程使用,用完必须归还(或自行{@code dispose()}),不能归还两次
+ * @author guyadong
+ *
+ */
+public class ImageCodecPool {
+	private static final ImageCodecPool DEFAULT = new ImageCodecPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+	private final int maxIdle;
+	private final ConcurrentMap<String, Idle<ImageReader>> readers = new ConcurrentHashMap<String, Idle<ImageReader>>();
+	private final ConcurrentMap<String, Idle<ImageWriter>> writers = new ConcurrentHashMap<String, Idle<ImageWriter>>();
+	/**
+	 * @param maxIdle 每种格式保留的空闲对象数量上限
+	 * @throws IllegalArgumentException {@code maxIdle}<0
+	 */
+	public ImageCodecPool(int maxIdle) {
+		if(maxIdle < 0){
+			throw new IllegalArgumentException(String.format("INVALID maxIdle:%d",maxIdle));
+		}
+		this.maxIdle = maxIdle;
+	}
+	/**
+	 * @return 默认对象池,每种格式保留的空闲对象数量为CPU核数(最少为2)
+	 */
+	public static ImageCodecPool getDefault(){
+		return DEFAULT;
+	}
+	/**
+	 * @return 每种格式保留的空闲对象数量上限
+	 */
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+	private static <T> Idle<T> idleOf(ConcurrentMap<String, Idle<T>> map, String key){
+		Idle<T> idle = map.get(key);
+		if(null == idle){
+			Idle<T> old = map.putIfAbsent(key, idle = new Idle<T>());
+			if(null != old){
+				idle = old;
+			}
+		}
+		return idle;
+	}
+	/**
+	 * 借出{@code formatName}格式的{@link ImageReader}
+	 * @param formatName 格式名,如"jpeg","png"
+	 * @return 没有对应的{@link ImageReader}返回{@code null}
+	 */
+	public ImageReader borrowReader(String formatName){
+		Assert.notEmpty(formatName, "formatName");
+		ImageReader reader = idleOf(readers, formatName.toLowerCase()).poll();
+		if(null == reader){
+			Iterator<ImageReader> it = ImageIO.getImageReadersByFormatName(formatName);
+			reader = it.hasNext() ? it.next() : null;
+		}
+		return reader;
+	}
+	/**
+	 * 归还{@link ImageReader},调用者不能再使用{@code reader}
+	 * @param formatName 格式名
+	 * @param reader 为{@code null}忽略
+	 */
+	public void returnReader(String formatName, ImageReader reader){
+		if(null == reader){
+			return;
+		}
+		if(null == formatName){
+			reader.dispose();
+			return;
+		}
+		reader.reset();
+		if(!idleOf(readers, formatName.toLowerCase()).offer(reader, maxIdle)){
+			reader.dispose();
+		}
+	}
+	/**
+	 * 借出可以输出{@code type}类型图像的{@code formatName}格式的{@link ImageWriter}
+	 * @param formatName 格式名,如"jpeg","png"
+	 * @param type 图像类型,为{@code null}不检查
+	 * @return 没有对应的{@link ImageWriter}返回{@code null}
+	 */
+	public ImageWriter borrowWriter(String formatName, ImageTypeSpecifier type){
+		Assert.notEmpty(formatName, "formatName");
+		Idle<ImageWriter> idle = idleOf(writers, formatName.toLowerCase());
+		ImageWriter writer = idle.poll();
+		if(null != writer){
+			if(null == type || writer.getOriginatingProvider().canEncodeImage(type)){
+				return writer;
+			}
+			if(!idle.offer(writer, maxIdle)){
+				writer.dispose();
+			}
+		}
+		Iterator<ImageWriter> it = null == type
+				? ImageIO.getImageWritersByFormatName(formatName)
+				: ImageIO.getImageWriters(type, formatName);
+		return it.hasNext() ? it.next() : null;
+	}
+	/**
+	 * 归还{@link ImageWriter},调用者不能再使用{@code writer}
+	 * @param formatName 格式名
+	 * @param writer 为{@code null}忽略
+	 */
+	public void returnWriter(String formatName, ImageWriter writer){
+		if(null == writer){
+			return;
+		}
+		if(null == formatName){
+			writer.dispose();
+			return;
+		}
+		writer.reset();
+		if(!idleOf(writers, formatName.toLowerCase()).offer(writer, maxIdle)){
+			writer.dispose();
+		}
+	}
+	/**
+	 * 释放所有空闲对象
+	 */
+	public void clear(){
+		for(Idle<ImageReader> idle : readers.values()){
+			for(ImageReader reader; null != (reader = idle.poll());){
+				reader.dispose();
+			}
+		}
+		for(Idle<ImageWriter> idle : writers.values()){
+			for(ImageWriter writer; null != (writer = idle.poll());){
+				writer.dispose();
+			}
+		}
+	}
+	/**
+	 * 单个格式的空闲对象队列
+	 */
+	private static class Idle<T>{
+		private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<T>();
+		private final AtomicInteger size = new AtomicInteger(0);
+		T poll(){
+			T obj = queue.poll();
+			if(null != obj){
+				size.decrementAndGet();
+			}
+			return obj;
+		}
+		boolean offer(T obj, int max){
+			if(size.incrementAndGet() > max){
+				size.decrementAndGet();
+				return false;
+			}
+			queue.offer(obj);
+			return true;
+		}
+	}
+}
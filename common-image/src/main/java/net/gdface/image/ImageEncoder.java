@@ -0,0 +1,340 @@
+package net.gdface.image;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.ImageOutputStreamImpl;
+
+import org.w3c.dom.NodeList;
+
+import net.gdface.utils.Assert;
+
+/**
+ * 可复用的图像编码器<br>
+ * 对象创建后参数不可修改,可以在多线程中共享;
+ * {@link ImageWriter}从{@link ImageCodecPool}借用,每个线程复用一个自动增长的输出缓冲区,
+ * 编码时不再为每个图像创建{@link java.io.ByteArrayOutputStream}和缓存流<br>
+ * JPEG格式支持优化Huffman表,渐进式编码,色度采样设置
+ * @author guyadong
+ *
+ */
+public class ImageEncoder {
+	/**
+	 * JPEG色度采样方式
+	 * @author guyadong
+	 *
+	 */
+	public static enum ChromaSubsampling{
+		/** 不采样,色彩最好,数据最大 */
+		YUV444(1, 1),
+		/** 水平方向2:1 */
+		YUV422(2, 1),
+		/** 水平垂直方向都是2:1(JDK默认) */
+		YUV420(2, 2);
+		private final int horizontal;
+		private final int vertical;
+		private ChromaSubsampling(int horizontal, int vertical) {
+			this.horizontal = horizontal;
+			this.vertical = vertical;
+		}
+	}
+	private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+	/** 线程缓冲区超过此大小时使用后不保留 */
+	private static final int MAX_RETAINED_BUFFER = 8 * 1024 * 1024;
+	private static final ThreadLocal<BufferOutput> buffers = new ThreadLocal<BufferOutput>();
+	private final String formatName;
+	private final Float compressionQuality;
+	private final boolean progressive;
+	private final boolean optimizeHuffman;
+	private final ChromaSubsampling chromaSubsampling;
+	private final boolean jpeg;
+	/**
+	 * @param formatName 图像格式名,可用的值 'BMP','PNG','GIF','JPEG'
+	 * @param compressionQuality 压缩质量(0.0~1.0),为null使用默认值
+	 * @param progressive 为{@code true}时使用渐进式编码(PNG为隔行扫描),格式不支持时忽略
+	 * @param optimizeHuffman 为{@code true}时JPEG使用优化的Huffman表,数据更小但编码稍慢
+	 * @param chromaSubsampling JPEG色度采样方式,为{@code null}使用默认值
+	 * @throws IllegalArgumentException 压缩质量超出范围
+	 */
+	public ImageEncoder(String formatName, Float compressionQuality, boolean progressive, boolean optimizeHuffman,
+			ChromaSubsampling chromaSubsampling) {
+		Assert.notEmpty(formatName, "formatName");
+		if(null != compressionQuality && (compressionQuality < 0f || compressionQuality > 1f)){
+			throw new IllegalArgumentException(String.format("INVALID compressionQuality %s", compressionQuality));
+		}
+		this.formatName = formatName;
+		this.compressionQuality = compressionQuality;
+		this.progressive = progressive;
+		this.optimizeHuffman = optimizeHuffman;
+		this.chromaSubsampling = chromaSubsampling;
+		this.jpeg = "jpeg".equalsIgnoreCase(formatName) || "jpg".equalsIgnoreCase(formatName);
+	}
+	/**
+	 * 使用格式的默认参数
+	 * @param formatName 图像格式名
+	 * @param compressionQuality 压缩质量(0.0~1.0),为null使用默认值
+	 */
+	public ImageEncoder(String formatName, Float compressionQuality) {
+		this(formatName, compressionQuality, false, false, null);
+	}
+	public String getFormatName() {
+		return formatName;
+	}
+	public Float getCompressionQuality() {
+		return compressionQuality;
+	}
+	public boolean isProgressive() {
+		return progressive;
+	}
+	public boolean isOptimizeHuffman() {
+		return optimizeHuffman;
+	}
+	public ChromaSubsampling getChromaSubsampling() {
+		return chromaSubsampling;
+	}
+	/**
+	 * 编码图像
+	 * @param source
+	 * @return 编码后的图像数据
+	 * @throws IllegalArgumentException 没有对应格式的{@link ImageWriter}
+	 */
+	public byte[] encode(RenderedImage source){
+		BufferOutput buffer = borrowBuffer();
+		try {
+			encode(source, buffer);
+			return buffer.toByteArray();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			returnBuffer(buffer);
+		}
+	}
+	/**
+	 * 编码图像写入输出流
+	 * @param source
+	 * @param output 输出流,不会被关闭
+	 * @throws IOException
+	 * @throws IllegalArgumentException 没有对应格式的{@link ImageWriter}
+	 */
+	public void encode(RenderedImage source, OutputStream output) throws IOException{
+		Assert.notNull(output, "output");
+		BufferOutput buffer = borrowBuffer();
+		try {
+			encode(source, buffer);
+			output.write(buffer.buf, 0, buffer.length);
+		} finally {
+			returnBuffer(buffer);
+		}
+	}
+	private void encode(RenderedImage source, BufferOutput buffer) throws IOException{
+		Assert.notNull(source, "source");
+		if(!write(source, buffer)){
+			// 对于某些格式的图像(如png)，直接生成jpeg可能会失败,转为RGB图像再试一次
+			BufferedImage rgb = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = rgb.createGraphics();
+			try{
+				if(source instanceof BufferedImage){
+					g.drawImage((BufferedImage) source, 0, 0, null);
+				}else{
+					g.drawRenderedImage(source, null);
+				}
+			}finally{
+				g.dispose();
+			}
+			buffer.clear();
+			if(!write(rgb, buffer)){
+				throw new IllegalArgumentException(String.format("not found writer for '%s'",formatName));
+			}
+		}
+	}
+	/**
+	 * @return 没有对应的{@link ImageWriter}返回{@code false}
+	 */
+	private boolean write(RenderedImage source, BufferOutput buffer) throws IOException{
+		ImageCodecPool pool = ImageCodecPool.getDefault();
+		ImageTypeSpecifier type = ImageTypeSpecifier.createFromRenderedImage(source);
+		ImageWriter writer = pool.borrowWriter(formatName, type);
+		if(null == writer){
+			return false;
+		}
+		boolean success = false;
+		try{
+			writer.setOutput(buffer);
+			ImageWriteParam param = createParam(writer);
+			IIOMetadata metadata = createMetadata(writer, type, param);
+			writer.write(null, new IIOImage(source, null, metadata), param);
+			buffer.flush();
+			success = true;
+			return true;
+		} finally {
+			// 出错的对象不再复用
+			if(success){
+				pool.returnWriter(formatName, writer);
+			}else{
+				writer.dispose();
+			}
+		}
+	}
+	private ImageWriteParam createParam(ImageWriter writer){
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		if(null != compressionQuality && param.canWriteCompressed()){
+			try{
+				param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+				param.setCompressionQuality(compressionQuality);
+			}catch(RuntimeException e){
+			}
+		}
+		if(progressive && param.canWriteProgressive()){
+			param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+		}
+		if(optimizeHuffman && param instanceof JPEGImageWriteParam){
+			((JPEGImageWriteParam) param).setOptimizeHuffmanTables(true);
+		}
+		return param;
+	}
+	/**
+	 * 设置JPEG色度采样
+	 * @return 不需要设置时返回{@code null}
+	 */
+	private IIOMetadata createMetadata(ImageWriter writer, ImageTypeSpecifier type, ImageWriteParam param) throws IOException{
+		if(!jpeg || null == chromaSubsampling){
+			return null;
+		}
+		IIOMetadata metadata = writer.getDefaultImageMetadata(type, param);
+		if(null == metadata || !JPEG_METADATA_FORMAT.equals(metadata.getNativeMetadataFormatName())){
+			return null;
+		}
+		IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA_FORMAT);
+		NodeList components = root.getElementsByTagName("componentSpec");
+		if(components.getLength() != 3){
+			// 灰度图像
+			return null;
+		}
+		for(int i = 0; i < components.getLength(); ++i){
+			IIOMetadataNode component = (IIOMetadataNode) components.item(i);
+			// 第一个分量为亮度(Y),其他分量为色度
+			component.setAttribute("HsamplingFactor", Integer.toString(0 == i ? chromaSubsampling.horizontal : 1));
+			component.setAttribute("VsamplingFactor", Integer.toString(0 == i ? chromaSubsampling.vertical : 1));
+		}
+		metadata.setFromTree(JPEG_METADATA_FORMAT, root);
+		return metadata;
+	}
+	private static BufferOutput borrowBuffer(){
+		BufferOutput buffer = buffers.get();
+		if(null == buffer){
+			buffer = new BufferOutput();
+			buffers.set(buffer);
+		}else if(buffer.inUse){
+			// 嵌套调用时使用临时的缓冲区
+			buffer = new BufferOutput();
+		}
+		buffer.clear();
+		buffer.inUse = true;
+		return buffer;
+	}
+	private static void returnBuffer(BufferOutput buffer){
+		buffer.inUse = false;
+		if(buffer.buf.length > MAX_RETAINED_BUFFER && buffers.get() == buffer){
+			buffers.remove();
+		}
+	}
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((chromaSubsampling == null) ? 0 : chromaSubsampling.hashCode());
+		result = prime * result + ((compressionQuality == null) ? 0 : compressionQuality.hashCode());
+		result = prime * result + formatName.toLowerCase().hashCode();
+		result = prime * result + (optimizeHuffman ? 1231 : 1237);
+		result = prime * result + (progressive ? 1231 : 1237);
+		return result;
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ImageEncoder))
+			return false;
+		ImageEncoder other = (ImageEncoder) obj;
+		return formatName.equalsIgnoreCase(other.formatName)
+				&& (null == compressionQuality ? null == other.compressionQuality : compressionQuality.equals(other.compressionQuality))
+				&& progressive == other.progressive
+				&& optimizeHuffman == other.optimizeHuffman
+				&& chromaSubsampling == other.chromaSubsampling;
+	}
+	@Override
+	public String toString() {
+		return String.format("ImageEncoder [formatName=%s, compressionQuality=%s, progressive=%s, optimizeHuffman=%s, chromaSubsampling=%s]",
+				formatName, compressionQuality, progressive, optimizeHuffman, chromaSubsampling);
+	}
+	/**
+	 * 写入自动增长字节数组的{@link javax.imageio.stream.ImageOutputStream},可以清除后复用
+	 */
+	private static class BufferOutput extends ImageOutputStreamImpl{
+		private byte[] buf = new byte[64 * 1024];
+		private int length = 0;
+		private boolean inUse = false;
+		void clear(){
+			streamPos = 0;
+			flushedPos = 0;
+			bitOffset = 0;
+			length = 0;
+		}
+		byte[] toByteArray(){
+			return Arrays.copyOf(buf, length);
+		}
+		private void ensureCapacity(long size){
+			if(size > buf.length){
+				buf = Arrays.copyOf(buf, (int) Math.max(size, buf.length * 2L));
+			}
+		}
+		@Override
+		public int read() throws IOException {
+			checkClosed();
+			bitOffset = 0;
+			return streamPos < length ? buf[(int) streamPos++] & 0xff : -1;
+		}
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			checkClosed();
+			bitOffset = 0;
+			int n = (int) Math.min(len, length - streamPos);
+			if(n <= 0){
+				return len == 0 ? 0 : -1;
+			}
+			System.arraycopy(buf, (int) streamPos, b, off, n);
+			streamPos += n;
+			return n;
+		}
+		@Override
+		public void write(int b) throws IOException {
+			flushBits();
+			ensureCapacity(streamPos + 1);
+			buf[(int) streamPos++] = (byte) b;
+			length = (int) Math.max(length, streamPos);
+		}
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			flushBits();
+			ensureCapacity(streamPos + len);
+			System.arraycopy(b, off, buf, (int) streamPos, len);
+			streamPos += len;
+			length = (int) Math.max(length, streamPos);
+		}
+		@Override
+		public long length() {
+			return length;
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package net.gdface.image;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
@@ -8,7 +9,6 @@ import java.awt.Rectangle;
 import java.awt.Transparency;
 import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
-import java.awt.image.ColorConvertOp;
 import java.awt.image.ColorModel;
 import java.awt.image.ComponentColorModel;
 import java.awt.image.ComponentSampleModel;
@@ -17,20 +17,17 @@ import java.awt.image.DataBufferByte;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
-import java.util.Iterator;
 
-import javax.imageio.IIOException;
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageTypeSpecifier;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
 import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 import net.gdface.utils.Assert;
 
@@ -79,6 +76,43 @@ public class ImageUtil {
 		}
 		return target;
 	}
+	/**
+	 * 用{@link Resampler}对图像进行缩放,缩放计算在RGB矩阵上按行并行执行<br>
+	 * 返回的图像为RGB格式(不含alpha通道)
+	 * @param source 原图
+	 * @param targetWidth 缩放后图像宽度
+	 * @param targetHeight 缩放后图像高度
+	 * @param constrain 为true时等比例缩放，targetWidth,targetHeight为缩放图像的限制尺寸
+	 * @param filter 滤波器,为{@code null}时为{@link Resampler.Filter#BICUBIC}
+	 * @return
+	 * @see #resize(BufferedImage, int, int, boolean)
+	 */
+	public static BufferedImage resize(BufferedImage source, int targetWidth, int targetHeight,boolean constrain,Resampler.Filter filter) {
+		Assert.notNull(source, "source");
+		int w = source.getWidth();
+		int h = source.getHeight();
+		if(constrain){
+			Dimension size = constrain(w, h, targetWidth, targetHeight);
+			targetWidth = size.width;
+			targetHeight = size.height;
+		}
+		byte[] rgb = Resampler.resize(MatrixConverter.toMatrix(source, MatrixType.RGB), w, h, 3, targetWidth, targetHeight, filter);
+		return createRGBImage(rgb, targetWidth, targetHeight);
+	}
+	/**
+	 * 计算等比例缩放到限制尺寸内的图像尺寸
+	 */
+	static Dimension constrain(int width, int height, int targetWidth, int targetHeight){
+		double aspectRatio = (double)width/height;
+		double sx = (double) targetWidth / width;
+		double sy = (double) targetHeight / height;
+		if (sx > sy) {
+			targetWidth = (int) Math.round(targetHeight*aspectRatio);
+		} else {
+			targetHeight = (int) Math.round(targetWidth/aspectRatio);
+		}
+		return new Dimension(Math.max(1, targetWidth), Math.max(1, targetHeight));
+	}
 	public static byte[] wirteJPEGBytes(BufferedImage source){
 		return wirteJPEGBytes(source,null);
 	}
@@ -109,15 +143,10 @@ public class ImageUtil {
 	 * @param formatName 图像格式名，图像格式名错误则抛出异常,可用的值 'BMP','PNG','GIF','JPEG'
 	 * @param compressionQuality 压缩质量(0.0~1.0),超过此范围抛出异常,为null使用默认值
 	 * @return
+	 * @see ImageEncoder#encode(RenderedImage)
 	 */
 	public static byte[] wirteBytes(BufferedImage source,String formatName,Float compressionQuality){
-		ByteArrayOutputStream output = new ByteArrayOutputStream();
-		try {
-			wirte(source, formatName, compressionQuality, output);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-		return output.toByteArray();		
+		return new ImageEncoder(formatName, compressionQuality).encode(source);
 	}
 	/**
 	 * 将{@link BufferedImage}生成formatName指定格式的图像数据
@@ -191,6 +220,65 @@ public class ImageUtil {
 			return resize(source, thumbnailWidth, thumbnailHeight,true);
 		}
 	}
+	/**
+	 * 对图像创建缩略图<br>
+	 * 切图规则与{@link #createThumbnail(BufferedImage, int, int, double)}相同,区别是不解码全图:
+	 * 只解码需要的区域,并由解码器按采样间隔跳过像素(保留不小于缩略图2倍的尺寸),
+	 * 最后用{@link Resampler}缩放到缩略图尺寸,大图生成缩略图时省去了大部分解码和缩放计算<br>
+	 * 返回的图像为RGB格式
+	 * @param image 图像对象(只需要已经{@link LazyImage#open()})
+	 * @param thumbnailWidth 缩略图宽度
+	 * @param thumbnailHeight 缩略图高度
+	 * @param ratioThreshold 最大宽高比阀值(宽高中较大的值/较小的值)，<此值时对原图等比例缩放，>=此值时从原图切出中间部分图像再等比例缩放
+	 * @param filter 滤波器,为{@code null}时为{@link Resampler.Filter#BICUBIC}
+	 * @return
+	 * @throws UnsupportedFormatException
+	 */
+	public static BufferedImage createThumbnail(LazyImage image,int thumbnailWidth,int thumbnailHeight,double ratioThreshold,Resampler.Filter filter)
+			throws UnsupportedFormatException {
+		Assert.notNull(image, "image");
+		Rectangle region = thumbnailRegion(image.getWidth(), image.getHeight(), thumbnailWidth, thumbnailHeight, ratioThreshold);
+		if(region.width <= thumbnailWidth && region.height <= thumbnailHeight){
+			// 不需要缩放
+			return createRGBImage(image.getMatrixRGB(region.x, region.y, region.width, region.height, 1), region.width, region.height);
+		}
+		Dimension size = constrain(region.width, region.height, thumbnailWidth, thumbnailHeight);
+		int subsampling = thumbnailSubsampling(region, size);
+		byte[] rgb = image.getMatrixRGB(region.x, region.y, region.width, region.height, subsampling);
+		int sw = BaseLazyImage.subsampledSize(region.width, subsampling);
+		int sh = BaseLazyImage.subsampledSize(region.height, subsampling);
+		rgb = Resampler.resize(rgb, sw, sh, 3, size.width, size.height, filter);
+		return createRGBImage(rgb, size.width, size.height);
+	}
+	/**
+	 * 计算生成缩略图时从原图截取的区域
+	 * @see #createThumbnail(BufferedImage, int, int, double)
+	 */
+	static Rectangle thumbnailRegion(int w, int h, int thumbnailWidth, int thumbnailHeight, double ratioThreshold){
+		if (w >= thumbnailWidth || h >= thumbnailHeight) {
+			double wh_sca = w > h ? (double) w / h : (double) h / w;
+			if (wh_sca >= ratioThreshold) {
+				double thumAspectRatio = (double) thumbnailWidth / thumbnailHeight;
+				if (w > h) {
+					int fw = Math.min(w, (int) (thumAspectRatio * h));
+					return new Rectangle((w - fw) / 2, 0, fw, h);
+				} else {
+					int fh = Math.min(h, (int) (thumAspectRatio * w));
+					return new Rectangle(0, (h - fh) / 2, w, fh);
+				}
+			}
+		}
+		return new Rectangle(0, 0, w, h);
+	}
+	/**
+	 * 计算解码时的采样间隔,保证解码后的图像不小于缩放尺寸的2倍
+	 * @param region 解码区域
+	 * @param size 缩放尺寸
+	 */
+	static int thumbnailSubsampling(Rectangle region, Dimension size){
+		double scale = Math.min((double)region.width / size.width, (double)region.height / size.height);
+		return Math.max(1, (int) (scale / 2));
+	}
 	/**
 	 * 对原图创建JPEG格式的缩略图
 	 * @param imageBytes 图像数据字节数组
@@ -198,21 +286,29 @@ public class ImageUtil {
 	 * @param thumbnailHeight
 	 * @param ratioThreshold
 	 * @return 返回jpeg格式的图像数据字节数组
-	 * @see #createThumbnail(BufferedImage, int, int, double)
+	 * @see #createThumbnail(LazyImage, int, int, double, Resampler.Filter)
 	 * @see #wirteJPEGBytes(BufferedImage)
 	 */
 	public static byte[] createJPEGThumbnail(byte[] imageBytes,int thumbnailWidth,int thumbnailHeight,double ratioThreshold) {
 		Assert.notEmpty(imageBytes, "imageBytes");
+		LazyImage image;
 		try {
-			BufferedImage source = ImageIO.read(new ByteArrayInputStream(imageBytes));
-			if(null==source){
-				throw new IllegalArgumentException("unsupported image format");
-			}
-			BufferedImage thumbnail = createThumbnail(source, thumbnailWidth, thumbnailHeight, ratioThreshold);
+			image = LazyImage.create(imageBytes);
+		} catch (ImageErrorException e) {
+			throw new IllegalArgumentException("unsupported image format", e);
+		}
+		try {
+			BufferedImage thumbnail = createThumbnail(image, thumbnailWidth, thumbnailHeight, ratioThreshold, Resampler.Filter.BICUBIC);
 			return wirteJPEGBytes(thumbnail);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}		
+		} catch (UnsupportedFormatException e) {
+			throw new IllegalArgumentException("unsupported image format", e);
+		} finally {
+			try {
+				image.close();
+			} catch (IOException e) {
+				// 关闭失败不影响结果
+			}
+		}
 	}
 
 	/**
@@ -250,91 +346,50 @@ public class ImageUtil {
 	 * 对图像解码返回RGB格式矩阵数据
 	 * @param image
 	 * @return 
+	 * @see MatrixConverter
 	 */
 	public static byte[] getMatrixRGB(BufferedImage image) {
 		if(null==image){
 			throw new NullPointerException();
 		}
-		byte[] matrixRGB;
-		if(isRGB3Byte(image)){
-			matrixRGB= (byte[]) image.getData().getDataElements(0, 0, image.getWidth(), image.getHeight(), null);
-		}else{
-			// 转RGB格式
-			BufferedImage rgbImage = new BufferedImage(image.getWidth(), image.getHeight(),  
-	                BufferedImage.TYPE_3BYTE_BGR);
-			new ColorConvertOp(ColorSpace.getInstance(ColorSpace.CS_sRGB), null).filter(image, rgbImage);
-			matrixRGB= (byte[]) rgbImage.getData().getDataElements(0, 0, image.getWidth(), image.getHeight(), null);
-		} 
-		return matrixRGB;
+		return MatrixConverter.toMatrix(image, MatrixType.RGB);
 	}
 	/**
-	 * 对图像解码返回RGB格式矩阵数据
+	 * 对图像解码返回RGBA格式矩阵数据
 	 * @param image
 	 * @return 
+	 * @see MatrixConverter
 	 */
 	public static byte[] getMatrixRGBA(BufferedImage image) {
 		if(null==image){
 			throw new NullPointerException();
 		}
-		byte[] matrixRGBA;
-		if(isBGRA(image)){
-			matrixRGBA= (byte[]) image.getData().getDataElements(0, 0, image.getWidth(), image.getHeight(), null);
-		}else{
-			// 转RGBA格式
-			BufferedImage rgbaImage = new BufferedImage(image.getWidth(), image.getHeight(),  
-	                BufferedImage.TYPE_4BYTE_ABGR);
-			new ColorConvertOp(ColorSpace.getInstance(ColorSpace.CS_sRGB), null).filter(image, rgbaImage);
-			matrixRGBA= (byte[]) rgbaImage.getData().getDataElements(0, 0, image.getWidth(), image.getHeight(), null);
-		} 
-		return matrixRGBA;
+		return MatrixConverter.toMatrix(image, MatrixType.RGBA);
 	}
 
 	/**
 	 * 对图像解码返回BGR格式矩阵数据
 	 * @param image
 	 * @return
+	 * @see MatrixConverter
 	 */
 	public static byte[] getMatrixBGR(BufferedImage image){
 		if(null==image){
 			throw new NullPointerException();
 		}
-		byte[] matrixBGR;
-		if(isBGR3Byte(image)){
-			matrixBGR= (byte[]) image.getData().getDataElements(0, 0, image.getWidth(), image.getHeight(), null);
-		}else{			
-			// ARGB格式图像数据
-			int intrgb[]=image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
-			matrixBGR=new byte[image.getWidth() * image.getHeight()*3];
-			// ARGB转BGR格式
-			for(int i=0,j=0;i<intrgb.length;++i,j+=3){
-				matrixBGR[j]=(byte) (intrgb[i]&0xff);
-				matrixBGR[j+1]=(byte) ((intrgb[i]>>8)&0xff);
-				matrixBGR[j+2]=(byte) ((intrgb[i]>>16)&0xff);
-			}
-		} 
-		return matrixBGR;
+		return MatrixConverter.toMatrix(image, MatrixType.BGR);
 	}
 	/**
-	 * 对图像解码返回BGR格式矩阵数据
+	 * 对图像解码返回灰度矩阵数据
 	 * @param image
 	 * @return
+	 * @see MatrixConverter
 	 */
 	public static byte[] getMatrixGRAY(BufferedImage image){
 		if(null==image){
 			throw new NullPointerException();
 		}
-		byte[] matrixGray;
-		if(isGray(image)){
-			matrixGray= (byte[]) image.getData().getDataElements(0, 0, image.getWidth(), image.getHeight(), null);
-		}else{			
-			// 图像转灰
-			BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(),  
-	                BufferedImage.TYPE_BYTE_GRAY);
-			new ColorConvertOp(ColorSpace.getInstance(ColorSpace.CS_GRAY), null).filter(image, gray);
-		    matrixGray= (byte[]) gray.getData().getDataElements(0, 0, image.getWidth(), image.getHeight(), null);	
-			
-		} 
-		return matrixGray;
+		return MatrixConverter.toMatrix(image, MatrixType.GRAY);
 	}
 	
 	/**
@@ -438,67 +493,60 @@ public class ImageUtil {
 		int size=Math.max(width, height);
 		return growCanvas(src,BufferedImage.TYPE_3BYTE_BGR,0,0,size-width,size-height);
 	}
-    /**
-     * Returns <code>ImageWriter</code> instance according to given
-     * rendered image and image format or <code>null</code> if there
-     * is no appropriate writer.
-     */
-    private static ImageWriter getImageWriter(RenderedImage im,
-                                         String formatName) {
-        ImageTypeSpecifier type =
-            ImageTypeSpecifier.createFromRenderedImage(im);
-        Iterator<ImageWriter> iter = ImageIO.getImageWriters(type, formatName);
-
-        if (iter.hasNext()) {
-            return iter.next();
-        } else {
-            return null;
-        }
-    }
-
 	/**
 	 * 将原图压缩生成{@code formatName}指定格式的数据<br>
 	 * 除了可以指定生成的图像质量之外，
-	 * 其他行为与{@link ImageIO#write(RenderedImage, String, OutputStream)}相同
+	 * 其他行为与{@link ImageIO#write(RenderedImage, String, OutputStream)}相同<br>
+	 * {@link ImageWriter}从{@link ImageCodecPool#getDefault()}借出,使用内存做cache输出(不使用临时文件做cache)
 	 * @param source
 	 * @param formatName
 	 * @param output
-	 * @param compressionQuality 指定图像质量,为{@code null}调用{@link ImageIO#write(RenderedImage, String, OutputStream)}
-	 * @return
+	 * @param compressionQuality 指定图像质量,为{@code null}使用默认值
+	 * @return 没有对应的{@link ImageWriter}返回{@code false}
 	 * @throws IOException
 	 */
 	public static boolean write(RenderedImage source,
 			String formatName,
 			OutputStream output,
 			Float compressionQuality) throws IOException{
-		if(null == compressionQuality){
-			return ImageIO.write(source, formatName, output);
-		}
-		ImageWriter writer = getImageWriter(source,formatName);
+		Assert.notNull(source, "source");
+		Assert.notEmpty(formatName, "formatName");
+		Assert.notNull(output, "output");
+		ImageCodecPool pool = ImageCodecPool.getDefault();
+		ImageWriter writer = pool.borrowWriter(formatName, ImageTypeSpecifier.createFromRenderedImage(source));
 		if(null == writer){
 			return false;
 		}
-        ImageOutputStream stream = null;
-        try {
-            stream = ImageIO.createImageOutputStream(output);
-        } catch (IOException e) {
-            throw new IIOException("Can't create output stream!", e);
-        }
-		writer.setOutput(stream);
-		ImageWriteParam param = writer.getDefaultWriteParam();
+		boolean success = false;
 		try{
-			if(param.canWriteCompressed()){
-				try{
-					param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-					param.setCompressionQuality(compressionQuality);
-				}catch(RuntimeException e){					
+			ImageOutputStream stream = new MemoryCacheImageOutputStream(output);
+			try{
+				writer.setOutput(stream);
+				ImageWriteParam param = null;
+				if(null != compressionQuality){
+					param = writer.getDefaultWriteParam();
+					if(param.canWriteCompressed()){
+						try{
+							param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+							param.setCompressionQuality(compressionQuality);
+						}catch(RuntimeException e){					
+						}
+					}
 				}
+				writer.write(null, new IIOImage(source, null, null), param);
+				success = true;
+				return true;
+			}finally{
+				// 不会关闭 output
+				stream.close();
 			}
-			writer.write(null, new IIOImage(source, null, null), param);
-			return true;
 		} finally {
-			writer.dispose();
-			stream.flush();
+			// 出错的对象不再复用
+			if(success){
+				pool.returnWriter(formatName, writer);
+			}else{
+				writer.dispose();
+			}
 		}
 	}
 	/**
@@ -553,6 +601,41 @@ public class ImageUtil {
 				"the %s(X%d,Y%d,W%d,H%d) not contained by %s(X%d,Y%d,W%d,H%d)",
 				argSub,sub.x, sub.y,sub.width, sub.height, argParent,parent.x,parent.y,parent.width, parent.height));
 	}
+	/**
+	 * 从已经解码的图像中截取{@code rect}指定的区域,并每隔{@code subsampling}个像素取一个像素生成新图像,图像类型不变
+	 * @param source 原图
+	 * @param rect 截取区域,为{@code null}时为全图
+	 * @param subsampling 采样间隔(>=1)
+	 * @return 区域为全图且{@code subsampling}为1时返回{@code source}
+	 * @see BaseLazyImage#subsampledSize(int, int)
+	 */
+	public static BufferedImage subsample(BufferedImage source,Rectangle rect,int subsampling){
+		Assert.notNull(source, "source");
+		Rectangle bounds = new Rectangle(0,0,source.getWidth(),source.getHeight());
+		if(null == rect){
+			rect = bounds;
+		}
+		assertContains(bounds, "source", rect, "rect");
+		if(subsampling < 1){
+			throw new IllegalArgumentException(String.format("INVALID subsampling:%d",subsampling));
+		}
+		if(1 == subsampling){
+			return rect.equals(bounds) ? source : source.getSubimage(rect.x, rect.y, rect.width, rect.height);
+		}
+		int width = BaseLazyImage.subsampledSize(rect.width, subsampling);
+		int height = BaseLazyImage.subsampledSize(rect.height, subsampling);
+		ColorModel cm = source.getColorModel();
+		Raster src = source.getRaster();
+		WritableRaster dst = cm.createCompatibleWritableRaster(width, height);
+		Object pixel = null;
+		for(int y = 0, sy = rect.y; y < height; ++y, sy += subsampling){
+			for(int x = 0, sx = rect.x; x < width; ++x, sx += subsampling){
+				pixel = src.getDataElements(sx, sy, pixel);
+				dst.setDataElements(x, y, pixel);
+			}
+		}
+		return new BufferedImage(cm, dst, cm.isAlphaPremultiplied(), null);
+	}
 	/**
 	 * 从matrix矩阵中截取rect指定区域的子矩阵
 	 * @param matrix 3byte(RGB/BGR) 图像矩阵
@@ -3,11 +3,16 @@ package net.gdface.image;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReadParam;
@@ -18,22 +23,35 @@ import javax.imageio.stream.MemoryCacheImageInputStream;
 
 import net.gdface.utils.Assert;
 import net.gdface.utils.FaceUtilits;
+import net.gdface.utils.ResourceCleaner;
 
 /**
  * 图像数据处理对象<br>
- * {@link #open()}可以在不将图像全部解码加载到内存而获取图像的基本信息<br>
+ * {@link #open()}可以在不将图像全部解码加载到内存而获取图像的基本信息,
+ * JPEG/PNG/BMP/GIF/WEBP格式直接解析文件头({@link ImageHeader}),不创建{@link ImageReader}<br>
  * {@link #read(ImageReadParam)}使用内存做cache读取(不使用临时文件做cache)<br>
- * {@link #read(Rectangle, ImageTypeSpecifier)}可以对图像指定区域解码
+ * {@link #read(Rectangle, ImageTypeSpecifier)}可以对图像指定区域解码<br>
+ * {@link ImageReader}从{@link ImageCodecPool}借出,和{@link ImageInputStream}一起由{@link #close()}归还/释放,
+ * 未调用{@link #close()}的对象被GC回收后由{@link ResourceCleaner}释放
  * @author guyadong
  *
  */
 public class LazyImage extends BaseLazyImage implements ImageMatrix{
+	/** 格式名 -> 是否有对应的{@link ImageReader} */
+	private static final ConcurrentMap<String, Boolean> readable = new ConcurrentHashMap<String, Boolean>();
+	private static final ImageEncoder JPEG_ENCODER = new ImageEncoder("JPEG", 0.9f);
+	private static final ImageEncoder PNG_ENCODER = new ImageEncoder("PNG", null);
 	private Rectangle rectangle=null;
-	private ImageReader imageReader;
-	private MemoryCacheImageInputStream imageInputstream;
+	/** 需要释放的资源,不能引用当前对象 */
+	private final Resources resources = new Resources();
+	/** 持有资源时不为{@code null} */
+	private ResourceCleaner.Cleanable cleanable;
 	private BufferedImage bufferedImage=null;
+	/** 编码器 -> 编码后的图像数据,与其他解码结果缓存一样不是线程安全的 */
+	private final Map<ImageEncoder, byte[]> encoded = new HashMap<ImageEncoder, byte[]>();
 	/**
-	 * 通过{@link ImageReader}来读取图像基本信息，检查图像数据有效性
+	 * 读取图像基本信息，检查图像数据有效性<br>
+	 * 优先解析文件头,不能解析的格式通过{@link ImageReader}读取
 	 * @return 
 	 * @throws UnsupportedFormatException 
 	 * @throws NotImageException 
@@ -43,15 +61,21 @@ public class LazyImage extends BaseLazyImage implements ImageMatrix{
 	public LazyImage open() throws UnsupportedFormatException, NotImageException {
 		try {
 			if(bufferedImage == null){
+				if(openHeader()){
+					return this;
+				}
 				Iterator<ImageReader> it = ImageIO.getImageReaders(getImageInputstream());
 				if (it.hasNext())
 					try {
-						imageReader = it.next();
+						ImageReader imageReader = it.next();
+						resources.imageReader = imageReader;
 						imageReader.setInput(getImageInputstream(), true, true);
 						this.suffix = imageReader.getFormatName().trim().toLowerCase();
+						resources.formatName = suffix;
 						this.width = imageReader.getWidth(0);
 						this.height = imageReader.getHeight(0);
 					} catch (Exception e) {						
+						resources.formatName = null;
 						throw new UnsupportedFormatException(e);
 					} 
 				else {
@@ -98,6 +122,8 @@ public class LazyImage extends BaseLazyImage implements ImageMatrix{
 			}
 			return this.bufferedImage;
 		} catch (Exception e) {
+			// 出错的ImageReader不再复用
+			resources.formatName = null;
 			throw new UnsupportedFormatException(e);
 		} finally {
 			if(autoClose)
@@ -108,6 +134,43 @@ public class LazyImage extends BaseLazyImage implements ImageMatrix{
 				}
 		}
 	}
+	/**
+	 * 解析文件头获取图像格式和宽高
+	 * @return 解析成功且有对应的{@link ImageReader}返回{@code true}
+	 */
+	private boolean openHeader(){
+		ImageHeader header;
+		if(null != imgBytes){
+			header = ImageHeader.parse(imgBytes);
+		}else if(null != localFile){
+			try {
+				header = ImageHeader.parse(localFile);
+			} catch (IOException e) {
+				return false;
+			}
+		}else{
+			return false;
+		}
+		if(null == header || !isReadable(header.getFormatName())){
+			return false;
+		}
+		this.suffix = header.getFormatName();
+		this.width = header.getWidth();
+		this.height = header.getHeight();
+		return true;
+	}
+	/**
+	 * @param formatName
+	 * @return 是否有{@code formatName}对应的{@link ImageReader}
+	 */
+	private static boolean isReadable(String formatName){
+		Boolean r = readable.get(formatName);
+		if(null == r){
+			r = ImageIO.getImageReadersByFormatName(formatName).hasNext();
+			readable.put(formatName, r);
+		}
+		return r;
+	}
 	public BufferedImage read() throws UnsupportedFormatException{
 		return read(null);
 	}
@@ -141,6 +204,56 @@ public class LazyImage extends BaseLazyImage implements ImageMatrix{
 			param.setDestination(destinationType.createBufferedImage(width, height));
 		return read(param);
 	}
+	/**
+	 * 对图像指定区域按采样间隔解码<br>
+	 * 通过{@link ImageReadParam#setSourceRegion(Rectangle)}和{@link ImageReadParam#setSourceSubsampling(int, int, int, int)}
+	 * 只输出需要的像素;已经解码的图像直接从内存中截取
+	 * @param x 区域左上角x坐标
+	 * @param y 区域左上角y坐标
+	 * @param width 区域宽度
+	 * @param height 区域高度
+	 * @param subsampling 采样间隔(>=1)
+	 * @return
+	 * @throws UnsupportedFormatException
+	 * @throws IllegalArgumentException 区域超出图像范围或{@code subsampling}<1
+	 * @see ImageMatrix#getMatrixRGB(int, int, int, int, int)
+	 */
+	public BufferedImage read(int x, int y, int width, int height, int subsampling) throws UnsupportedFormatException {
+		boolean full = checkRegion(x, y, width, height, subsampling);
+		if(full && 1 == subsampling){
+			return read();
+		}
+		if(null != bufferedImage){
+			return ImageUtil.subsample(bufferedImage, new Rectangle(x, y, width, height), subsampling);
+		}
+		ImageReadParam param = getImageReader().getDefaultReadParam();
+		if(!full){
+			param.setSourceRegion(new Rectangle(x, y, width, height));
+		}
+		param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+		return read(param);
+	}
+	@Override
+	public byte[] getMatrixRGB(int x, int y, int width, int height, int subsampling) throws UnsupportedFormatException {
+		if(checkRegion(x, y, width, height, subsampling) && 1 == subsampling){
+			return getMatrixRGB();
+		}
+		return ImageUtil.getMatrixRGB(read(x, y, width, height, subsampling));
+	}
+	@Override
+	public byte[] getMatrixBGR(int x, int y, int width, int height, int subsampling) throws UnsupportedFormatException {
+		if(checkRegion(x, y, width, height, subsampling) && 1 == subsampling){
+			return getMatrixBGR();
+		}
+		return ImageUtil.getMatrixBGR(read(x, y, width, height, subsampling));
+	}
+	@Override
+	public byte[] getMatrixGray(int x, int y, int width, int height, int subsampling) throws UnsupportedFormatException {
+		if(checkRegion(x, y, width, height, subsampling) && 1 == subsampling){
+			return getMatrixGray();
+		}
+		return ImageUtil.getMatrixGRAY(read(x, y, width, height, subsampling));
+	}
 	@Override
 	public byte[] getMatrixRGBA() throws UnsupportedFormatException{
 		if (matrixRGBA==null){
@@ -185,7 +298,7 @@ public class LazyImage extends BaseLazyImage implements ImageMatrix{
 					return getImgBytes();
 				}
 			}
-			return ImageUtil.wirtePNGBytes(read());
+			return encode(PNG_ENCODER).clone();
 		} catch (UnsupportedFormatException e) {
 			throw new RuntimeException(e);
 		}
@@ -198,11 +311,35 @@ public class LazyImage extends BaseLazyImage implements ImageMatrix{
 					return getImgBytes();
 				}
 			}
-			return ImageUtil.wirteJPEGBytes(read(),0.9f);
+			return encode(JPEG_ENCODER).clone();
 		} catch (UnsupportedFormatException e) {
 			throw new RuntimeException(e);
 		}
 	}
+	/**
+	 * 用{@code encoder}编码图像<br>
+	 * 编码结果按{@code encoder}(参数相同即相等)缓存在对象中,再次调用时直接返回;
+	 * 对象创建后图像内容不会改变,用{@link #LazyImage(BufferedImage)}创建的对象如果在外部修改了图像,需要调用{@link #clearEncoded()}<br>
+	 * 返回的是缓存的数组,调用者不能修改;缓存不是线程安全的,多线程使用同一对象时需要调用者同步
+	 * @param encoder
+	 * @return 编码后的图像数据(缓存的数组)
+	 * @throws UnsupportedFormatException
+	 */
+	public byte[] encode(ImageEncoder encoder) throws UnsupportedFormatException{
+		Assert.notNull(encoder, "encoder");
+		byte[] data = encoded.get(encoder);
+		if(null == data){
+			data = encoder.encode(read());
+			encoded.put(encoder, data);
+		}
+		return data;
+	}
+	/**
+	 * 清除{@link #encode(ImageEncoder)}缓存的编码结果
+	 */
+	public void clearEncoded(){
+		encoded.clear();
+	}
 	/**
 	 * 创建并打开对象
 	 * @param imgBytes
@@ -299,65 +436,68 @@ public class LazyImage extends BaseLazyImage implements ImageMatrix{
 
 	/**
 	 * 返回{@link ImageInputStream}对象<br>
-	 * 如果 {@link #imageInputstream} 为{@code null},则根据 {@link #imgBytes}或 {@link #localFile}创建
+	 * 如果没有创建,则根据 {@link #imgBytes}或 {@link #localFile}创建
 	 * @return imageInputstream
 	 */
 	private ImageInputStream getImageInputstream() {
-		if (null == imageInputstream) {
+		if (null == resources.imageInputstream) {
+			track();
 			if (null == imgBytes) {
 				if (null == localFile)
 					throw new IllegalArgumentException(
 							"while isValidImage be true localFile & imgBytes can't be NULL all");
 				try {
-					this.imageInputstream = new MemoryCacheImageInputStream(new FileInputStream(localFile));
+					resources.imageInputstream = new MemoryCacheImageInputStream(new FileInputStream(localFile));
 				} catch (FileNotFoundException e) {
 					throw new RuntimeException(e);
 				}
 			}else{
-				this.imageInputstream = new MemoryCacheImageInputStream(new ByteArrayInputStream(imgBytes));
+				resources.imageInputstream = new MemoryCacheImageInputStream(new ByteArrayInputStream(imgBytes));
 			}
 		}
-		return imageInputstream;
+		return resources.imageInputstream;
 	}
 	
 	/**
 	 * 返回{@link ImageReader}对象<br>
-	 * 如果 {@link #imageReader}为{@code null},则根据 {@link #suffix}创建，失败抛出
+	 * 如果没有创建,则根据 {@link #suffix}从{@link ImageCodecPool#getDefault()}借出，失败抛出
 	 * @return imageReader {@link ImageReader}对象
 	 * @throws IllegalStateException 无法根据{@link #suffix}获取{@link ImageReader}
 	 */
 	private ImageReader getImageReader() throws IllegalStateException {
-		if (null == imageReader) {
-			Iterator<ImageReader> it = ImageIO.getImageReadersByFormatName(suffix);
-			if (it.hasNext())
-				imageReader = it.next();
-			else
+		if (null == resources.imageReader) {
+			ImageReader imageReader = ImageCodecPool.getDefault().borrowReader(suffix);
+			if (null != imageReader){
+				track();
+				resources.imageReader = imageReader;
+				resources.formatName = suffix;
+			}else
 				throw new IllegalStateException(String.format("invalid suffix %s", suffix));
 		}
-		return imageReader;
+		return resources.imageReader;
+	}
+	/**
+	 * 开始持有资源时向{@link ResourceCleaner}注册,只有持有资源的对象才会注册
+	 */
+	private void track(){
+		if(null == cleanable){
+			cleanable = ResourceCleaner.register(this, resources);
+		}
 	}
 
 	/**
 	 * 释放资源
 	 * @throws IOException
 	 */
+	@Override
 	public void close() throws IOException{
-		if(null!=imageReader){
-			imageReader.dispose();
-			imageReader=null;
-		}
-		if(null!=imageInputstream){
-			imageInputstream.close();
-			imageInputstream=null;
+		ResourceCleaner.Cleanable c = cleanable;
+		if(null != c){
+			cleanable = null;
+			c.clean();
 		}
 		super.close();
 	}
-	@Override
-	public void finalize() throws Throwable {
-		this.bufferedImage=null;
-		this.rectangle=null;
-		super.finalize();
-	}
 
 
 	/**
@@ -368,5 +508,26 @@ public class LazyImage extends BaseLazyImage implements ImageMatrix{
 		if(null==rectangle)
 			rectangle=new Rectangle(0,0,width,height);
 		return rectangle;
-	}	
+	}
+	/**
+	 * {@link ImageReader}和{@link ImageInputStream}
+	 */
+	private static class Resources implements Closeable{
+		private ImageReader imageReader;
+		/** {@link #imageReader}的格式名,为{@code null}时不归还对象池 */
+		private String formatName;
+		private ImageInputStream imageInputstream;
+		@Override
+		public void close() throws IOException {
+			if(null!=imageReader){
+				ImageCodecPool.getDefault().returnReader(formatName, imageReader);
+				imageReader=null;
+				formatName=null;
+			}
+			if(null!=imageInputstream){
+				imageInputstream.close();
+				imageInputstream=null;
+			}
+		}
+	}
 }
@@ -0,0 +1,305 @@
+package net.gdface.image;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+
+import net.gdface.utils.Assert;
+import net.gdface.utils.ParallelRows;
+
+/**
+ * {@link BufferedImage}到图像矩阵({@link MatrixType})的转换<br>
+ * 对常用的图像类型(byte交错存储的sRGB/灰度图像,如TYPE_3BYTE_BGR,TYPE_4BYTE_ABGR,TYPE_BYTE_GRAY;
+ * int打包的sRGB图像,如TYPE_INT_RGB,TYPE_INT_ARGB,TYPE_INT_BGR)直接读取{@link DataBuffer},
+ * 按像素间隔(pixel stride),行间隔(scanline stride)和通道偏移(band offset)一次遍历写入目标矩阵,不创建全图的临时对象;
+ * 其他类型(如调色板图像,预乘alpha图像,非sRGB色彩空间)逐行调用{@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}后由{@link ColorKernels}转换<br>
+ * 灰度值按 BT.601 计算:(77*R + 150*G + 29*B + 128) >> 8,灰度图像转灰度矩阵时直接复制<br>
+ * 写入数组时大图像按行分段在{@link ParallelRows#getDefaultPool()}中并行转换
+ * @author guyadong
+ *
+ */
+public class MatrixConverter {
+	/** 并行转换时每个分段的最少像素数 */
+	private static final int MIN_PIXELS_PER_BAND = 64 * 1024;
+	private MatrixConverter() {
+	}
+	/**
+	 * 将图像转为{@code type}格式的矩阵
+	 * @param image
+	 * @param type
+	 * @return 新分配的矩阵
+	 * @see #toMatrix(BufferedImage, MatrixType, byte[], int)
+	 */
+	public static byte[] toMatrix(BufferedImage image, MatrixType type){
+		Assert.notNull(image, "image");
+		Assert.notNull(type, "type");
+		byte[] dst = new byte[type.sizeOf(image.getWidth(), image.getHeight())];
+		toMatrix(image, type, dst, 0);
+		return dst;
+	}
+	/**
+	 * 将图像转为{@code type}格式的矩阵写入{@code dst}
+	 * @param image
+	 * @param type
+	 * @param dst 目标数组
+	 * @param dstOff 写入起始位置
+	 * @return 写入的字节数
+	 * @throws IllegalArgumentException 参数为{@code null}或{@code dst}空间不足
+	 */
+	public static int toMatrix(final BufferedImage image, final MatrixType type, final byte[] dst, final int dstOff){
+		Assert.notNull(image, "image");
+		Assert.notNull(type, "type");
+		Assert.notNull(dst, "dst");
+		int size = type.sizeOf(image.getWidth(), image.getHeight());
+		if(dstOff < 0 || dstOff + size > dst.length){
+			throw new IllegalArgumentException(String.format("INSUFFICIENT dst:length=%d,dstOff=%d,required=%d",dst.length,dstOff,size));
+		}
+		if(image.getWidth() > 0){
+			final int rowBytes = type.sizeOf(image.getWidth(), 1);
+			new ParallelRows(){
+				@Override
+				protected void process(int start, int end) {
+					convert(image, type, start, end - start, dst, dstOff + start * rowBytes);
+				}
+			}.run(image.getHeight(), Math.max(1, MIN_PIXELS_PER_BAND / image.getWidth()));
+		}
+		return size;
+	}
+	/**
+	 * 将图像转为{@code type}格式的矩阵,从{@code dst}的当前位置写入,写入后position增加写入的字节数<br>
+	 * {@code dst}为直接内存时逐行转换后写入(只分配一行的临时数组)
+	 * @param image
+	 * @param type
+	 * @param dst
+	 * @return 写入的字节数
+	 * @throws IllegalArgumentException 参数为{@code null}或{@code dst}空间不足
+	 */
+	public static int toMatrix(BufferedImage image, MatrixType type, ByteBuffer dst){
+		Assert.notNull(image, "image");
+		Assert.notNull(type, "type");
+		Assert.notNull(dst, "dst");
+		int size = type.sizeOf(image.getWidth(), image.getHeight());
+		if(dst.remaining() < size){
+			throw new IllegalArgumentException(String.format("INSUFFICIENT dst:remaining=%d,required=%d",dst.remaining(),size));
+		}
+		if(dst.hasArray()){
+			convert(image, type, 0, image.getHeight(), dst.array(), dst.arrayOffset() + dst.position());
+			dst.position(dst.position() + size);
+		}else{
+			byte[] row = new byte[type.sizeOf(image.getWidth(), 1)];
+			for(int y = 0, height = image.getHeight(); y < height; ++y){
+				convert(image, type, y, 1, row, 0);
+				dst.put(row);
+			}
+		}
+		return size;
+	}
+	/**
+	 * 将图像{@code [y0,y0+rows)}行转换后写入{@code dst}
+	 */
+	static void convert(BufferedImage image, MatrixType type, int y0, int rows, byte[] dst, int dstOff){
+		if(rows <= 0 || image.getWidth() <= 0){
+			return;
+		}
+		if(!convertByte(image, type, y0, rows, dst, dstOff) && !convertInt(image, type, y0, rows, dst, dstOff)){
+			convertRGB(image, type, y0, rows, dst, dstOff);
+		}
+	}
+	private static int gray(int r, int g, int b){
+		return (77 * r + 150 * g + 29 * b + 128) >> 8;
+	}
+	/**
+	 * 目标矩阵中R,G,B,A通道的偏移,没有的通道为-1
+	 */
+	private static int[] channelOffsets(MatrixType type){
+		switch(type){
+		case RGB:
+			return new int[]{0, 1, 2, -1};
+		case BGR:
+			return new int[]{2, 1, 0, -1};
+		case RGBA:
+			return new int[]{0, 1, 2, 3};
+		default:
+			return null;
+		}
+	}
+	/**
+	 * byte交错存储的sRGB或灰度图像,不支持时返回{@code false}
+	 */
+	private static boolean convertByte(BufferedImage image, MatrixType type, int y0, int rows, byte[] dst, int dstOff){
+		ColorModel cm = image.getColorModel();
+		WritableRaster raster = image.getRaster();
+		SampleModel sm = raster.getSampleModel();
+		if(!(cm instanceof ComponentColorModel) || cm.isAlphaPremultiplied()
+				|| !(sm instanceof ComponentSampleModel) || !(raster.getDataBuffer() instanceof DataBufferByte)){
+			return false;
+		}
+		ComponentSampleModel csm = (ComponentSampleModel) sm;
+		int[] bankIndices = csm.getBankIndices();
+		for(int bank : bankIndices){
+			if(bank != bankIndices[0]){
+				return false;
+			}
+		}
+		boolean gray = cm.getColorSpace().getType() == ColorSpace.TYPE_GRAY && 1 == cm.getNumColorComponents();
+		if(gray){
+			// 灰度图像转彩色时由getRGB处理色彩空间转换
+			if(MatrixType.GRAY != type){
+				return false;
+			}
+		}else if(!cm.getColorSpace().isCS_sRGB() || 3 != cm.getNumColorComponents()){
+			return false;
+		}
+		DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+		byte[] data = db.getData(bankIndices[0]);
+		int pixelStride = csm.getPixelStride();
+		int scanlineStride = csm.getScanlineStride();
+		int[] bandOffsets = csm.getBandOffsets();
+		int width = image.getWidth();
+		// 第y0行第0列像素在data中的位置
+		int rowBase = db.getOffsets()[bankIndices[0]]
+				+ (y0 - raster.getSampleModelTranslateY()) * scanlineStride
+				+ (-raster.getSampleModelTranslateX()) * pixelStride;
+		if(gray){
+			int g = rowBase + bandOffsets[0];
+			if(1 == pixelStride){
+				for(int y = 0; y < rows; ++y, g += scanlineStride, dstOff += width){
+					System.arraycopy(data, g, dst, dstOff, width);
+				}
+			}else{
+				for(int y = 0; y < rows; ++y, g += scanlineStride){
+					for(int x = 0, s = g; x < width; ++x, s += pixelStride){
+						dst[dstOff++] = data[s];
+					}
+				}
+			}
+			return true;
+		}
+		int ro = bandOffsets[0], go = bandOffsets[1], bo = bandOffsets[2];
+		int ao = cm.hasAlpha() ? bandOffsets[3] : -1;
+		if(MatrixType.GRAY == type){
+			for(int y = 0; y < rows; ++y, rowBase += scanlineStride){
+				for(int x = 0, s = rowBase; x < width; ++x, s += pixelStride){
+					dst[dstOff++] = (byte) gray(data[s + ro] & 0xff, data[s + go] & 0xff, data[s + bo] & 0xff);
+				}
+			}
+			return true;
+		}
+		int[] co = channelOffsets(type);
+		int channels = type.getChannels();
+		int rowBytes = width * channels;
+		if(pixelStride == channels && ro == co[0] && go == co[1] && bo == co[2] && ao == co[3]){
+			// 存储格式与目标格式相同,逐行复制
+			for(int y = 0; y < rows; ++y, rowBase += scanlineStride, dstOff += rowBytes){
+				System.arraycopy(data, rowBase, dst, dstOff, rowBytes);
+			}
+			return true;
+		}
+		int dr = co[0], dg = co[1], dbo = co[2], da = co[3];
+		for(int y = 0; y < rows; ++y, rowBase += scanlineStride){
+			for(int x = 0, s = rowBase; x < width; ++x, s += pixelStride, dstOff += channels){
+				dst[dstOff + dr] = data[s + ro];
+				dst[dstOff + dg] = data[s + go];
+				dst[dstOff + dbo] = data[s + bo];
+				if(da >= 0){
+					dst[dstOff + da] = ao >= 0 ? data[s + ao] : (byte) 0xff;
+				}
+			}
+		}
+		return true;
+	}
+	/**
+	 * 返回8位通道掩码的移位数,不是8位通道返回-1
+	 */
+	private static int shiftOf(int mask){
+		int shift = Integer.numberOfTrailingZeros(mask);
+		return (0xff << shift) == mask ? shift : -1;
+	}
+	/**
+	 * int打包的sRGB图像,不支持时返回{@code false}
+	 */
+	private static boolean convertInt(BufferedImage image, MatrixType type, int y0, int rows, byte[] dst, int dstOff){
+		ColorModel cm = image.getColorModel();
+		WritableRaster raster = image.getRaster();
+		SampleModel sm = raster.getSampleModel();
+		if(!(cm instanceof DirectColorModel) || cm.isAlphaPremultiplied() || !cm.getColorSpace().isCS_sRGB()
+				|| !(sm instanceof SinglePixelPackedSampleModel) || !(raster.getDataBuffer() instanceof DataBufferInt)){
+			return false;
+		}
+		DirectColorModel dcm = (DirectColorModel) cm;
+		int rs = shiftOf(dcm.getRedMask()), gs = shiftOf(dcm.getGreenMask()), bs = shiftOf(dcm.getBlueMask());
+		int as = dcm.hasAlpha() ? shiftOf(dcm.getAlphaMask()) : -1;
+		if(rs < 0 || gs < 0 || bs < 0 || (dcm.hasAlpha() && as < 0)){
+			return false;
+		}
+		SinglePixelPackedSampleModel sppsm = (SinglePixelPackedSampleModel) sm;
+		DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+		int[] data = db.getData();
+		int scanlineStride = sppsm.getScanlineStride();
+		int width = image.getWidth();
+		int rowBase = db.getOffset()
+				+ (y0 - raster.getSampleModelTranslateY()) * scanlineStride
+				- raster.getSampleModelTranslateX();
+		if(MatrixType.GRAY == type){
+			for(int y = 0; y < rows; ++y, rowBase += scanlineStride){
+				for(int x = 0, s = rowBase; x < width; ++x, ++s){
+					int p = data[s];
+					dst[dstOff++] = (byte) gray((p >>> rs) & 0xff, (p >>> gs) & 0xff, (p >>> bs) & 0xff);
+				}
+			}
+			return true;
+		}
+		int[] co = channelOffsets(type);
+		int channels = type.getChannels();
+		int dr = co[0], dg = co[1], dbo = co[2], da = co[3];
+		for(int y = 0; y < rows; ++y, rowBase += scanlineStride){
+			for(int x = 0, s = rowBase; x < width; ++x, ++s, dstOff += channels){
+				int p = data[s];
+				dst[dstOff + dr] = (byte) (p >>> rs);
+				dst[dstOff + dg] = (byte) (p >>> gs);
+				dst[dstOff + dbo] = (byte) (p >>> bs);
+				if(da >= 0){
+					dst[dstOff + da] = as >= 0 ? (byte) (p >>> as) : (byte) 0xff;
+				}
+			}
+		}
+		return true;
+	}
+	/**
+	 * 通用转换:逐行调用{@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}
+	 */
+	private static void convertRGB(BufferedImage image, MatrixType type, int y0, int rows, byte[] dst, int dstOff){
+		int width = image.getWidth();
+		int[] argb = new int[width];
+		ColorKernels.Kernel kernel;
+		switch(type){
+		case RGB:
+			kernel = ColorKernels.Kernel.ARGB_TO_RGB;
+			break;
+		case BGR:
+			kernel = ColorKernels.Kernel.ARGB_TO_BGR;
+			break;
+		case RGBA:
+			kernel = ColorKernels.Kernel.ARGB_TO_RGBA;
+			break;
+		default:
+			kernel = ColorKernels.Kernel.ARGB_TO_GRAY;
+			break;
+		}
+		int rowBytes = type.sizeOf(width, 1);
+		for(int y = y0, end = y0 + rows; y < end; ++y, dstOff += rowBytes){
+			image.getRGB(0, y, width, 1, argb, 0, width);
+			kernel.apply(argb, 0, dst, dstOff, width);
+		}
+	}
+}
@@ -0,0 +1,359 @@
+package net.gdface.image;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import net.gdface.utils.Assert;
+
+/**
+ * 批量生成缩略图(转码)的流水线<br>
+ * 解码,缩放,编码分为三个阶段,每个阶段有独立的线程数和有界的输入队列,
+ * 各阶段同时工作,任何一个阶段处理不过来时上游阻塞等待,
+ * 所以无论输入多少图像,内存中同时存在的图像数量不超过各阶段队列容量与线程数之和<br>
+ * 每个图像处理完成(或失败)时立即在编码线程中通知{@link Listener},结果顺序与提交顺序无关<br>
+ * 解码阶段只解码缩略图需要的区域并由解码器按采样间隔跳过像素,
+ * 缩放规则参见{@link ImageUtil#createThumbnail(LazyImage, int, int, double, Resampler.Filter)}
+ * @author guyadong
+ *
+ * @param <S> 图像源类型,可以是{@link LazyImage},{@link File}或{@link LazyImage#create(Object)}支持的类型
+ */
+public class ThumbnailPipeline<S> implements Closeable {
+	/**
+	 * 处理结果侦听器,在编码线程中调用
+	 * @param <S>
+	 */
+	public static interface Listener<S>{
+		/**
+		 * 图像处理完成
+		 * @param source 图像源
+		 * @param output 编码后的图像数据
+		 */
+		void onComplete(S source, byte[] output);
+		/**
+		 * 图像处理失败
+		 * @param source 图像源
+		 * @param error 异常
+		 */
+		void onFailure(S source, Throwable error);
+	}
+	private final int thumbnailWidth;
+	private final int thumbnailHeight;
+	private final double ratioThreshold;
+	private final Resampler.Filter filter;
+	private final String formatName;
+	private final Float compressionQuality;
+	private final Listener<S> listener;
+	private final Stage decoder;
+	private final Stage resizer;
+	private final Stage encoder;
+	/** 已经提交还没有完成的图像数量 */
+	private int pending = 0;
+	private final Object lock = new Object();
+	private volatile boolean closed = false;
+	/**
+	 * @param thumbnailWidth 缩略图宽度
+	 * @param thumbnailHeight 缩略图高度
+	 * @param ratioThreshold 最大宽高比阀值,参见{@link ImageUtil#createThumbnail(java.awt.image.BufferedImage, int, int, double)}
+	 * @param filter 缩放滤波器,为{@code null}时为{@link Resampler.Filter#BICUBIC}
+	 * @param formatName 输出图像格式名,可用的值 'BMP','PNG','GIF','JPEG'
+	 * @param compressionQuality 压缩质量(0.0~1.0),为null使用默认值
+	 * @param decodeThreads 解码线程数
+	 * @param resizeThreads 缩放线程数
+	 * @param encodeThreads 编码线程数
+	 * @param queueCapacity 每个阶段的输入队列容量
+	 * @param listener 处理结果侦听器
+	 * @throws IllegalArgumentException 参数无效
+	 */
+	public ThumbnailPipeline(int thumbnailWidth, int thumbnailHeight, double ratioThreshold, Resampler.Filter filter,
+			String formatName, Float compressionQuality,
+			int decodeThreads, int resizeThreads, int encodeThreads, int queueCapacity, Listener<S> listener) {
+		Assert.notEmpty(formatName, "formatName");
+		Assert.notNull(listener, "listener");
+		if(thumbnailWidth <= 0 || thumbnailHeight <= 0 || decodeThreads <= 0 || resizeThreads <= 0 || encodeThreads <= 0 || queueCapacity <= 0){
+			throw new IllegalArgumentException(String.format(
+					"INVALID argument:thumbnail %dx%d,decodeThreads=%d,resizeThreads=%d,encodeThreads=%d,queueCapacity=%d",
+					thumbnailWidth,thumbnailHeight,decodeThreads,resizeThreads,encodeThreads,queueCapacity));
+		}
+		this.thumbnailWidth = thumbnailWidth;
+		this.thumbnailHeight = thumbnailHeight;
+		this.ratioThreshold = ratioThreshold;
+		this.filter = null == filter ? Resampler.Filter.BICUBIC : filter;
+		this.formatName = formatName;
+		this.compressionQuality = compressionQuality;
+		this.listener = listener;
+		this.encoder = new Stage("thumbnail-encoder", encodeThreads, queueCapacity, null){
+			@Override
+			void process(Task<S> task) {
+				task.output = ImageUtil.wirteBytes(ImageUtil.createRGBImage(task.matrix, task.width, task.height),
+						ThumbnailPipeline.this.formatName, ThumbnailPipeline.this.compressionQuality);
+				task.matrix = null;
+			}};
+		this.resizer = new Stage("thumbnail-resizer", resizeThreads, queueCapacity, encoder){
+			@Override
+			void process(Task<S> task) {
+				if(task.width != task.targetWidth || task.height != task.targetHeight){
+					byte[] dst = new byte[task.targetWidth * task.targetHeight * 3];
+					// 并行度由缩放线程数决定,在当前线程中计算
+					Resampler.resize(task.matrix, task.width, task.height, 3, dst, task.targetWidth, task.targetHeight,
+							ThumbnailPipeline.this.filter, null);
+					task.matrix = dst;
+					task.width = task.targetWidth;
+					task.height = task.targetHeight;
+				}
+			}};
+		this.decoder = new Stage("thumbnail-decoder", decodeThreads, queueCapacity, resizer){
+			@Override
+			void process(Task<S> task) throws Exception {
+				decode(task);
+			}};
+	}
+	/**
+	 * 每个阶段使用与CPU核数相同的线程,输出JPEG格式
+	 * @param thumbnailWidth 缩略图宽度
+	 * @param thumbnailHeight 缩略图高度
+	 * @param ratioThreshold 最大宽高比阀值
+	 * @param listener 处理结果侦听器
+	 */
+	public ThumbnailPipeline(int thumbnailWidth, int thumbnailHeight, double ratioThreshold, Listener<S> listener) {
+		this(thumbnailWidth, thumbnailHeight, ratioThreshold, null, "JPEG", null,
+				Runtime.getRuntime().availableProcessors(),
+				Runtime.getRuntime().availableProcessors(),
+				Runtime.getRuntime().availableProcessors(),
+				2 * Runtime.getRuntime().availableProcessors(),
+				listener);
+	}
+	/**
+	 * 提交一个图像源,解码队列满时阻塞等待<br>
+	 * 与{@link #close()}同时调用时,已经进入队列的图像可能以{@link RejectedExecutionException}通知{@link Listener#onFailure(Object, Throwable)}
+	 * @param source 图像源
+	 * @throws InterruptedException 等待队列时被中断
+	 * @throws RejectedExecutionException 已经关闭
+	 */
+	public void submit(S source) throws InterruptedException{
+		Assert.notNull(source, "source");
+		if(closed){
+			throw new RejectedExecutionException("closed");
+		}
+		synchronized(lock){
+			++pending;
+		}
+		Task<S> task = new Task<S>(source);
+		try{
+			// 等待队列时检查是否关闭,关闭后解码线程可能已经结束
+			while(!decoder.queue.offer(task, 100, TimeUnit.MILLISECONDS)){
+				if(closed){
+					done();
+					throw new RejectedExecutionException("closed");
+				}
+			}
+		}catch(InterruptedException e){
+			done();
+			throw e;
+		}
+		// 加入队列之前已经关闭,解码线程可能已经结束,从队列中删除失败说明已经被解码线程或close()取出
+		if(closed && decoder.queue.remove(task)){
+			done();
+			throw new RejectedExecutionException("closed");
+		}
+	}
+	/**
+	 * 提交所有图像源并等待处理完成
+	 * @param sources 图像源
+	 * @throws InterruptedException 等待时被中断
+	 * @see #submit(Object)
+	 * @see #awaitCompletion()
+	 */
+	public void process(Iterable<? extends S> sources) throws InterruptedException{
+		Assert.notNull(sources, "sources");
+		for(S source : sources){
+			submit(source);
+		}
+		awaitCompletion();
+	}
+	/**
+	 * 等待所有已经提交的图像处理完成
+	 * @throws InterruptedException 等待时被中断
+	 */
+	public void awaitCompletion() throws InterruptedException{
+		synchronized(lock){
+			while(pending > 0){
+				lock.wait();
+			}
+		}
+	}
+	/**
+	 * @return 已经提交还没有完成的图像数量
+	 */
+	public int pending(){
+		synchronized(lock){
+			return pending;
+		}
+	}
+	/**
+	 * 停止接收图像,等待已经提交的图像处理完成后结束所有线程
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		boolean interrupted = decoder.shutdown();
+		interrupted |= resizer.shutdown();
+		interrupted |= encoder.shutdown();
+		if(interrupted){
+			Thread.currentThread().interrupt();
+		}
+	}
+	/**
+	 * 解码缩略图需要的区域,计算缩放尺寸<br>
+	 * 并行度由解码线程数决定,在当前线程中转换矩阵
+	 */
+	private void decode(Task<S> task) throws Exception{
+		LazyImage image;
+		boolean owner = true;
+		if(task.source instanceof LazyImage){
+			image = (LazyImage) task.source;
+			owner = false;
+		}else if(task.source instanceof File){
+			image = LazyImage.create((File) task.source, null);
+		}else{
+			image = LazyImage.create(task.source);
+		}
+		try{
+			Rectangle region = ImageUtil.thumbnailRegion(image.getWidth(), image.getHeight(), thumbnailWidth, thumbnailHeight, ratioThreshold);
+			Dimension size;
+			int subsampling;
+			if(region.width <= thumbnailWidth && region.height <= thumbnailHeight){
+				size = region.getSize();
+				subsampling = 1;
+			}else{
+				size = ImageUtil.constrain(region.width, region.height, thumbnailWidth, thumbnailHeight);
+				subsampling = ImageUtil.thumbnailSubsampling(region, size);
+			}
+			BufferedImage decoded = image.read(region.x, region.y, region.width, region.height, subsampling);
+			task.width = decoded.getWidth();
+			task.height = decoded.getHeight();
+			task.matrix = new byte[MatrixType.RGB.sizeOf(task.width, task.height)];
+			MatrixConverter.convert(decoded, MatrixType.RGB, 0, task.height, task.matrix, 0);
+			task.targetWidth = size.width;
+			task.targetHeight = size.height;
+		}finally{
+			if(owner){
+				image.close();
+			}
+		}
+	}
+	private void finish(Task<S> task, Throwable error){
+		try{
+			if(null == error){
+				listener.onComplete(task.source, task.output);
+			}else{
+				listener.onFailure(task.source, error);
+			}
+		}catch(Throwable e){
+			// 侦听器的异常(包括Error)不影响流水线,保证每个图像只通知一次
+		}finally{
+			done();
+		}
+	}
+	private void done(){
+		synchronized(lock){
+			if(--pending == 0){
+				lock.notifyAll();
+			}
+		}
+	}
+	/**
+	 * 流水线中的一个图像及其中间结果
+	 */
+	private static class Task<S>{
+		final S source;
+		/** RGB矩阵 */
+		byte[] matrix;
+		int width;
+		int height;
+		int targetWidth;
+		int targetHeight;
+		byte[] output;
+		Task(S source) {
+			this.source = source;
+		}
+	}
+	/**
+	 * 流水线的一个阶段:从输入队列取出图像处理后放入下一阶段的输入队列
+	 */
+	private abstract class Stage{
+		final BlockingQueue<Task<S>> queue;
+		private final Stage next;
+		private final Thread[] workers;
+		/** 为{@code true}时上游不会再有输入 */
+		private volatile boolean inputClosed = false;
+		Stage(String name, int threads, int queueCapacity, Stage next) {
+			this.queue = new ArrayBlockingQueue<Task<S>>(queueCapacity);
+			this.next = next;
+			this.workers = new Thread[threads];
+			for(int i = 0; i < workers.length; ++i){
+				workers[i] = new Thread(new Runnable(){
+					@Override
+					public void run() {
+						drain();
+					}}, name + "-" + i);
+				workers[i].setDaemon(true);
+				workers[i].start();
+			}
+		}
+		abstract void process(Task<S> task) throws Exception;
+		private void drain(){
+			while(!(inputClosed && queue.isEmpty())){
+				Task<S> task;
+				try {
+					task = queue.poll(100, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					continue;
+				}
+				if(null == task){
+					continue;
+				}
+				Throwable error = null;
+				try{
+					process(task);
+					if(null != next){
+						next.queue.put(task);
+						continue;
+					}
+				}catch(Throwable e){
+					error = e;
+				}
+				// 在try之外通知侦听器,侦听器的异常不会导致重复通知
+				finish(task, error);
+			}
+		}
+		/**
+		 * 停止接收输入,等待所有线程结束,线程结束后才进入队列的图像以{@link RejectedExecutionException}结束
+		 * @return 等待时是否被中断
+		 */
+		boolean shutdown(){
+			inputClosed = true;
+			boolean interrupted = false;
+			for(Thread worker : workers){
+				while(worker.isAlive()){
+					try {
+						worker.join();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			Task<S> task;
+			while(null != (task = queue.poll())){
+				finish(task, new RejectedExecutionException("closed"));
+			}
+			return interrupted;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+
+import org.junit.Test;
+
+import net.gdface.image.ImageCodecPool;
+import net.gdface.image.ImageUtil;
+import net.gdface.image.LazyImage;
+import net.gdface.utils.FaceUtilits;
+
+/**
+ * @author guyadong
+ *
+ */
+public class ImageCodecPoolTest {
+
+	@Test
+	public void testReuse() {
+		ImageCodecPool pool = new ImageCodecPool(1);
+		ImageReader reader = pool.borrowReader("JPEG");
+		assertNotNull(reader);
+		pool.returnReader("jpeg", reader);
+		assertSame(reader, pool.borrowReader("jpeg"));
+		assertNotSame(reader, pool.borrowReader("jpeg"));
+		assertNull(pool.borrowReader("no-such-format"));
+		ImageWriter writer = pool.borrowWriter("png", null);
+		pool.returnWriter("png", writer);
+		assertSame(writer, pool.borrowWriter("PNG", null));
+	}
+	@Test
+	public void testReadWrite() throws Exception {
+		InputStream in = this.getClass().getResourceAsStream("/image/he049.jpg");
+		byte[] data = FaceUtilits.readBytes(in);
+		int loop = 50;
+		long start = System.nanoTime();
+		for(int i = 0; i < loop; ++i){
+			LazyImage image = LazyImage.create(data);
+			BufferedImage bi = image.read();
+			byte[] png = ImageUtil.wirtePNGBytes(bi);
+			byte[] jpeg = ImageUtil.wirteJPEGBytes(bi, 0.8f);
+			assertEquals(bi.getWidth(), ImageIO.read(new java.io.ByteArrayInputStream(png)).getWidth());
+			assertEquals(bi.getWidth(), LazyImage.create(jpeg).getWidth());
+		}
+		System.out.printf("decode+encode %.2f ms/op\n", (System.nanoTime() - start) / 1e6 / loop);
+	}
+}
@@ -0,0 +1,108 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+
+import org.junit.Test;
+import org.w3c.dom.NodeList;
+
+import net.gdface.image.ImageEncoder;
+import net.gdface.image.ImageEncoder.ChromaSubsampling;
+import net.gdface.image.LazyImage;
+import net.gdface.utils.FaceUtilits;
+
+/**
+ * @author guyadong
+ *
+ */
+public class ImageEncoderTest {
+	private static BufferedImage load() throws Exception{
+		InputStream in = ImageEncoderTest.class.getResourceAsStream("/image/he049.jpg");
+		return ImageIO.read(new ByteArrayInputStream(FaceUtilits.readBytes(in)));
+	}
+	/**
+	 * @return 亮度分量的水平采样系数
+	 */
+	private static int lumaSampling(byte[] jpeg) throws Exception{
+		ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(jpeg));
+		Iterator<ImageReader> it = ImageIO.getImageReaders(stream);
+		ImageReader reader = it.next();
+		try{
+			reader.setInput(stream);
+			IIOMetadataNode root = (IIOMetadataNode) reader.getImageMetadata(0).getAsTree("javax_imageio_jpeg_image_1.0");
+			NodeList components = root.getElementsByTagName("componentSpec");
+			return Integer.parseInt(((IIOMetadataNode) components.item(0)).getAttribute("HsamplingFactor"));
+		}finally{
+			reader.dispose();
+			stream.close();
+		}
+	}
+	@Test
+	public void testOptions() throws Exception {
+		BufferedImage image = load();
+		byte[] def = new ImageEncoder("JPEG", 0.9f).encode(image);
+		assertArrayEquals(def, new ImageEncoder("JPEG", 0.9f).encode(image));
+		byte[] yuv444 = new ImageEncoder("JPEG", 0.9f, false, false, ChromaSubsampling.YUV444).encode(image);
+		byte[] yuv420 = new ImageEncoder("JPEG", 0.9f, false, false, ChromaSubsampling.YUV420).encode(image);
+		assertEquals(1, lumaSampling(yuv444));
+		assertEquals(2, lumaSampling(yuv420));
+		byte[] optimized = new ImageEncoder("JPEG", 0.9f, false, true, null).encode(image);
+		byte[] progressive = new ImageEncoder("JPEG", 0.9f, true, true, null).encode(image);
+		System.out.printf("default %d,444 %d,420 %d,optimized %d,progressive %d bytes\n",
+				def.length, yuv444.length, yuv420.length, optimized.length, progressive.length);
+		assertTrue(optimized.length < def.length);
+		assertEquals(image.getWidth(), ImageIO.read(new ByteArrayInputStream(progressive)).getWidth());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new ImageEncoder("JPEG", 0.9f).encode(image, out);
+		assertArrayEquals(def, out.toByteArray());
+		// 不支持的图像类型转为RGB
+		BufferedImage argb = new BufferedImage(64, 48, BufferedImage.TYPE_INT_ARGB);
+		assertEquals(64, ImageIO.read(new ByteArrayInputStream(new ImageEncoder("JPEG", null).encode(argb))).getWidth());
+	}
+	@Test
+	public void testCache() throws Exception {
+		LazyImage image = LazyImage.create(load());
+		ImageEncoder pngEncoder = new ImageEncoder("png", null);
+		byte[] png = image.encode(pngEncoder);
+		assertSame(png, image.encode(new ImageEncoder("PNG", null)));
+		// wirteXXXBytes返回缓存数据的副本
+		byte[] copy = image.wirtePNGBytes();
+		assertNotSame(png, copy);
+		assertArrayEquals(png, copy);
+		ImageEncoder jpegEncoder = new ImageEncoder("JPEG", 0.9f);
+		byte[] jpeg = image.encode(jpegEncoder);
+		assertArrayEquals(jpeg, image.wirteJPEGBytes());
+		image.clearEncoded();
+		assertNotSame(jpeg, image.encode(jpegEncoder));
+	}
+	@Test
+	public void testSpeed() throws Exception {
+		BufferedImage image = load();
+		ImageEncoder encoder = new ImageEncoder("JPEG", 0.9f);
+		int loop = 20;
+		for(int i = 0; i < loop; ++i){
+			encoder.encode(image);
+			ImageIO.write(image, "JPEG", new ByteArrayOutputStream());
+		}
+		long t0 = System.nanoTime();
+		for(int i = 0; i < loop; ++i){
+			encoder.encode(image);
+		}
+		long t1 = System.nanoTime();
+		for(int i = 0; i < loop; ++i){
+			ImageIO.write(image, "JPEG", new ByteArrayOutputStream());
+		}
+		long t2 = System.nanoTime();
+		System.out.printf("ImageEncoder %.2f ms, ImageIO.write %.2f ms\n", (t1 - t0) / 1e6 / loop, (t2 - t1) / 1e6 / loop);
+	}
+}
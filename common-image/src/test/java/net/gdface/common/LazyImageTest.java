@@ -0,0 +1,82 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import net.gdface.image.ImageUtil;
+import net.gdface.image.LazyImage;
+import net.gdface.utils.FaceUtilits;
+
+/**
+ * @author guyadong
+ *
+ */
+public class LazyImageTest {
+
+	@Test
+	public void testOpen() throws Exception {
+		InputStream in = this.getClass().getResourceAsStream("/image/he049.jpg");
+		byte[] data = FaceUtilits.readBytes(in);
+		BufferedImage expected = ImageIO.read(new java.io.ByteArrayInputStream(data));
+		LazyImage image = LazyImage.create(data);
+		try{
+			assertEquals("jpeg", image.getSuffix());
+			assertEquals(expected.getWidth(), image.getWidth());
+			assertEquals(expected.getHeight(), image.getHeight());
+			BufferedImage bi = image.read();
+			assertEquals(expected.getWidth(), bi.getWidth());
+		}finally{
+			image.close();
+		}
+	}
+	@Test
+	public void testRegion() throws Exception {
+		InputStream in = this.getClass().getResourceAsStream("/image/he049.jpg");
+		byte[] data = FaceUtilits.readBytes(in);
+		BufferedImage full = ImageIO.read(new java.io.ByteArrayInputStream(data));
+		Rectangle rect = new Rectangle(13, 7, full.getWidth() - 20, full.getHeight() - 30);
+		byte[] expected = ImageUtil.getMatrixBGR(ImageUtil.subsample(full, rect, 4));
+		LazyImage image = LazyImage.create(data);
+		long start = System.nanoTime();
+		byte[] bgr = image.getMatrixBGR(rect.x, rect.y, rect.width, rect.height, 4);
+		long t1 = System.nanoTime();
+		LazyImage.create(data).getMatrixBGR();
+		long t2 = System.nanoTime();
+		System.out.printf("subsampled %.2f ms, full %.2f ms\n", (t1 - start) / 1e6, (t2 - t1) / 1e6);
+		assertEquals(LazyImage.subsampledSize(rect.width, 4) * LazyImage.subsampledSize(rect.height, 4) * 3, bgr.length);
+		assertArrayEquals(expected, bgr);
+		// 已经解码的图像
+		assertArrayEquals(expected, LazyImage.create(full).getMatrixBGR(rect.x, rect.y, rect.width, rect.height, 4));
+		assertEquals(full.getWidth() * full.getHeight(), image.getMatrixGray(0, 0, full.getWidth(), full.getHeight(), 1).length);
+	}
+	@Test
+	public void testThumbnail() throws Exception {
+		InputStream in = this.getClass().getResourceAsStream("/image/he049.jpg");
+		byte[] data = FaceUtilits.readBytes(in);
+		BufferedImage full = ImageIO.read(new java.io.ByteArrayInputStream(data));
+		int tw = full.getWidth() / 5, th = full.getHeight() / 5;
+		long t0 = System.nanoTime();
+		BufferedImage legacy = ImageUtil.createThumbnail(ImageIO.read(new java.io.ByteArrayInputStream(data)), tw, th, 3);
+		long t1 = System.nanoTime();
+		LazyImage image = LazyImage.create(data);
+		BufferedImage thumbnail = ImageUtil.createThumbnail(image, tw, th, 3, null);
+		long t2 = System.nanoTime();
+		image.close();
+		System.out.printf("thumbnail legacy %.2f ms, subsampled+resample %.2f ms\n", (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+		assertEquals(legacy.getWidth(), thumbnail.getWidth());
+		assertEquals(legacy.getHeight(), thumbnail.getHeight());
+		BufferedImage jpeg = ImageIO.read(new java.io.ByteArrayInputStream(ImageUtil.createJPEGThumbnail(data, tw, th, 3)));
+		assertEquals(tw, jpeg.getWidth(), 1);
+		// 原图小于缩略图尺寸时不缩放
+		image = LazyImage.create(data);
+		assertEquals(full.getWidth(), ImageUtil.createThumbnail(image, full.getWidth() + 1, full.getHeight() + 1, 3, null).getWidth());
+		image.close();
+	}
+}
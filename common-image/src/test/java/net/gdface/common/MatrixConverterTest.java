@@ -0,0 +1,157 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorConvertOp;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.gdface.image.MatrixConverter;
+import net.gdface.image.MatrixType;
+
+/**
+ * @author guyadong
+ *
+ */
+public class MatrixConverterTest {
+	private static BufferedImage randomImage(int type, int width, int height){
+		BufferedImage image = new BufferedImage(width, height, type);
+		Random random = new Random(type);
+		for(int y = 0; y < height; ++y){
+			for(int x = 0; x < width; ++x){
+				image.setRGB(x, y, random.nextInt());
+			}
+		}
+		return image;
+	}
+	/**
+	 * 由getRGB计算的参考结果
+	 */
+	private static byte[] expected(BufferedImage image, MatrixType type){
+		int width = image.getWidth(), height = image.getHeight();
+		byte[] dst = new byte[type.sizeOf(width, height)];
+		for(int y = 0, i = 0; y < height; ++y){
+			for(int x = 0; x < width; ++x){
+				int p = image.getRGB(x, y);
+				int r = (p >>> 16) & 0xff, g = (p >>> 8) & 0xff, b = p & 0xff;
+				switch(type){
+				case RGB:
+					dst[i++] = (byte) r; dst[i++] = (byte) g; dst[i++] = (byte) b;
+					break;
+				case BGR:
+					dst[i++] = (byte) b; dst[i++] = (byte) g; dst[i++] = (byte) r;
+					break;
+				case RGBA:
+					dst[i++] = (byte) r; dst[i++] = (byte) g; dst[i++] = (byte) b; dst[i++] = (byte) (p >>> 24);
+					break;
+				default:
+					dst[i++] = BufferedImage.TYPE_BYTE_GRAY == image.getType()
+						? (byte) image.getRaster().getSample(x, y, 0)
+						: (byte) ((77 * r + 150 * g + 29 * b + 128) >> 8);
+				}
+			}
+		}
+		return dst;
+	}
+	@Test
+	public void testConvert() {
+		int[] types = {
+				BufferedImage.TYPE_3BYTE_BGR,
+				BufferedImage.TYPE_4BYTE_ABGR,
+				BufferedImage.TYPE_4BYTE_ABGR_PRE,
+				BufferedImage.TYPE_INT_RGB,
+				BufferedImage.TYPE_INT_ARGB,
+				BufferedImage.TYPE_INT_BGR,
+				BufferedImage.TYPE_BYTE_GRAY,
+				BufferedImage.TYPE_BYTE_INDEXED,
+				BufferedImage.TYPE_USHORT_565_RGB};
+		for(int t : types){
+			BufferedImage full = randomImage(t, 37, 23);
+			BufferedImage[] images = {full, full.getSubimage(5, 3, 20, 11)};
+			for(BufferedImage image : images){
+				for(MatrixType type : MatrixType.values()){
+					if(BufferedImage.TYPE_BYTE_GRAY == t && MatrixType.GRAY != type){
+						continue;
+					}
+					String msg = t + " " + type;
+					byte[] expected = expected(image, type);
+					assertArrayEquals(msg, expected, MatrixConverter.toMatrix(image, type));
+					byte[] dst = new byte[expected.length + 7];
+					assertEquals(expected.length, MatrixConverter.toMatrix(image, type, dst, 7));
+					ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+					MatrixConverter.toMatrix(image, type, direct);
+					assertEquals(0, direct.remaining());
+					direct.flip();
+					byte[] fromDirect = new byte[expected.length];
+					direct.get(fromDirect);
+					assertArrayEquals(msg, expected, fromDirect);
+				}
+			}
+		}
+	}
+	@Test
+	public void testSpeed() {
+		BufferedImage image = randomImage(BufferedImage.TYPE_3BYTE_BGR, 2000, 1500);
+		byte[] dst = new byte[MatrixType.BGR.sizeOf(2000, 1500)];
+		int loop = 20;
+		for(int i = 0; i < loop; ++i){
+			MatrixConverter.toMatrix(image, MatrixType.BGR, dst, 0);
+			image.getData().getDataElements(0, 0, 2000, 1500, null);
+		}
+		long t0 = System.nanoTime();
+		for(int i = 0; i < loop; ++i){
+			MatrixConverter.toMatrix(image, MatrixType.BGR, dst, 0);
+		}
+		long t1 = System.nanoTime();
+		for(int i = 0; i < loop; ++i){
+			image.getData().getDataElements(0, 0, 2000, 1500, null);
+		}
+		long t2 = System.nanoTime();
+		System.out.printf("toMatrix %.2f ms, getData().getDataElements %.2f ms\n", (t1 - t0) / 1e6 / loop, (t2 - t1) / 1e6 / loop);
+	}
+	/**
+	 * 与原有实现比较:getRGB+逐像素转BGR,ColorConvertOp转灰度
+	 */
+	@Test
+	public void testLegacy() {
+		int width = 2000, height = 1500;
+		BufferedImage image = randomImage(BufferedImage.TYPE_INT_ARGB, width, height);
+		byte[] bgr = new byte[MatrixType.BGR.sizeOf(width, height)];
+		byte[] gray = new byte[MatrixType.GRAY.sizeOf(width, height)];
+		int loop = 5;
+		long legacyBgr = 0, legacyGray = 0, newBgr = 0, newGray = 0;
+		for(int i = 0; i < loop * 2; ++i){
+			boolean measure = i >= loop;
+			long t0 = System.nanoTime();
+			int[] intrgb = image.getRGB(0, 0, width, height, null, 0, width);
+			byte[] matrixBGR = new byte[width * height * 3];
+			for(int k = 0, j = 0; k < intrgb.length; ++k, j += 3){
+				matrixBGR[j] = (byte) (intrgb[k] & 0xff);
+				matrixBGR[j + 1] = (byte) ((intrgb[k] >> 8) & 0xff);
+				matrixBGR[j + 2] = (byte) ((intrgb[k] >> 16) & 0xff);
+			}
+			long t1 = System.nanoTime();
+			BufferedImage g = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+			new ColorConvertOp(ColorSpace.getInstance(ColorSpace.CS_GRAY), null).filter(image, g);
+			g.getData().getDataElements(0, 0, width, height, null);
+			long t2 = System.nanoTime();
+			MatrixConverter.toMatrix(image, MatrixType.BGR, bgr, 0);
+			long t3 = System.nanoTime();
+			MatrixConverter.toMatrix(image, MatrixType.GRAY, gray, 0);
+			long t4 = System.nanoTime();
+			if(measure){
+				legacyBgr += t1 - t0;
+				legacyGray += t2 - t1;
+				newBgr += t3 - t2;
+				newGray += t4 - t3;
+			}
+			assertArrayEquals(matrixBGR, bgr);
+		}
+		System.out.printf("BGR legacy %.2f ms, new %.2f ms; GRAY legacy %.2f ms, new %.2f ms\n",
+				legacyBgr / 1e6 / loop, newBgr / 1e6 / loop, legacyGray / 1e6 / loop, newGray / 1e6 / loop);
+	}
+}
@@ -0,0 +1,148 @@
+package net.gdface.common;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import net.gdface.image.ImageUtil;
+import net.gdface.image.LazyImage;
+import net.gdface.image.ThumbnailPipeline;
+import net.gdface.utils.FaceUtilits;
+
+/**
+ * @author guyadong
+ *
+ */
+public class ThumbnailPipelineTest {
+
+	@Test
+	public void testPipeline() throws Exception {
+		InputStream in = this.getClass().getResourceAsStream("/image/he049.jpg");
+		final byte[] data = FaceUtilits.readBytes(in);
+		final ConcurrentLinkedQueue<byte[]> results = new ConcurrentLinkedQueue<byte[]>();
+		final ConcurrentMap<Object, Throwable> errors = new ConcurrentHashMap<Object, Throwable>();
+		List<Object> sources = new ArrayList<Object>();
+		int count = 16;
+		for(int i = 0; i < count; ++i){
+			sources.add(0 == i % 4 ? new byte[]{1, 2, 3} : data);
+		}
+		ThumbnailPipeline<Object> pipeline = new ThumbnailPipeline<Object>(120, 90, 3, null, "JPEG", null, 2, 2, 2, 2,
+				new ThumbnailPipeline.Listener<Object>(){
+					@Override
+					public void onComplete(Object source, byte[] output) {
+						results.add(output);
+					}
+					@Override
+					public void onFailure(Object source, Throwable error) {
+						errors.put(new Object(), error);
+					}});
+		long t0 = System.nanoTime();
+		try{
+			pipeline.process(sources);
+		}finally{
+			pipeline.close();
+		}
+		long t1 = System.nanoTime();
+		for(int i = 0; i < count; ++i){
+			ImageUtil.wirteJPEGBytes(ImageUtil.createThumbnail(ImageIO.read(new ByteArrayInputStream(data)), 120, 90, 3));
+		}
+		long t2 = System.nanoTime();
+		System.out.printf("pipeline %.2f ms, serial legacy %.2f ms\n", (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+		assertEquals(0, pipeline.pending());
+		assertEquals(count / 4, errors.size());
+		assertEquals(count - count / 4, results.size());
+		BufferedImage expected = ImageUtil.createThumbnail(LazyImage.create(data), 120, 90, 3, null);
+		for(byte[] output : results){
+			BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(output));
+			assertEquals(expected.getWidth(), thumbnail.getWidth());
+			assertEquals(expected.getHeight(), thumbnail.getHeight());
+		}
+	}
+	/**
+	 * 提交与关闭同时进行,每个提交的图像都必须通知侦听器或者抛出{@link RejectedExecutionException}
+	 */
+	@Test
+	public void testCloseRace() throws Exception {
+		for(int round = 0; round < 20; ++round){
+			final AtomicInteger notified = new AtomicInteger();
+			final AtomicInteger rejected = new AtomicInteger();
+			final AtomicInteger submitted = new AtomicInteger();
+			final ThumbnailPipeline<Object> pipeline = new ThumbnailPipeline<Object>(120, 90, 3, null, "JPEG", null, 1, 1, 1, 2,
+					new ThumbnailPipeline.Listener<Object>(){
+						@Override
+						public void onComplete(Object source, byte[] output) {
+							notified.incrementAndGet();
+						}
+						@Override
+						public void onFailure(Object source, Throwable error) {
+							notified.incrementAndGet();
+						}});
+			Thread producer = new Thread(){
+				@Override
+				public void run() {
+					for(int i = 0; i < 200; ++i){
+						submitted.incrementAndGet();
+						try {
+							pipeline.submit(new byte[]{1, 2, 3});
+						} catch (RejectedExecutionException e) {
+							rejected.incrementAndGet();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			};
+			producer.start();
+			Thread.sleep(1);
+			pipeline.close();
+			producer.join(TimeUnit.SECONDS.toMillis(10));
+			assertFalse(producer.isAlive());
+			assertEquals(0, pipeline.pending());
+			assertEquals(submitted.get(), notified.get() + rejected.get());
+		}
+	}
+	/**
+	 * 侦听器抛出{@link Error}时每个图像只通知一次
+	 */
+	@Test
+	public void testListenerError() throws Exception {
+		final AtomicInteger notified = new AtomicInteger();
+		ThumbnailPipeline<Object> pipeline = new ThumbnailPipeline<Object>(120, 90, 3, null, "JPEG", null, 1, 1, 1, 2,
+				new ThumbnailPipeline.Listener<Object>(){
+					@Override
+					public void onComplete(Object source, byte[] output) {
+						notified.incrementAndGet();
+						throw new AssertionError("complete");
+					}
+					@Override
+					public void onFailure(Object source, Throwable error) {
+						notified.incrementAndGet();
+						throw new AssertionError("failure");
+					}});
+		int count = 8;
+		try{
+			for(int i = 0; i < count; ++i){
+				pipeline.submit(new byte[]{1, 2, 3});
+			}
+			pipeline.awaitCompletion();
+		}finally{
+			pipeline.close();
+		}
+		assertEquals(count, notified.get());
+		assertEquals(0, pipeline.pending());
+	}
+}